@@ -45,7 +45,13 @@ import java.lang.reflect.Method;
 import java.net.URL;
 import java.security.AccessController;
 import java.security.AccessControlContext;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.jar.JarFile;
 
 import com.jogamp.common.os.Platform;
@@ -53,6 +59,7 @@ import com.jogamp.common.util.JarUtil;
 import com.jogamp.common.util.cache.TempJarCache;
 
 import jogamp.common.Debug;
+import jogamp.common.jvm.ParallelLoader;
 
 public class JNILibLoaderBase {
   public static final boolean DEBUG = Debug.debug("JNILibLoader");
@@ -105,17 +112,18 @@ public class JNILibLoaderBase {
     public void loadLibrary(String libname, String[] preload, boolean preloadIgnoreError) {
       if(!isLoaded(libname)) {
           if (null!=preload) {
-            for (int i=0; i<preload.length; i++) {
-              loadLibrary(preload[i], preloadIgnoreError);
-            }
+            loadLibraries(this, preload, preloadIgnoreError);
           }
           loadLibrary(libname, false);
       }
     }
   }
 
-  private static final HashSet<String> loaded = new HashSet<String>();
+  private static final Set<String> loaded = Collections.synchronizedSet(new HashSet<String>());
   private static LoaderAction loaderAction = new DefaultAction();
+  
+  private static volatile boolean parallelLoading = 
+      Debug.isPropertyDefined("jogamp.common.jvm.JNILibLoader.parallel", true, localACC);
 
   public static boolean isLoaded(String libName) {
     return loaded.contains(libName);
@@ -139,6 +147,27 @@ public class JNILibLoaderBase {
   public static synchronized void setLoadingAction(LoaderAction action) {
     loaderAction = action;
   }
+  
+  /**
+   * Returns true if independent libraries are loaded concurrently, 
+   * i.e. the preload libraries of {@link #loadLibrary(String, String[], boolean)}, 
+   * see {@link #loadLibraries(String[], boolean)}, and the tool and glue libraries of 
+   * {@link com.jogamp.common.os.DynamicLibraryBundle}.
+   * <p>
+   * Disabled by default, 
+   * enabled by property <code>jogamp.common.jvm.JNILibLoader.parallel</code>.
+   * </p>
+   */
+  public static boolean isParallelLoading() {
+    return parallelLoading;
+  }
+  
+  /**
+   * @see #isParallelLoading()
+   */
+  public static void setParallelLoading(boolean enable) {
+    parallelLoading = enable;
+  }
 
   /**
    * 
@@ -214,6 +243,63 @@ public class JNILibLoaderBase {
         loaderAction.loadLibrary(libname, preload, preloadIgnoreError);    
     }
   }
+  
+  /**
+   * Loads the given libraries, which may depend on preceding ones.
+   * <p>
+   * If {@link #isParallelLoading() parallel loading} is enabled 
+   * and the default {@link LoaderAction} is being used, all libraries are loaded concurrently first,
+   * ignoring errors. Libraries failed to load are loaded again in the given order,
+   * hence a library depending on a preceding one still loads if its dependency has been satisfied.
+   * Otherwise the libraries are loaded one after another, as with {@link #loadLibrary(String, boolean)}.
+   * </p>
+   * 
+   * @param libnames the libraries to load
+   * @param ignoreError if true, errors during loading the libraries should be ignored
+   * @return true for each library loaded successful 
+   */
+  protected static boolean[] loadLibraries(String[] libnames, boolean ignoreError) {
+    final LoaderAction action;
+    synchronized(JNILibLoaderBase.class) {
+        action = loaderAction;
+    }
+    if( action instanceof DefaultAction ) {
+        // thread safe w/o the class lock 
+        return loadLibraries(action, libnames, ignoreError);
+    }
+    final boolean[] res = new boolean[libnames.length];
+    for(int i=0; i<libnames.length; i++) {
+        res[i] = loadLibrary(libnames[i], ignoreError);
+    }
+    return res;
+  }
+  
+  private static boolean[] loadLibraries(final LoaderAction action, String[] libnames, boolean ignoreError) {
+    final boolean[] res = new boolean[libnames.length];
+    if( parallelLoading && libnames.length > 1 ) {
+        final List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>(libnames.length);
+        for(int i=0; i<libnames.length; i++) {
+            final String libname = libnames[i];
+            tasks.add(new Callable<Boolean>() {
+                public Boolean call() {
+                    return Boolean.valueOf(action.loadLibrary(libname, true));
+                } });
+        }
+        final List<Boolean> results = ParallelLoader.invokeAll(tasks);
+        for(int i=0; i<libnames.length; i++) {
+            res[i] = results.get(i).booleanValue();
+        }
+        if(DEBUG) {
+            System.err.println("JNILibLoaderBase: loaded in parallel "+Arrays.asList(libnames)+": "+Arrays.toString(res));
+        }
+    }
+    for(int i=0; i<libnames.length; i++) {
+        if( !res[i] ) {
+            res[i] = action.loadLibrary(libnames[i], ignoreError);
+        }
+    }
+    return res;
+  }
 
   // private static final Class<?> customLauncherClass;
   private static final Method customLoadLibraryMethod;
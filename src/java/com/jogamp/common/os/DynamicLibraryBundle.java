@@ -32,6 +32,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.Callable;
+
+import jogamp.common.jvm.ParallelLoader;
 
 import com.jogamp.common.jvm.JNILibLoaderBase;
 
@@ -51,6 +54,10 @@ import com.jogamp.common.jvm.JNILibLoaderBase;
  *  <li> loads the {@link com.jogamp.common.jvm.JNILibLoaderBase#loadLibrary(java.lang.String, java.lang.String[], boolean)  Glue native library}</li>
  *  <li> resolves the Tool's {@link com.jogamp.common.os.DynamicLibraryBundleInfo#getToolGetProcAddressFuncNameList() GetProcAddress}. (optional)</li>
  * </ul>
+ * If {@link JNILibLoaderBase#isParallelLoading() parallel loading} is enabled,
+ * the preferred name of all Tool libraries is loaded concurrently, followed by the concurrent loading of the Glue preload dependencies
+ * and finally the last Glue library. Tool libraries failed to load concurrently are loaded again in their given order,
+ * trying all their alternative names.
  */
 public class DynamicLibraryBundle implements DynamicLookupHelper {
     protected static final boolean DEBUG = NativeLibrary.DEBUG;
@@ -216,13 +223,30 @@ public class DynamicLibraryBundle implements DynamicLookupHelper {
             glueLibLoaded[i] = false;
         }
 
-        ClassLoader loader = getClass().getClassLoader();
-        NativeLibrary lib = null;
-
+        final ClassLoader loader = getClass().getClassLoader();
+        final boolean parallel = JNILibLoaderBase.isParallelLoading();
+        final NativeLibrary[] libs = new NativeLibrary[toolLibNames.size()];
+        
+        if( parallel ) {
+            final List<Callable<NativeLibrary>> tasks = new ArrayList<Callable<NativeLibrary>>();
+            for (i=0; i < toolLibNames.size(); i++) {    
+                final List<String> libNames = toolLibNames.get(i);
+                tasks.add(new Callable<NativeLibrary>() {
+                    public NativeLibrary call() {
+                        // preferred name only, the alternatives are left to the sequential retry
+                        if( null != libNames && libNames.size() > 0 ) {
+                            return NativeLibrary.open(libNames.get(0), loader, info.shallLinkGlobal());
+                        }
+                        return null;
+                    } });
+            }
+            ParallelLoader.invokeAll(tasks).toArray(libs);
+        }
         for (i=0; i < toolLibNames.size(); i++) {    
             final List<String> libNames = toolLibNames.get(i);
             if( null != libNames && libNames.size() > 0 ) {
-                lib = loadFirstAvailable(libNames, loader, info.shallLinkGlobal());
+                // in parallel mode, retry in order, it may depend on a preceding library 
+                final NativeLibrary lib = null != libs[i] ? libs[i] : loadFirstAvailable(libNames, loader, info.shallLinkGlobal());
                 if ( null == lib ) {
                     if(DEBUG) {
                         System.err.println("Unable to load any Tool library of: "+libNames);
@@ -245,28 +269,49 @@ public class DynamicLibraryBundle implements DynamicLookupHelper {
         }
 
         glueLibLoadedNumber = 0;
-        for (i=0; i < glueLibNames.size(); i++) {    
-            final String libName = glueLibNames.get(i);
-            boolean ignoreError = true;
-            boolean res;
-            try {
-                res = GlueJNILibLoader.loadLibrary(libName, ignoreError);
-                if(DEBUG && !res) {
-                    System.err.println("Info: Could not load JNI/Glue library: "+libName);
+        // the preload dependencies are independent of each other, the last one depends on all of them
+        final int preloadNumber = glueLibNames.size() - 1;
+        if( parallel && preloadNumber > 1 ) {
+            final boolean[] res = GlueJNILibLoader.loadLibraries(glueLibNames.subList(0, preloadNumber).toArray(new String[preloadNumber]), true);
+            for (i=0; i < preloadNumber; i++) {
+                if(DEBUG && !res[i]) {
+                    System.err.println("Info: Could not load JNI/Glue library: "+glueLibNames.get(i));
                 }
-            } catch (UnsatisfiedLinkError e) {
-                res = false;
-                if(DEBUG) {
-                    System.err.println("Unable to load JNI/Glue library: "+libName);
-                    e.printStackTrace();
+                glueLibLoaded[i] = res[i];
+                if(res[i]) {
+                    glueLibLoadedNumber++;
                 }
             }
+            i = preloadNumber;
+        } else {
+            i = 0;
+        }
+        for (; i < glueLibNames.size(); i++) {    
+            final boolean res = loadGlueLibrary(glueLibNames.get(i));
             glueLibLoaded[i] = res;
             if(res) {
                 glueLibLoadedNumber++;
             }
         }
     }
+    
+    private static boolean loadGlueLibrary(String libName) {
+        boolean ignoreError = true;
+        boolean res;
+        try {
+            res = GlueJNILibLoader.loadLibrary(libName, ignoreError);
+            if(DEBUG && !res) {
+                System.err.println("Info: Could not load JNI/Glue library: "+libName);
+            }
+        } catch (UnsatisfiedLinkError e) {
+            res = false;
+            if(DEBUG) {
+                System.err.println("Unable to load JNI/Glue library: "+libName);
+                e.printStackTrace();
+            }
+        }
+        return res;
+    }
 
     private long dynamicLookupFunctionOnLibs(String funcName) {
         if(!isToolLibLoaded() || null==funcName) {
@@ -343,6 +388,9 @@ public class DynamicLibraryBundle implements DynamicLookupHelper {
       protected static synchronized boolean loadLibrary(String libname, boolean ignoreError) {
         return JNILibLoaderBase.loadLibrary(libname, ignoreError);
       }
+      protected static boolean[] loadLibraries(String[] libnames, boolean ignoreError) {
+        return JNILibLoaderBase.loadLibraries(libnames, ignoreError);
+      }
     }
 }
 
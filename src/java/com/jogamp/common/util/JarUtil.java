@@ -27,9 +27,8 @@
  */
 package com.jogamp.common.util;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -37,10 +36,21 @@ import java.io.OutputStream;
 import java.net.JarURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
+import java.security.AccessController;
 import java.security.cert.Certificate;
+import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
@@ -51,6 +61,26 @@ import jogamp.common.Debug;
 public class JarUtil {
     private static final boolean DEBUG = Debug.debug("JarUtil");
 
+    /** 
+     * Maximum number of threads used by {@link #extract(File, Map, JarFile, boolean, boolean, boolean) extract(..)},
+     * property <code>jogamp.common.utils.JarUtil.extractThreads</code>.
+     * A value of 1 extracts all entries on the calling thread.
+     */
+    private static final int EXTRACT_THREADS;
+    
+    /** Copy buffer size used for extracting jar entries, 64 KiB. */
+    private static final int EXTRACT_BUFFER_SIZE = 64 * 1024;
+    
+    /** Minimum number of entries per extraction thread. */
+    private static final int EXTRACT_ENTRIES_PER_THREAD = 4;
+    
+    static {
+        final int cpus = Runtime.getRuntime().availableProcessors();
+        final int threads = Debug.getIntProperty("jogamp.common.utils.JarUtil.extractThreads", true, 
+                                                 AccessController.getContext(), Math.min(4, cpus));
+        EXTRACT_THREADS = Math.max(1, threads);
+    }
+
     /**
      * @param clazzBinName com.jogamp.common.util.cache.TempJarCache 
      * @param cl
@@ -204,6 +234,13 @@ public class JarUtil {
      * In this case, set all flags to true <code>extractNativeLibraries </code>.
      * <code>extractClassFiles</code>, <code>extractOtherFiles</code>.
      * </p>
+     * <p>
+     * Directories are created on the calling thread, 
+     * the file entries are extracted concurrently by up to 
+     * <code>jogamp.common.utils.JarUtil.extractThreads</code> threads.
+     * Entries already existing at their destination are not rewritten, 
+     * see {@link #extract(JarFile, JarEntry, File, byte[])}.
+     * </p>
      * 
      * @param dest
      * @param nativeLibMap
@@ -212,11 +249,38 @@ public class JarUtil {
      * @param extractNativeLibraries
      * @param extractClassFiles
      * @param extractOtherFiles
-     * @return
+     * @return the number of non empty files, extracted or already up to date
+     * @throws IOException
+     */
+    public static final int extract(File dest, Map<String, String> nativeLibMap, 
+                                    final JarFile jarFile,
+                                    boolean extractNativeLibraries,
+                                    boolean extractClassFiles,
+                                    boolean extractOtherFiles) throws IOException {
+        return extract(dest, nativeLibMap, null, jarFile, extractNativeLibraries, extractClassFiles, extractOtherFiles);
+    }
+    
+    /**
+     * Extract the files of the given jar file, 
+     * see {@link #extract(File, Map, JarFile, boolean, boolean, boolean)}.
+     * <p>
+     * If <code>fileMap</code> is not <code>null</code>,
+     * all extracted files are added to it with their entry name to their absolute file location.
+     * </p>
+     * 
+     * @param dest
+     * @param nativeLibMap
+     * @param fileMap maybe <code>null</code>
+     * @param jarFile
+     * @param extractNativeLibraries
+     * @param extractClassFiles
+     * @param extractOtherFiles
+     * @return the number of non empty files, extracted or already up to date
      * @throws IOException
      */
     public static final int extract(File dest, Map<String, String> nativeLibMap, 
-                                    JarFile jarFile,
+                                    Map<String, String> fileMap, 
+                                    final JarFile jarFile,
                                     boolean extractNativeLibraries,
                                     boolean extractClassFiles,
                                     boolean extractOtherFiles) throws IOException {
@@ -227,7 +291,9 @@ public class JarUtil {
                                ", extractClassFiles "+extractClassFiles+
                                ", extractOtherFiles "+extractOtherFiles);
         }
-        int num = 0;
+        final List<JarEntry> fileEntries = new ArrayList<JarEntry>();
+        final List<File> destFiles = new ArrayList<File>();
+        final List<String> libBaseNames = new ArrayList<String>();
 
         Enumeration<JarEntry> entries = jarFile.entries();
         while (entries.hasMoreElements()) {
@@ -261,13 +327,9 @@ public class JarUtil {
 
             final boolean isDir = entryName.endsWith("/");
             
-            final boolean isRootEntry = entryName.indexOf('/') == -1 && 
-                                        entryName.indexOf(File.separatorChar) == -1;
-            
             if (DEBUG) {
                 System.err.println("JarUtil: JarEntry : isNativeLib " + isNativeLib + 
-                                   ", isClassFile " + isClassFile + ", isDir " + isDir +
-                                   ", isRootEntry " + isRootEntry );
+                                   ", isClassFile " + isClassFile + ", isDir " + isDir);
             }
             
             final File destFile = new File(dest, entryName);
@@ -284,29 +346,178 @@ public class JarUtil {
                     }                    
                     destFolder.mkdir();
                 }
-                final InputStream in = new BufferedInputStream(jarFile.getInputStream(entry));
-                final OutputStream out = new BufferedOutputStream(new FileOutputStream(destFile));
-                int numBytes = -1; 
-                try {
-                    numBytes = IOUtil.copyStream2Stream(in, out, -1);
-                } finally {
-                    in.close();
-                    out.close();
+                fileEntries.add(entry);
+                destFiles.add(destFile);
+                libBaseNames.add(libBaseName);
+            }
+        }
+        
+        final int[] numBytes = extract(jarFile, fileEntries, destFiles);
+        
+        // Map the native libraries in jar order, so collisions are resolved
+        // independent of the extraction order.
+        int num = 0;
+        for(int i=0; i<numBytes.length; i++) {
+            final String entryName = fileEntries.get(i).getName();
+            final String libBaseName = libBaseNames.get(i);
+            final File destFile = destFiles.get(i);
+            final boolean isRootEntry = entryName.indexOf('/') == -1 && 
+                                        entryName.indexOf(File.separatorChar) == -1;
+            boolean addedAsNativeLib = false;
+            if (null != fileMap) {
+                fileMap.put(entryName, destFile.getAbsolutePath());
+            }
+            if (numBytes[i]>0) {
+                num++;
+                if (null != libBaseName && ( isRootEntry || !nativeLibMap.containsKey(libBaseName) ) ) {                    
+                    nativeLibMap.put(libBaseName, destFile.getAbsolutePath());
+                    addedAsNativeLib = true;
                 }
-                boolean addedAsNativeLib = false;
-                if (numBytes>0) {
-                    num++;
-                    if (isNativeLib && ( isRootEntry || !nativeLibMap.containsKey(libBaseName) ) ) {                    
-                        nativeLibMap.put(libBaseName, destFile.getAbsolutePath());
-                        addedAsNativeLib = true;
+            }
+            if (DEBUG) {
+                System.err.println("JarUtil: EXTRACT["+num+"]: [" + libBaseName + " -> ] " + entryName + " -> " + destFile + ": "+numBytes[i]+" bytes, addedAsNativeLib: "+addedAsNativeLib);
+            }
+        }
+        return num;
+    }
+    
+    /**
+     * Extracts all given entries to their corresponding destination files,
+     * concurrently if more than {@link #EXTRACT_ENTRIES_PER_THREAD} entries are given.
+     * 
+     * @return the number of bytes of each entry
+     */
+    private static final int[] extract(final JarFile jarFile, final List<JarEntry> entries, final List<File> destFiles) throws IOException {
+        final int count = entries.size();
+        final int[] numBytes = new int[count];
+        final int threads = Math.min(EXTRACT_THREADS, count / EXTRACT_ENTRIES_PER_THREAD);
+        if( threads <= 1 ) {
+            final byte[] buf = new byte[EXTRACT_BUFFER_SIZE];
+            for(int i=0; i<count; i++) {
+                numBytes[i] = extract(jarFile, entries.get(i), destFiles.get(i), buf);
+            }
+            return numBytes;
+        }
+        
+        // Each worker owns a copy buffer and claims the next pending entry.
+        // The numBytes slots are disjoint, their visibility is ensured by Future.get().
+        final AtomicInteger next = new AtomicInteger(0);
+        final Callable<Object> worker = new Callable<Object>() {
+            public Object call() throws IOException {
+                final byte[] buf = new byte[EXTRACT_BUFFER_SIZE];
+                int i;
+                while( ( i = next.getAndIncrement() ) < count ) {
+                    numBytes[i] = extract(jarFile, entries.get(i), destFiles.get(i), buf);
+                }
+                return null;
+            } };
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, extractThreadFactory);
+        try {
+            final List<Future<Object>> results = new ArrayList<Future<Object>>(threads);
+            for(int i=0; i<threads; i++) {
+                results.add(executor.submit(worker));
+            }
+            for(int i=0; i<threads; i++) {
+                try {
+                    results.get(i).get();
+                } catch (InterruptedException ie) {
+                    // stop other workers before bailing out
+                    next.set(count);
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while extracting "+jarFile.getName());
+                } catch (ExecutionException ee) {
+                    next.set(count);
+                    final Throwable cause = ee.getCause();
+                    if(cause instanceof IOException) {
+                        throw (IOException) cause;
+                    } else if(cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    } else if(cause instanceof Error) {
+                        throw (Error) cause;
                     }
+                    throw new RuntimeException(cause);
                 }
-                if (DEBUG) {
-                    System.err.println("JarUtil: EXTRACT["+num+"]: [" + libBaseName + " -> ] " + entryName + " -> " + destFile + ": "+numBytes+" bytes, addedAsNativeLib: "+addedAsNativeLib);
+            }
+        } finally {
+            executor.shutdown();
+        }
+        return numBytes;
+    }
+    
+    private static final ThreadFactory extractThreadFactory = new ThreadFactory() {
+        private final AtomicInteger threadNum = new AtomicInteger(0);
+        public Thread newThread(Runnable r) {
+            final Thread t = new Thread(r, "JarUtil-Extract-"+threadNum.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        } };
+    
+    /**
+     * Extracts the given jar entry to <code>destFile</code>, 
+     * unless <code>destFile</code> is {@link #isUpToDate(JarEntry, File, byte[]) up to date}.
+     * 
+     * @param jarFile the jar file containing the entry
+     * @param entry the entry to extract
+     * @param destFile the destination file
+     * @param buf the copy buffer
+     * @return the number of bytes of the entry
+     * @throws IOException
+     */
+    public static final int extract(JarFile jarFile, JarEntry entry, File destFile, byte[] buf) throws IOException {
+        if( isUpToDate(entry, destFile, buf) ) {
+            if (DEBUG) {
+                System.err.println("JarUtil: UP-TO-DATE: " + entry.getName() + " -> " + destFile);
+            }
+            return (int) entry.getSize();
+        }
+        final InputStream in = jarFile.getInputStream(entry);
+        try {
+            final OutputStream out = new FileOutputStream(destFile);
+            try {
+                int numBytes = 0;
+                int count;
+                while( ( count = in.read(buf) ) != -1 ) {
+                    out.write(buf, 0, count);
+                    numBytes += count;
                 }
+                return numBytes;
+            } finally {
+                out.close();
             }
+        } finally {
+            in.close();
         }
-        return num;
+    }
+    
+    /**
+     * Returns true if <code>destFile</code> exists with the size and CRC-32
+     * of the given jar entry, i.e. it doesn't need to be extracted again.
+     * <p>
+     * Only reads <code>destFile</code>, the entry's size and CRC-32 are taken from the jar file's central directory.
+     * Returns false if the entry's size or CRC-32 is unknown.
+     * </p>
+     * 
+     * @param entry the entry
+     * @param destFile the extracted file
+     * @param buf a read buffer
+     */
+    public static final boolean isUpToDate(JarEntry entry, File destFile, byte[] buf) throws IOException {
+        final long size = entry.getSize();
+        final long crc = entry.getCrc();
+        if( 0 > size || -1 == crc || !destFile.isFile() || destFile.length() != size ) {
+            return false;
+        }
+        final CRC32 destCrc = new CRC32();
+        final InputStream in = new FileInputStream(destFile);
+        try {
+            int count;
+            while( ( count = in.read(buf) ) != -1 ) {
+                destCrc.update(buf, 0, count);
+            }
+        } finally {
+            in.close();
+        }
+        return destCrc.getValue() == crc;
     }
 
     /**
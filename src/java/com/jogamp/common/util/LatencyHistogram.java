@@ -0,0 +1,103 @@
+/**
+ * Copyright 2011 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.common.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of durations in nanoseconds w/ power of two buckets,
+ * i.e. bucket <code>i</code> counts durations within [2<sup>i-1</sup>, 2<sup>i</sup>) ns.
+ * <p>
+ * Designed for a single recording thread, e.g. the consumer of a {@link TaskExecutor},
+ * while any thread may read it w/o blocking.
+ * </p>
+ */
+public class LatencyHistogram {
+    private static final int BUCKETS = 64;
+    
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private volatile long count, total, max;
+    
+    /** Records the given duration, shall only be called by one thread at a time. */
+    public final void record(long nanos) {
+        if( 0 > nanos ) {
+            nanos = 0;
+        }
+        final int i = BUCKETS - Long.numberOfLeadingZeros(nanos);
+        buckets.set(i, buckets.get(i) + 1);
+        count++;
+        total += nanos;
+        if( nanos > max ) {
+            max = nanos;
+        }
+    }
+    
+    public final long getCount() { return count; }
+    
+    public final long getMax() { return max; }
+    
+    public final long getMean() { 
+        final long c = count;
+        return 0 < c ? total / c : 0;
+    }
+    
+    /** 
+     * Returns the upper bound in ns of the bucket containing the given percentile,
+     * e.g. 0.99 for the 99th percentile.
+     */
+    public final long getPercentile(double p) {
+        final long threshold = (long) Math.ceil(p * count);
+        long n = 0;
+        for(int i=0; i<BUCKETS; i++) {
+            n += buckets.get(i);
+            if( n >= threshold && 0 < n ) {
+                return 0 == i ? 0 : ( BUCKETS - 1 == i ? Long.MAX_VALUE : ( 1L << i ) - 1 );
+            }
+        }
+        return 0;
+    }
+    
+    /** Returns the count of bucket <code>i</code>, see {@link LatencyHistogram} */
+    public final long getBucket(int i) {
+        return buckets.get(i);
+    }
+    
+    public final void reset() {
+        for(int i=0; i<BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+        count = 0; total = 0; max = 0;
+    }
+    
+    @Override
+    public String toString() {
+        return "count "+count+", mean "+getMean()/1000+" us, p50 < "+getPercentile(0.5)/1000+" us, p99 < "+
+               getPercentile(0.99)/1000+" us, max "+max/1000+" us";
+    }
+}
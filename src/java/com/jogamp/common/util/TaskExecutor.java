@@ -0,0 +1,385 @@
+/**
+ * Copyright 2011 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.common.util;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.AbstractQueuedSynchronizer;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Executes tasks submitted by any thread on one consumer thread,
+ * e.g. a render thread or an event dispatch thread.
+ * <p>
+ * The consumer is either a thread owned by this executor, see {@link #start(String)},
+ * or an existing thread running its own loop, see {@link #setConsumer(Thread)}, 
+ * which calls {@link #runPending()} and optionally {@link #awaitTasks(long)}.
+ * </p>
+ * <p>
+ * Submitted tasks are linked into an intrusive lock-free multiple producer single consumer queue.
+ * The consumer runs up to <code>batchSize</code> tasks per {@link #runPending()}, 
+ * bounding the time spent in one call. Neither submission, execution nor completion 
+ * use a monitor: waiting threads are parked and unparked directly.
+ * </p>
+ * <p>
+ * The time each task spends in the queue and in execution is recorded in 
+ * the {@link #getQueueLatency() queue} and {@link #getExecLatency() execution} {@link LatencyHistogram}s.
+ * </p>
+ * <p>
+ * A {@link RunnableTask} may be submitted like any other Runnable.
+ * </p>
+ */
+public class TaskExecutor implements Executor {
+
+    /**
+     * A submitted task and its completion.
+     */
+    public static final class Task<V> implements Future<V> {
+        private static final int PENDING = 0, RUNNING = 1, DONE = 2, CANCELLED = 3;
+        
+        @SuppressWarnings("serial")
+        private static final class Sync extends AbstractQueuedSynchronizer {
+            private Sync() {
+                setState(PENDING);
+            }
+            private final int get() { return getState(); }
+            private final boolean start() { return compareAndSetState(PENDING, RUNNING); }
+            private final boolean cancel() { return compareAndSetState(PENDING, CANCELLED) && releaseShared(0); }
+            private final void done() { setState(DONE); releaseShared(0); }
+            @Override
+            protected final int tryAcquireShared(int ignore) {
+                return RUNNING < getState() ? 1 : -1;
+            }
+            @Override
+            protected final boolean tryReleaseShared(int ignore) {
+                return true;
+            }
+        }
+        
+        private final Sync sync = new Sync();
+        private Callable<V> callable;
+        private final boolean report;
+        private V result;
+        private Throwable throwable;
+        private final long tsSubmit;
+        private long tsStart, tsEnd;
+        /** Queue link, written by the producer before the task becomes visible to the consumer */
+        volatile Task<?> next;
+        
+        Task(Callable<V> callable, boolean report) {
+            this.callable = callable;
+            this.report = report;
+            tsSubmit = System.nanoTime();
+        }
+        
+        /** Runs the task if not cancelled, called by the consumer */
+        final boolean run() {
+            if( !sync.start() ) {
+                return false;
+            }
+            tsStart = System.nanoTime();
+            try {
+                result = callable.call();
+            } catch (Throwable t) {
+                throwable = t;
+                if( report ) {
+                    t.printStackTrace();
+                }
+            } finally {
+                callable = null;
+                tsEnd = System.nanoTime();
+                sync.done();
+            }
+            return true;
+        }
+        
+        /** Cancels the task if it is still queued */
+        public final boolean cancel(boolean mayInterruptIfRunning) {
+            return sync.cancel();
+        }
+        
+        public final boolean isCancelled() { return CANCELLED == sync.get(); }
+        
+        public final boolean isDone() { return RUNNING < sync.get(); }
+        
+        public final V get() throws InterruptedException, ExecutionException {
+            sync.acquireSharedInterruptibly(0);
+            return getResult();
+        }
+        
+        public final V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            if( !sync.tryAcquireSharedNanos(0, unit.toNanos(timeout)) ) {
+                throw new TimeoutException();
+            }
+            return getResult();
+        }
+        
+        private final V getResult() throws ExecutionException {
+            if( CANCELLED == sync.get() ) {
+                throw new CancellationException();
+            }
+            if( null != throwable ) {
+                throw new ExecutionException(throwable);
+            }
+            return result;
+        }
+        
+        /** @return A Throwable thrown while execution if any */
+        public final Throwable getThrowable() { return isDone() ? throwable : null; }
+        
+        /** Returns the ns spent in the queue, valid once done */
+        public final long getDurationInQueue() { return tsStart - tsSubmit; }
+        
+        /** Returns the ns spent in execution, valid once done */
+        public final long getDurationInExec() { return tsEnd - tsStart; }
+    }
+    
+    private final int batchSize;
+    private final LatencyHistogram queueLatency = new LatencyHistogram();
+    private final LatencyHistogram execLatency = new LatencyHistogram();
+    
+    // queue: producers swap the tail, the consumer advances the head.
+    // The head is a consumed task or the initial stub.
+    private final AtomicReference<Task<?>> tail;
+    private Task<?> head;
+    
+    private volatile Thread consumer;
+    private volatile boolean consumerParked;
+    // the consumer loop started via start(String), synchronized
+    private ConsumerLoop started;
+    
+    /**
+     * @param batchSize maximum number of tasks executed by one {@link #runPending()} call
+     */
+    public TaskExecutor(int batchSize) {
+        if( 0 >= batchSize ) {
+            throw new IllegalArgumentException("batchSize "+batchSize+" <= 0");
+        }
+        this.batchSize = batchSize;
+        head = new Task<Object>(null, false);
+        tail = new AtomicReference<Task<?>>(head);
+    }
+    
+    /** 
+     * Sets the consumer thread running its own loop, which shall call {@link #runPending()}.
+     * Tasks submitted by the consumer itself via {@link #invokeAndWait(Runnable)} are executed directly.
+     */
+    public final void setConsumer(Thread t) {
+        consumer = t;
+    }
+    
+    public final Thread getConsumer() {
+        return consumer;
+    }
+    
+    /** The loop of a consumer thread started via {@link #start(String)} */
+    private class ConsumerLoop implements Runnable {
+        final Thread thread;
+        volatile boolean shallStop = false;
+        
+        ConsumerLoop(String name) {
+            thread = new Thread(this, name);
+            thread.setDaemon(true);
+        }
+        
+        public void run() {
+            while( !shallStop ) {
+                if( 0 == runPending() ) {
+                    awaitTasks(0);
+                }
+            }
+            // drain the remaining tasks
+            while( 0 < runPending() ) { }
+            synchronized(TaskExecutor.this) {
+                if( thread == consumer ) {
+                    consumer = null;
+                }
+            }
+        }
+    }
+    
+    /** Starts a daemon consumer thread of the given name, running the tasks until {@link #stop()}. */
+    public final synchronized void start(String name) {
+        if( null != consumer ) {
+            throw new IllegalStateException("Consumer already set: "+consumer);
+        }
+        started = new ConsumerLoop(name);
+        consumer = started.thread;
+        started.thread.start();
+    }
+    
+    /** 
+     * Stops the consumer thread started via {@link #start(String)} after running all submitted tasks.
+     * If called by another thread, it waits until the consumer thread has ended.
+     * Does nothing if no consumer thread has been started.
+     * 
+     * @throws IllegalStateException if the consumer has been set via {@link #setConsumer(Thread)}
+     */
+    public final void stop() throws InterruptedException {
+        final ConsumerLoop l;
+        synchronized(this) {
+            l = started;
+            if( null == l ) {
+                if( null != consumer ) {
+                    throw new IllegalStateException("Consumer not started by this executor: "+consumer);
+                }
+                return;
+            }
+            started = null;
+            l.shallStop = true;
+        }
+        LockSupport.unpark(l.thread);
+        if( Thread.currentThread() != l.thread ) {
+            l.thread.join();
+        }
+    }
+    
+    private final void enqueue(Task<?> task) {
+        final Task<?> prev = tail.getAndSet(task);
+        prev.next = task;
+        if( consumerParked ) {
+            LockSupport.unpark(consumer);
+        }
+    }
+    
+    /** Submits the callable, the returned Future completes after its execution by the consumer. */
+    public final <V> Task<V> submit(Callable<V> callable) {
+        final Task<V> task = new Task<V>(callable, false);
+        enqueue(task);
+        return task;
+    }
+    
+    /** Submits the runnable, the returned Future completes after its execution by the consumer. */
+    public final Task<Object> submit(Runnable runnable) {
+        final Task<Object> task = new Task<Object>(new RunnableCallable(runnable), false);
+        enqueue(task);
+        return task;
+    }
+    
+    /** Submits the runnable w/o interest in its completion. A Throwable thrown by it is printed. */
+    public final void execute(Runnable runnable) {
+        enqueue(new Task<Object>(new RunnableCallable(runnable), true));
+    }
+    
+    /**
+     * Executes the runnable on the consumer thread and waits until done.
+     * If the current thread is the consumer, the runnable is executed directly.
+     * 
+     * @throws RuntimeException wrapping a Throwable thrown by the runnable, or if interrupted
+     */
+    public final void invokeAndWait(Runnable runnable) throws RuntimeException {
+        if( Thread.currentThread() == consumer ) {
+            runnable.run();
+            return;
+        }
+        try {
+            submit(runnable).get();
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            throw new RuntimeException("Interrupted", e);
+        }
+    }
+    
+    /** Returns true if no task is queued. */
+    public final boolean isEmpty() {
+        return null == head.next;
+    }
+    
+    /**
+     * Runs up to <code>batchSize</code> queued tasks, shall only be called by the consumer.
+     * @return the number of dequeued tasks, including cancelled ones
+     */
+    public final int runPending() {
+        int n = 0;
+        Task<?> next;
+        while( n < batchSize && null != ( next = head.next ) ) {
+            head.next = null; // unlink the consumed task
+            head = next;
+            if( next.run() ) {
+                queueLatency.record(next.getDurationInQueue());
+                execLatency.record(next.getDurationInExec());
+            }
+            n++;
+        }
+        return n;
+    }
+    
+    /**
+     * Parks the consumer until a task is queued, the timeout is reached or the consumer is unparked otherwise. 
+     * Shall only be called by the consumer.
+     * @param timeoutNanos maximum time to wait, zero to wait indefinitely
+     * @return true if a task is queued
+     */
+    public final boolean awaitTasks(long timeoutNanos) {
+        consumerParked = true;
+        try {
+            // an unpark before parking, e.g. by stop(), lets park return immediately
+            if( isEmpty() ) {
+                if( 0 < timeoutNanos ) {
+                    LockSupport.parkNanos(timeoutNanos);
+                } else {
+                    LockSupport.park();
+                }
+            }
+        } finally {
+            consumerParked = false;
+        }
+        return !isEmpty();
+    }
+    
+    /** Returns the histogram of the time tasks spent in the queue */
+    public final LatencyHistogram getQueueLatency() { return queueLatency; }
+    
+    /** Returns the histogram of the time tasks spent in execution */
+    public final LatencyHistogram getExecLatency() { return execLatency; }
+    
+    @Override
+    public String toString() {
+        return "TaskExecutor[consumer "+consumer+", batch "+batchSize+", empty "+isEmpty()+
+               ", queue latency ["+queueLatency+"], exec latency ["+execLatency+"]]";
+    }
+    
+    private static class RunnableCallable implements Callable<Object> {
+        private final Runnable runnable;
+        RunnableCallable(Runnable runnable) {
+            this.runnable = runnable;
+        }
+        public Object call() {
+            runnable.run();
+            return null;
+        }
+    }
+}
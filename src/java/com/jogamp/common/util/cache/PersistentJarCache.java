@@ -0,0 +1,441 @@
+/**
+ * Copyright 2011 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+ 
+package com.jogamp.common.util.cache;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.security.AccessController;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateEncodingException;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import com.jogamp.common.util.locks.LockFactory;
+import com.jogamp.common.util.locks.RecursiveLock;
+
+import jogamp.common.Debug;
+
+/**
+ * Persistent directory for the extracted files of one jar file,
+ * reused across JVM invocations.
+ * <p>
+ * The directory is located at:
+ * <pre>
+ *   &lt;tmpBaseDir&gt;/persistent.&lt;user&gt;/&lt;key&gt;
+ * </pre>
+ * where <code>key</code> is the SHA-256 of the jar file's content
+ * and the certificates the jar file has been validated against, see {@link #getKey(Certificate[], JarFile)}.
+ * Hence a changed jar file or a different signer results in a new directory.
+ * </p>
+ * <p>
+ * The per user directory <code>&lt;tmpBaseDir&gt;/persistent.&lt;user&gt;</code> is created accessible by its owner only.
+ * It is only trusted if it is no symbolic link, is owned by the current user 
+ * and grants no permissions to group or others, see {@link #validateUserDirectory(File)}.
+ * Since these attributes are only accessible via <code>java.nio.file</code>, 
+ * the persistent cache is not available before Java 7.
+ * </p>
+ * <p>
+ * Population of the directory is guarded by an exclusive lock on 
+ * <code>&lt;tmpBaseDir&gt;/persistent.&lt;user&gt;/&lt;key&gt;.lck</code> across JVMs,
+ * similar to the <code>jlnNNNN.lck</code> scheme of {@link TempFileCache}.
+ * The lock is only held while files are extracted or validated, 
+ * which leaves up to date files untouched, see {@link com.jogamp.common.util.JarUtil#isUpToDate(JarEntry, File, byte[])}.
+ * The lock file's modification time is updated with each {@link #lock()}, marking the last use of the directory.
+ * </p>
+ * <p>
+ * The persistent directories are not reaped along with the <code>jlnNNNN</code> directories,
+ * the per user directory itself carries no <code>.lck</code> file.
+ * Instead they are reaped if unused for a while, see {@link TempFileCacheReaper}.
+ * </p>
+ * <p>
+ * Usage is opt-in by {@link TempJarCache}, see {@link #ENABLED}.
+ * </p>
+ */
+public class PersistentJarCache {
+    private static final boolean DEBUG = Debug.debug("TempFileCache");
+
+    /** 
+     * Enables the persistent native library cache of {@link TempJarCache},
+     * property <code>jogamp.tmp.cache.persistent</code>. 
+     */
+    public static final boolean ENABLED = Debug.isPropertyDefined("jogamp.tmp.cache.persistent", true, AccessController.getContext());
+    
+    /** Name prefix of the per user persistent directory within {@link TempFileCache#getBaseDir()}. */
+    public static final String persistentDirName = "persistent";
+    
+    /** Version of the key computation and directory layout. */
+    private static final int KEY_VERSION = 2;
+    
+    /** Maximum time waiting for a lock held by another ClassLoader of this JVM. */
+    private static final long OVERLAP_TIMEOUT = 5000;
+
+    /** 
+     * File locks are held by the whole JVM, 
+     * hence serialize {@link #lock()} within this ClassLoader to avoid an {@link OverlappingFileLockException}. 
+     */
+    private static final RecursiveLock jvmLock = LockFactory.createRecursiveLock();
+
+    private final String key;
+    private final File dir;
+    private final File lckFile;
+    
+    private RandomAccessFile lckOut;
+    private FileLock lckLock;
+    
+    /**
+     * @param baseDir the base directory, usually {@link TempFileCache#getBaseDir()}
+     * @param key the key as computed via {@link #getKey(Certificate[], JarFile)}
+     */
+    public PersistentJarCache(File baseDir, String key) {
+        final File persistentDir = getUserDirectory(baseDir);
+        this.key = key;
+        this.dir = new File(persistentDir, key);
+        this.lckFile = new File(persistentDir, key + ".lck");
+    }
+    
+    /**
+     * @param baseDir the base directory, usually {@link TempFileCache#getBaseDir()}
+     * @param certs the certificates the jar file has been validated against, maybe <code>null</code>
+     * @param jarFile the jar file
+     */
+    public PersistentJarCache(File baseDir, Certificate[] certs, JarFile jarFile) throws IOException {
+        this(baseDir, getKey(certs, jarFile));
+    }
+    
+    public final String getKey() { return key; }
+    
+    /** 
+     * Directory of the extracted files, 
+     * exists after the first {@link #lock()}. 
+     */
+    public final File getDirectory() { return dir; }
+    
+    /**
+     * Acquires the exclusive lock for populating the directory, 
+     * blocking while another JVM or ClassLoader holds it.
+     * Creates the directory if not existing.
+     * 
+     * @throws IOException if the directory could not be created, the per user directory is not trusted 
+     *         or the lock could not be acquired
+     */
+    public final void lock() throws IOException {
+        jvmLock.lock();
+        boolean ok = false;
+        try {
+            final File persistentDir = lckFile.getParentFile();
+            if( !persistentDir.isDirectory() ) {
+                persistentDir.getParentFile().mkdirs();
+                if( persistentDir.mkdir() ) {
+                    FileAccess.setPrivate(persistentDir);
+                }
+            }
+            validateUserDirectory(persistentDir);
+            lckOut = new RandomAccessFile(lckFile, "rw");
+            final FileChannel lckChannel = lckOut.getChannel();
+            final long t0 = System.currentTimeMillis();
+            while( null == lckLock ) {
+                try {
+                    lckLock = lckChannel.lock();
+                } catch (OverlappingFileLockException ofle) {
+                    // held by another ClassLoader of this JVM
+                    if( System.currentTimeMillis() - t0 > OVERLAP_TIMEOUT ) {
+                        throw new IOException("Waited "+OVERLAP_TIMEOUT+"ms for: "+lckFile);
+                    }
+                    try {
+                        Thread.sleep(10);
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrupted while waiting for: "+lckFile);
+                    }
+                }
+            }
+            lckFile.setLastModified(System.currentTimeMillis());
+            // create the directory while locked, it may get reaped otherwise
+            if( !dir.isDirectory() && !dir.mkdir() && !dir.isDirectory() ) {
+                throw new IOException("Cannot create directory " + dir);
+            }
+            if (DEBUG) {
+                System.err.println("PersistentJarCache: locked " + dir);
+            }
+            ok = true;
+        } finally {
+            if( !ok ) {
+                unlockImpl();
+            }
+        }
+    }
+    
+    /**
+     * Releases the lock acquired via {@link #lock()}.
+     */
+    public final void unlock() {
+        if (DEBUG) {
+            System.err.println("PersistentJarCache: unlock " + dir);
+        }
+        unlockImpl();
+    }
+    
+    private final void unlockImpl() {
+        try {
+            if( null != lckLock ) {
+                lckLock.release();
+            }
+        } catch (IOException ex) {
+            if (DEBUG) {
+                ex.printStackTrace();
+            }
+        } finally {
+            lckLock = null;
+            try {
+                if( null != lckOut ) {
+                    lckOut.close();
+                }
+            } catch (IOException ex) {
+                if (DEBUG) {
+                    ex.printStackTrace();
+                }
+            }
+            lckOut = null;
+            jvmLock.unlock();
+        }
+    }
+    
+    /**
+     * Returns the per user persistent directory within the given base directory,
+     * which may not exist yet.
+     * 
+     * @param baseDir the base directory, usually {@link TempFileCache#getBaseDir()}
+     */
+    public static File getUserDirectory(File baseDir) {
+        final String user = System.getProperty("user.name");
+        final StringBuilder sb = new StringBuilder(persistentDirName).append('.');
+        for(int i=0; null != user && i<user.length(); i++) {
+            final char c = user.charAt(i);
+            sb.append( Character.isLetterOrDigit(c) || '-' == c || '_' == c ? c : '_' );
+        }
+        return new File(baseDir, sb.toString());
+    }
+    
+    /**
+     * Validates that the given per user directory may be trusted,
+     * i.e. it is a directory but no symbolic link, it is owned by the current user 
+     * and it grants no permissions to group or others if the file system supports POSIX permissions.
+     * 
+     * @param userDir the directory as returned by {@link #getUserDirectory(File)}
+     * @throws IOException if the directory is not trusted or its attributes are not accessible
+     */
+    public static void validateUserDirectory(File userDir) throws IOException {
+        if( !FileAccess.available ) {
+            throw new IOException("Cannot validate owner of "+userDir+", requires java.nio.file");
+        }
+        if( FileAccess.isSymbolicLink(userDir) || !userDir.isDirectory() ) {
+            throw new IOException("Not a directory: "+userDir);
+        }
+        // the owner of a new file is the current user
+        final File probe = File.createTempFile("jln", ".own", userDir);
+        try {
+            final Object user = FileAccess.getOwner(probe);
+            final Object owner = FileAccess.getOwner(userDir);
+            if( !user.equals(owner) ) {
+                throw new IOException("Not owned by "+user+" but "+owner+": "+userDir);
+            }
+        } finally {
+            probe.delete();
+        }
+        final Set<?> perms = FileAccess.getPosixFilePermissions(userDir);
+        if( null != perms ) {
+            for(Iterator<?> i = perms.iterator(); i.hasNext(); ) {
+                final String perm = i.next().toString();
+                if( !perm.startsWith("OWNER_") ) {
+                    throw new IOException("Accessible by others, "+perms+": "+userDir);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Computes the key of the given jar file, i.e. the hex encoded SHA-256 of 
+     * the jar file's content and the encoded given certificates.
+     * 
+     * @param certs the certificates the jar file has been validated against, maybe <code>null</code>
+     * @param jarFile the jar file
+     */
+    public static String getKey(Certificate[] certs, JarFile jarFile) throws IOException {
+        final MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new RuntimeException("SHA-256 not available", nsae);
+        }
+        final byte[] buf = new byte[8192];
+        updateLong(md, buf, KEY_VERSION);
+        final InputStream in = new FileInputStream(jarFile.getName());
+        try {
+            int count;
+            while( ( count = in.read(buf) ) != -1 ) {
+                md.update(buf, 0, count);
+            }
+        } finally {
+            in.close();
+        }
+        if( null != certs ) {
+            for(int i=0; i<certs.length; i++) {
+                try {
+                    md.update(certs[i].getEncoded());
+                } catch (CertificateEncodingException cee) {
+                    throw new SecurityException("Cannot encode certificate " + i + " for " + jarFile.getName() + ": " + cee.getMessage());
+                }
+            }
+        }
+        final byte[] digest = md.digest();
+        final StringBuilder sb = new StringBuilder(2*digest.length);
+        for(int i=0; i<digest.length; i++) {
+            final int b = digest[i] & 0xff;
+            if( b < 0x10 ) {
+                sb.append('0');
+            }
+            sb.append(Integer.toHexString(b));
+        }
+        return sb.toString();
+    }
+    
+    private static void updateLong(MessageDigest md, byte[] l, long v) {
+        for(int i=0; i<8; i++) {
+            l[i] = (byte) ( v >>> ( 8 * i ) );
+        }
+        md.update(l, 0, 8);
+    }
+    
+    /**
+     * Owner and permission access via <code>java.nio.file</code>, if available.
+     * Accessed via reflection, since it is not available before Java 7.
+     */
+    private static class FileAccess {
+        static final boolean available;
+        private static final Method toPath, isSymbolicLink, getOwner, getPosixFilePermissions, setPosixFilePermissions;
+        // LinkOption[] { NOFOLLOW_LINKS }
+        private static final Object noFollowLinks;
+        // Set<PosixFilePermission> rwx------
+        private static final Object ownerOnly;
+        
+        static {
+            Method _toPath = null, _isSymbolicLink = null, _getOwner = null, _getPosixFilePermissions = null, _setPosixFilePermissions = null;
+            Object _noFollowLinks = null, _ownerOnly = null;
+            boolean ok = false;
+            try {
+                final Class<?> pathClass = Class.forName("java.nio.file.Path");
+                final Class<?> filesClass = Class.forName("java.nio.file.Files");
+                final Class<?> linkOptionClass = Class.forName("java.nio.file.LinkOption");
+                final Class<?> linkOptionsClass = Array.newInstance(linkOptionClass, 0).getClass();
+                _toPath = File.class.getMethod("toPath");
+                _isSymbolicLink = filesClass.getMethod("isSymbolicLink", pathClass);
+                _getOwner = filesClass.getMethod("getOwner", pathClass, linkOptionsClass);
+                _getPosixFilePermissions = filesClass.getMethod("getPosixFilePermissions", pathClass, linkOptionsClass);
+                _setPosixFilePermissions = filesClass.getMethod("setPosixFilePermissions", pathClass, Set.class);
+                _noFollowLinks = Array.newInstance(linkOptionClass, 1);
+                Array.set(_noFollowLinks, 0, linkOptionClass.getField("NOFOLLOW_LINKS").get(null));
+                _ownerOnly = Class.forName("java.nio.file.attribute.PosixFilePermissions")
+                                  .getMethod("fromString", String.class).invoke(null, "rwx------");
+                ok = true;
+            } catch (Throwable t) {
+                if (DEBUG) {
+                    System.err.println("PersistentJarCache: java.nio.file not available: "+t);
+                }
+            }
+            toPath = _toPath;
+            isSymbolicLink = _isSymbolicLink;
+            getOwner = _getOwner;
+            getPosixFilePermissions = _getPosixFilePermissions;
+            setPosixFilePermissions = _setPosixFilePermissions;
+            noFollowLinks = _noFollowLinks;
+            ownerOnly = _ownerOnly;
+            available = ok;
+        }
+        
+        static boolean isSymbolicLink(File f) throws IOException {
+            return ((Boolean) invoke(isSymbolicLink, f)).booleanValue();
+        }
+        
+        /** Returns the owner of the file itself, not following a symbolic link */
+        static Object getOwner(File f) throws IOException {
+            return invoke(getOwner, f, noFollowLinks);
+        }
+        
+        /** Returns the POSIX permissions of the file, or <code>null</code> if not supported by the file system */
+        static Set<?> getPosixFilePermissions(File f) throws IOException {
+            try {
+                return (Set<?>) invoke(getPosixFilePermissions, f, noFollowLinks);
+            } catch (UnsupportedOperationException uoe) {
+                return null;
+            }
+        }
+        
+        /** Makes the file accessible by its owner only, if the file system supports POSIX permissions */
+        static void setPrivate(File f) throws IOException {
+            if( available ) {
+                try {
+                    invoke(setPosixFilePermissions, f, ownerOnly);
+                } catch (UnsupportedOperationException uoe) { }
+            }
+        }
+        
+        private static Object invoke(Method m, File f, Object ... args) throws IOException {
+            final Object[] allArgs = new Object[1+args.length];
+            try {
+                allArgs[0] = toPath.invoke(f);
+                System.arraycopy(args, 0, allArgs, 1, args.length);
+                return m.invoke(null, allArgs);
+            } catch (InvocationTargetException ite) {
+                final Throwable t = ite.getTargetException();
+                if( t instanceof IOException ) {
+                    throw (IOException) t;
+                }
+                if( t instanceof RuntimeException ) {
+                    throw (RuntimeException) t;
+                }
+                throw new IOException(m.getName()+" failed for "+f+": "+t);
+            } catch (IllegalAccessException iae) {
+                throw new IOException(m.getName()+" not accessible: "+iae.getMessage());
+            }
+        }
+    }
+}
@@ -29,7 +29,6 @@ package com.jogamp.common.util.cache;
 
 import java.io.File;
 import java.io.FileOutputStream;
-import java.io.FilenameFilter;
 import java.io.IOException;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
@@ -62,6 +61,9 @@ public class TempFileCache {
     private static String tmpRootPropValue;
 
     private static File tmpRootDir;
+    
+    // The reaper started by this ClassLoader, if any.
+    private static TempFileCacheReaper reaper;
 
     // Flag indicating that we got a fatal error in the initializer.
     private boolean initError = false;
@@ -88,6 +90,14 @@ public class TempFileCache {
         return !staticInitError;        
     }
     
+    /**
+     * @return the {@link TempFileCacheReaper} started by this ClassLoader, 
+     *         or <code>null</code> if started by another ClassLoader of this JVM.  
+     */
+    public static TempFileCacheReaper getReaper() {
+        return reaper;
+    }
+    
     /**
      * This method is called by the static initializer to create / initialize
      * the temp root directory that will hold the temp directories for this
@@ -134,7 +144,8 @@ public class TempFileCache {
      *        the first ClassLoader is later unloaded, while subsequent Applets
      *        are still running.
      *
-     *     6. Start the Reaper thread to cleanup old installations.
+     *     6. Start the Reaper thread to cleanup old installations,
+     *        see {@link TempFileCacheReaper}.
      */
     private static void initTmpRoot() throws IOException {
         if (DEBUG) {
@@ -217,14 +228,8 @@ public class TempFileCache {
                 }
 
                 // Start a new Reaper thread to do stuff...
-                Thread reaperThread = new Thread() {
-                    /* @Override */
-                    public void run() {
-                        deleteOldTempDirs();
-                    }
-                };
-                reaperThread.setName("TempFileCache-Reaper");
-                reaperThread.start();
+                reaper = new TempFileCacheReaper(tmpBaseDir, tmpRootPropValue + ".lck");
+                reaper.start();
             } else {
                 // Make sure that the property is not set to an illegal value
                 if (tmpRootPropValue.indexOf('/') >= 0 ||
@@ -251,142 +256,6 @@ public class TempFileCache {
         }
     }
 
-    /**
-     * Called by the Reaper thread to delete old temp directories
-     * Only one of these threads will run per JVM invocation.
-     */
-    private static void deleteOldTempDirs() {
-        if (DEBUG) {
-            System.err.println("TempFileCache: *** Reaper: deleteOldTempDirs in " +
-                    tmpBaseDir.getAbsolutePath());
-        }
-
-        // enumerate list of jnl*.lck files, ignore our own jlnNNNN file
-        final String ourLockFile = tmpRootPropValue + ".lck";
-        FilenameFilter lckFilter = new FilenameFilter() {
-            /* @Override */
-            public boolean accept(File dir, String name) {
-                return name.endsWith(".lck") && !name.equals(ourLockFile);
-            }
-        };
-
-        // For each file <file>.lck in the list we will first try to lock
-        // <file>.tmp if that succeeds then we will try to lock <file>.lck
-        // (which should always succeed unless there is a problem). If we can
-        // get the lock on both files, then it must be an old installation, and
-        // we will delete it.
-        String[] fileNames = tmpBaseDir.list(lckFilter);
-        if (fileNames != null) {
-            for (int i = 0; i < fileNames.length; i++) {
-                String lckFileName = fileNames[i];
-                String tmpDirName = lckFileName.substring(0, lckFileName.lastIndexOf(".lck"));
-                String tmpFileName = tmpDirName + ".tmp";
-
-                File lckFile = new File(tmpBaseDir, lckFileName);
-                File tmpFile = new File(tmpBaseDir, tmpFileName);
-                File tmpDir = new File(tmpBaseDir, tmpDirName);
-
-                if (lckFile.exists() && tmpFile.exists() && tmpDir.isDirectory()) {
-                    FileOutputStream tmpOut = null;
-                    FileChannel tmpChannel = null;
-                    FileLock tmpLock = null;
-
-                    try {
-                        tmpOut = new FileOutputStream(tmpFile);
-                        tmpChannel = tmpOut.getChannel();
-                        tmpLock = tmpChannel.tryLock();
-                    } catch (Exception ex) {
-                        // Ignore exceptions
-                        if (DEBUG) {
-                            ex.printStackTrace();
-                        }
-                    }
-
-                    if (tmpLock != null) {
-                        FileOutputStream lckOut = null;
-                        FileChannel lckChannel = null;
-                        FileLock lckLock = null;
-
-                        try {
-                            lckOut = new FileOutputStream(lckFile);
-                            lckChannel = lckOut.getChannel();
-                            lckLock = lckChannel.tryLock();
-                        } catch (Exception ex) {
-                            if (DEBUG) {
-                                ex.printStackTrace();
-                            }
-                        }
-
-                        if (lckLock != null) {
-                            // Recursively remove the old tmpDir and all of
-                            // its contents
-                            removeAll(tmpDir);
-
-                            // Close the streams and delete the .lck and .tmp
-                            // files. Note that there is a slight race condition
-                            // in that another process could open a stream at
-                            // the same time we are trying to delete it, which will
-                            // prevent deletion, but we won't worry about it, since
-                            // the worst that will happen is we might have an
-                            // occasional 0-byte .lck or .tmp file left around
-                            try {
-                                lckOut.close();
-                            } catch (IOException ex) {
-                            }
-                            lckFile.delete();
-                            try {
-                                tmpOut.close();
-                            } catch (IOException ex) {
-                            }
-                            tmpFile.delete();
-                        } else {
-                            try {
-                                // Close the file and channel for the *.lck file
-                                if (lckOut != null) {
-                                    lckOut.close();
-                                }
-                                // Close the file/channel and release the lock
-                                // on the *.tmp file
-                                tmpOut.close();
-                                tmpLock.release();
-                            } catch (IOException ex) {
-                                if (DEBUG) {
-                                    ex.printStackTrace();
-                                }
-                            }
-                        }
-                    }
-                } else {
-                    if (DEBUG) {
-                        System.err.println("TempFileCache: Skipping: " + tmpDir.getAbsolutePath());
-                    }
-                }
-            }
-        }
-    }
-
-    /**
-     * Remove the specified file or directory. If "path" is a directory, then
-     * recursively remove all entries, then remove the directory itself.
-     */
-    private static void removeAll(File path) {
-        if (DEBUG) {
-            System.err.println("TempFileCache: removeAll(" + path + ")");
-        }
-
-        if (path.isDirectory()) {
-            // Recursively remove all files/directories in this directory
-            File[] list = path.listFiles();
-            if (list != null) {
-                for (int i = 0; i < list.length; i++) {
-                    removeAll(list[i]);
-                }
-            }
-        }
-
-        path.delete();
-    }
-
     public TempFileCache () {
         if (DEBUG) {
             System.err.println("TempFileCache: new TempFileCache() --------------------- (static ok: "+(!staticInitError)+")");
@@ -0,0 +1,505 @@
+/**
+ * Copyright 2011 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+ 
+package com.jogamp.common.util.cache;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.security.AccessController;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import jogamp.common.Debug;
+
+/**
+ * Reclaims the temp root directories <code>jlnNNNN</code> of old installations
+ * in {@link TempFileCache#getBaseDir()} and unused {@link PersistentJarCache} directories.
+ * <p>
+ * The reaper is started once per JVM by {@link TempFileCache} 
+ * as a low priority daemon thread after a delay, 
+ * and limits its file system operations per second, 
+ * hence it does not compete with the startup of the application.
+ * A daemon reaper may get interrupted by JVM termination, 
+ * the remaining directories are reaped the next time.
+ * </p>
+ * <p>
+ * A root directory is stale, if the lock on its <code>jlnNNNN.tmp</code> and <code>jlnNNNN.lck</code> files
+ * can be acquired, i.e. its JVM is no more running, see {@link TempFileCache}.
+ * Stale root directories are sorted by age, newest first, and reaped unless:
+ * <ul>
+ *   <li>it is younger than {@link #getMinAge()}, or</li>
+ *   <li>it is one of the {@link #getKeep()} newest ones older than {@link #getMinAge()} and 
+ *       these kept roots don't exceed {@link #getMaxBytes()} in total.</li>
+ * </ul>
+ * The defaults reap all stale root directories.
+ * </p>
+ * <p>
+ * A {@link PersistentJarCache} directory is reaped, if it has not been used for {@link #getPersistentMaxAge()}
+ * and its lock can be acquired. Its lock file is kept, since other JVMs may wait on it.
+ * </p>
+ * <p>
+ * The policy is configured by the following properties:
+ * <ul>
+ *   <li><code>jogamp.tmp.cache.reaper.delay</code>: start delay in ms, defaults to {@link #DEFAULT_DELAY}</li>
+ *   <li><code>jogamp.tmp.cache.reaper.rate</code>: maximum file operations per second, 0 for unlimited, defaults to {@link #DEFAULT_RATE}</li>
+ *   <li><code>jogamp.tmp.cache.reaper.keep</code>: number of newest stale roots to keep, defaults to 0</li>
+ *   <li><code>jogamp.tmp.cache.reaper.maxBytes</code>: maximum total size of kept stale roots, 0 for unlimited, defaults to 0</li>
+ *   <li><code>jogamp.tmp.cache.reaper.minAge</code>: minimum age in ms of reaped stale roots, defaults to 0</li>
+ *   <li><code>jogamp.tmp.cache.persistent.maxAge</code>: maximum unused age in ms of persistent directories, 0 to never reap them, defaults to {@link #DEFAULT_PERSISTENT_MAX_AGE}</li>
+ * </ul>
+ * </p>
+ */
+public class TempFileCacheReaper implements Runnable {
+    private static final boolean DEBUG = Debug.debug("TempFileCache");
+    
+    /** Default start delay, 1s. */
+    public static final long DEFAULT_DELAY = 1000;
+    /** Default maximum file operations per second, 1000. */
+    public static final int DEFAULT_RATE = 1000;
+    /** Default maximum unused age of persistent directories, 30 days. */
+    public static final long DEFAULT_PERSISTENT_MAX_AGE = 30L * 24L * 60L * 60L * 1000L;
+    
+    /** Number of file operations between rate checks. */
+    private static final int RATE_BATCH = 16;
+    
+    private final File baseDir;
+    private final String ownLockFileName;
+    
+    private long delay;
+    private int rate;
+    private int keep;
+    private long maxBytes;
+    private long minAge;
+    private long persistentMaxAge;
+    
+    // metrics, only written by the reaping thread
+    private volatile int rootsFound;
+    private volatile int rootsReaped;
+    private volatile int rootsKept;
+    private volatile int persistentReaped;
+    private volatile long filesDeleted;
+    private volatile long bytesReclaimed;
+    private volatile long duration;
+    private volatile boolean done;
+    
+    // rate limiter state
+    private long ops;
+    private long t0;
+    private boolean interrupted;
+    
+    /**
+     * Creates a reaper with the policy configured by the properties.
+     * 
+     * @param baseDir the base directory, usually {@link TempFileCache#getBaseDir()}
+     * @param ownLockFileName the <code>jlnNNNN.lck</code> file name of this JVM's root directory, not to be reaped, maybe <code>null</code> 
+     */
+    public TempFileCacheReaper(File baseDir, String ownLockFileName) {
+        this.baseDir = baseDir;
+        this.ownLockFileName = ownLockFileName;
+        delay = Debug.getLongProperty("jogamp.tmp.cache.reaper.delay", true, AccessController.getContext(), DEFAULT_DELAY);
+        rate = Debug.getIntProperty("jogamp.tmp.cache.reaper.rate", true, AccessController.getContext(), DEFAULT_RATE);
+        keep = Debug.getIntProperty("jogamp.tmp.cache.reaper.keep", true, AccessController.getContext(), 0);
+        maxBytes = Debug.getLongProperty("jogamp.tmp.cache.reaper.maxBytes", true, AccessController.getContext(), 0);
+        minAge = Debug.getLongProperty("jogamp.tmp.cache.reaper.minAge", true, AccessController.getContext(), 0);
+        persistentMaxAge = Debug.getLongProperty("jogamp.tmp.cache.persistent.maxAge", true, AccessController.getContext(), DEFAULT_PERSISTENT_MAX_AGE);
+    }
+    
+    public final long getDelay() { return delay; }
+    public final void setDelay(long ms) { delay = ms; }
+    
+    public final int getRate() { return rate; }
+    public final void setRate(int opsPerSecond) { rate = opsPerSecond; }
+    
+    public final int getKeep() { return keep; }
+    public final void setKeep(int roots) { keep = roots; }
+    
+    public final long getMaxBytes() { return maxBytes; }
+    public final void setMaxBytes(long bytes) { maxBytes = bytes; }
+    
+    public final long getMinAge() { return minAge; }
+    public final void setMinAge(long ms) { minAge = ms; }
+    
+    public final long getPersistentMaxAge() { return persistentMaxAge; }
+    public final void setPersistentMaxAge(long ms) { persistentMaxAge = ms; }
+    
+    /** Number of stale root directories found. */
+    public final int getRootsFound() { return rootsFound; }
+    /** Number of stale root directories reaped. */
+    public final int getRootsReaped() { return rootsReaped; }
+    /** Number of stale root directories kept by policy. */
+    public final int getRootsKept() { return rootsKept; }
+    /** Number of {@link PersistentJarCache} directories reaped. */
+    public final int getPersistentReaped() { return persistentReaped; }
+    /** Number of deleted files and directories. */
+    public final long getFilesDeleted() { return filesDeleted; }
+    /** Reclaimed bytes, i.e. the total length of all deleted files. */
+    public final long getBytesReclaimed() { return bytesReclaimed; }
+    /** Duration of the reaping in ms, excluding the start delay. */
+    public final long getDuration() { return duration; }
+    /** True if reaping has completed. */
+    public final boolean isDone() { return done; }
+    
+    /**
+     * Starts a low priority daemon thread, 
+     * running this reaper after {@link #getDelay()}.
+     */
+    public final Thread start() {
+        final Thread reaperThread = new Thread() {
+            /* @Override */
+            public void run() {
+                if( 0 < delay ) {
+                    try {
+                        Thread.sleep(delay);
+                    } catch (InterruptedException ie) {
+                        return;
+                    }
+                }
+                TempFileCacheReaper.this.run();
+            }
+        };
+        reaperThread.setName("TempFileCache-Reaper");
+        reaperThread.setDaemon(true);
+        reaperThread.setPriority(Thread.MIN_PRIORITY);
+        reaperThread.start();
+        return reaperThread;
+    }
+    
+    /**
+     * Reaps the stale root directories and unused persistent directories on the current thread.
+     */
+    public final void run() {
+        if (DEBUG) {
+            System.err.println("TempFileCache: *** Reaper: deleteOldTempDirs in " +
+                    baseDir.getAbsolutePath());
+        }
+        t0 = System.currentTimeMillis();
+        ops = 0;
+        interrupted = false;
+        try {
+            reapRoots();
+            if( 0 < persistentMaxAge ) {
+                reapPersistent();
+            }
+        } finally {
+            duration = System.currentTimeMillis() - t0;
+            done = true;
+            if (DEBUG) {
+                System.err.println("TempFileCache: *** Reaper: done " + toString());
+            }
+        }
+    }
+    
+    /** A root directory, locked while deciding about it. */
+    private static class Root {
+        final File lckFile, tmpFile, tmpDir;
+        final long lastModified;
+        FileOutputStream tmpOut, lckOut;
+        Root(File lckFile, File tmpFile, File tmpDir) {
+            this.lckFile = lckFile;
+            this.tmpFile = tmpFile;
+            this.tmpDir = tmpDir;
+            this.lastModified = tmpDir.lastModified();
+        }
+        /** Closes the streams, releasing the locks. */
+        void close() {
+            try {
+                if( null != lckOut ) {
+                    lckOut.close();
+                }
+            } catch (IOException ex) { }
+            try {
+                if( null != tmpOut ) {
+                    tmpOut.close();
+                }
+            } catch (IOException ex) { }
+        }
+    }
+    
+    private void reapRoots() {
+        // enumerate list of jnl*.lck files, ignore our own jlnNNNN file
+        FilenameFilter lckFilter = new FilenameFilter() {
+            /* @Override */
+            public boolean accept(File dir, String name) {
+                return name.endsWith(".lck") && !name.equals(ownLockFileName);
+            }
+        };
+
+        // Collect the candidates unlocked, they are locked one at a time below,
+        // hence only one root's files are open at once.
+        final List<Root> roots = new ArrayList<Root>();
+        String[] fileNames = baseDir.list(lckFilter);
+        if (fileNames == null) {
+            return;
+        }
+        for (int i = 0; i < fileNames.length && !interrupted; i++) {
+            String lckFileName = fileNames[i];
+            String tmpDirName = lckFileName.substring(0, lckFileName.lastIndexOf(".lck"));
+            String tmpFileName = tmpDirName + ".tmp";
+
+            File lckFile = new File(baseDir, lckFileName);
+            File tmpFile = new File(baseDir, tmpFileName);
+            File tmpDir = new File(baseDir, tmpDirName);
+            throttle();
+
+            if (lckFile.exists() && tmpFile.exists() && tmpDir.isDirectory()) {
+                roots.add(new Root(lckFile, tmpFile, tmpDir));
+            } else {
+                if (DEBUG) {
+                    System.err.println("TempFileCache: Skipping: " + tmpDir.getAbsolutePath());
+                }
+            }
+        }
+        
+        // newest first
+        Collections.sort(roots, new Comparator<Root>() {
+            public int compare(Root r1, Root r2) {
+                return r1.lastModified > r2.lastModified ? -1 : ( r1.lastModified < r2.lastModified ? 1 : 0 );
+            }
+        });
+        final long now = System.currentTimeMillis();
+        long keptBytes = 0;
+        int kept = 0; // counted against keep and maxBytes
+        int retained = 0;
+        for (int i = 0; i < roots.size() && !interrupted; i++) {
+            final Root root = roots.get(i);
+            // For each file <file>.lck in the list we will first try to lock
+            // <file>.tmp if that succeeds then we will try to lock <file>.lck
+            // (which should always succeed unless there is a problem). If we can
+            // get the lock on both files, then it must be an old installation.
+            if( !lock(root) ) {
+                root.close();
+                continue;
+            }
+            rootsFound++;
+            boolean reap = true;
+            if( now - root.lastModified < minAge ) {
+                // too young, neither counted against keep nor maxBytes
+                reap = false;
+            } else if( kept < keep ) {
+                if( 0 < maxBytes ) {
+                    final long sz = size(root.tmpDir);
+                    reap = keptBytes + sz > maxBytes;
+                    if( !reap ) {
+                        keptBytes += sz;
+                    }
+                } else {
+                    reap = false;
+                }
+                if( !reap ) {
+                    kept++;
+                }
+            }
+            if( reap ) {
+                // Recursively remove the old tmpDir and all of
+                // its contents
+                removeAll(root.tmpDir);
+
+                // Close the streams and delete the .lck and .tmp
+                // files. Note that there is a slight race condition
+                // in that another process could open a stream at
+                // the same time we are trying to delete it, which will
+                // prevent deletion, but we won't worry about it, since
+                // the worst that will happen is we might have an
+                // occasional 0-byte .lck or .tmp file left around
+                root.close();
+                root.lckFile.delete();
+                root.tmpFile.delete();
+                rootsReaped++;
+            } else {
+                if (DEBUG) {
+                    System.err.println("TempFileCache: Keeping: " + root.tmpDir.getAbsolutePath());
+                }
+                root.close();
+                retained++;
+                rootsKept = retained;
+            }
+        }
+    }
+    
+    /**
+     * Acquires the locks of the given root's <code>.tmp</code> and <code>.lck</code> files.
+     * @return true if both locks have been acquired, i.e. the root is stale.
+     */
+    private static boolean lock(Root root) {
+        FileLock tmpLock = null;
+        try {
+            root.tmpOut = new FileOutputStream(root.tmpFile);
+            final FileChannel tmpChannel = root.tmpOut.getChannel();
+            tmpLock = tmpChannel.tryLock();
+        } catch (Exception ex) {
+            // Ignore exceptions
+            if (DEBUG) {
+                ex.printStackTrace();
+            }
+        }
+        if (tmpLock != null) {
+            FileLock lckLock = null;
+            try {
+                root.lckOut = new FileOutputStream(root.lckFile);
+                final FileChannel lckChannel = root.lckOut.getChannel();
+                lckLock = lckChannel.tryLock();
+            } catch (Exception ex) {
+                if (DEBUG) {
+                    ex.printStackTrace();
+                }
+            }
+            return lckLock != null;
+        }
+        return false;
+    }
+    
+    private void reapPersistent() {
+        final File persistentDir = PersistentJarCache.getUserDirectory(baseDir);
+        if( !persistentDir.isDirectory() ) {
+            return;
+        }
+        try {
+            PersistentJarCache.validateUserDirectory(persistentDir);
+        } catch (IOException ex) {
+            // not ours
+            if (DEBUG) {
+                ex.printStackTrace();
+            }
+            return;
+        }
+        final File[] dirs = persistentDir.listFiles();
+        if( null == dirs ) {
+            return;
+        }
+        final long now = System.currentTimeMillis();
+        for (int i = 0; i < dirs.length && !interrupted; i++) {
+            final File dir = dirs[i];
+            final File lckFile = new File(persistentDir, dir.getName() + ".lck");
+            throttle();
+            if( !dir.isDirectory() || !lckFile.isFile() || now - lckFile.lastModified() <= persistentMaxAge ) {
+                continue;
+            }
+            RandomAccessFile lckOut = null;
+            try {
+                lckOut = new RandomAccessFile(lckFile, "rw");
+                final FileLock lckLock = lckOut.getChannel().tryLock();
+                // the directory may have been used between the age check and the lock
+                if( null != lckLock && System.currentTimeMillis() - lckFile.lastModified() > persistentMaxAge ) {
+                    // lock file is kept, others may wait on it
+                    removeAll(dir);
+                    persistentReaped++;
+                }
+            } catch (Exception ex) {
+                // in use, incl. OverlappingFileLockException by this JVM
+                if (DEBUG) {
+                    ex.printStackTrace();
+                }
+            } finally {
+                if( null != lckOut ) {
+                    try {
+                        lckOut.close();
+                    } catch (IOException ex) { }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Remove the specified file or directory. If "path" is a directory, then
+     * recursively remove all entries, then remove the directory itself.
+     */
+    private void removeAll(File path) {
+        if (DEBUG) {
+            System.err.println("TempFileCache: removeAll(" + path + ")");
+        }
+
+        if (path.isDirectory()) {
+            // Recursively remove all files/directories in this directory
+            File[] list = path.listFiles();
+            if (list != null) {
+                for (int i = 0; i < list.length && !interrupted; i++) {
+                    removeAll(list[i]);
+                }
+            }
+        }
+        if( interrupted ) {
+            return;
+        }
+        
+        throttle();
+        final long length = path.isFile() ? path.length() : 0;
+        if( path.delete() ) {
+            filesDeleted++;
+            bytesReclaimed += length;
+        }
+    }
+    
+    /** @return the total length of all files within the given directory */
+    private long size(File path) {
+        throttle();
+        if (path.isDirectory()) {
+            long sz = 0;
+            File[] list = path.listFiles();
+            if (list != null) {
+                for (int i = 0; i < list.length && !interrupted; i++) {
+                    sz += size(list[i]);
+                }
+            }
+            return sz;
+        }
+        return path.length();
+    }
+    
+    /**
+     * Accounts for one file operation and sleeps if the operations 
+     * exceed the {@link #getRate() rate} since start.
+     */
+    private void throttle() {
+        ops++;
+        if( 0 >= rate || 0 != ops % RATE_BATCH ) {
+            return;
+        }
+        final long expected = ops * 1000L / rate;
+        final long elapsed = System.currentTimeMillis() - t0;
+        if( expected > elapsed ) {
+            try {
+                Thread.sleep(expected - elapsed);
+            } catch (InterruptedException ie) {
+                interrupted = true;
+            }
+        }
+    }
+    
+    public String toString() {
+        return "TempFileCacheReaper[roots found "+rootsFound+", reaped "+rootsReaped+", kept "+rootsKept+
+               ", persistent reaped "+persistentReaped+", files "+filesDeleted+", bytes "+bytesReclaimed+
+               ", "+duration+"ms, done "+done+"]";
+    }
+}
@@ -27,37 +27,63 @@
  */
 package com.jogamp.common.util.cache;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.security.cert.Certificate;
 import java.util.Enumeration;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
 import com.jogamp.common.os.NativeLibrary;
 import com.jogamp.common.util.JarUtil;
 
+import jogamp.common.Debug;
+
+/**
+ * Cache of the extracted contents of jar files.
+ * <p>
+ * All methods are thread safe.
+ * Adding a jar file only serializes with other threads adding the same jar file,
+ * lookups are never blocked.
+ * The extracted files are indexed once per jar file, hence lookups don't access the file system.
+ * </p>
+ */
 public class TempJarCache {
+    private static final boolean DEBUG = Debug.debug("TempJarCache");
+    
+    /** Copy buffer size used by {@link #bootstrapNativeLib(Class, String, JarFile)}, 64 KiB. */
+    private static final int BOOTSTRAP_BUFFER_SIZE = 64 * 1024;
+    
     // A HashMap of native libraries that can be loaded with System.load()
     // The key is the string name of the library as passed into the loadLibrary
     // call; it is the file name without the directory or the platform-dependent
     // library prefix and suffix. The value is the absolute path name to the
     // unpacked library file in nativeTmpDir.
-    private static Map<String, String> nativeLibMap;
+    private static ConcurrentMap<String, String> nativeLibMap;
 
-    // Set of native jar files added
-    private static Set<JarFile> nativeLibJars;
-    private static Set<JarFile> classFileJars;
-    private static Set<JarFile> resourceFileJars;
+    // Index of all extracted files, 
+    // the key is the jar entry name and the value is the absolute path name to the unpacked file.
+    private static ConcurrentMap<String, String> extractedFiles;
+    
+    // Negative lookup cache of findLibrary(..), the value is the missGeneration of the lookup.
+    // A cached miss is only valid within the same generation, 
+    // which is incremented each time native libraries are added.
+    private static ConcurrentMap<String, Integer> missingLibs;
+    private static AtomicInteger missGeneration;
+    
+    // Set of native jar files added, the value is always Boolean.TRUE
+    private static ConcurrentMap<JarFile, Boolean> nativeLibJars;
+    private static ConcurrentMap<JarFile, Boolean> classFileJars;
+    private static ConcurrentMap<JarFile, Boolean> resourceFileJars;
+    
+    // Per jar file monitor, serializing its extraction.
+    // Not the JarFile itself, which is used as a monitor internally by its implementation.
+    private static ConcurrentMap<JarFile, Object> jarFileLocks;
 
     private static TempFileCache tmpFileCache;
     
@@ -73,7 +99,6 @@ public class TempJarCache {
         if (!isInit) { // volatile: ok
             synchronized (TempJarCache.class) {
                 if (!isInit) {
-                    isInit = true;
                     staticInitError = !TempFileCache.initSingleton();
             
                     if(!staticInitError) {
@@ -83,11 +108,17 @@ public class TempJarCache {
                     
                     if(!staticInitError) {
                         // Initialize the collections of resources
-                        nativeLibMap = new HashMap<String, String>();
-                        nativeLibJars = new HashSet<JarFile>();
-                        classFileJars = new HashSet<JarFile>();
-                        resourceFileJars = new HashSet<JarFile>();
+                        nativeLibMap = new ConcurrentHashMap<String, String>();
+                        extractedFiles = new ConcurrentHashMap<String, String>();
+                        missingLibs = new ConcurrentHashMap<String, Integer>();
+                        missGeneration = new AtomicInteger(0);
+                        nativeLibJars = new ConcurrentHashMap<JarFile, Boolean>();
+                        classFileJars = new ConcurrentHashMap<JarFile, Boolean>();
+                        resourceFileJars = new ConcurrentHashMap<JarFile, Boolean>();
+                        jarFileLocks = new ConcurrentHashMap<JarFile, Object>();
                     }
+                    // publish the above state 
+                    isInit = true;
                 }
             }
         }
@@ -115,9 +146,33 @@ public class TempJarCache {
     
     public static boolean contains(JarFile jarFile) throws IOException {
         checkInitialized();
-        return nativeLibJars.contains(jarFile);
+        return nativeLibJars.containsKey(jarFile);
     }    
 
+    /**
+     * @return the monitor serializing the extraction of the given jar file
+     */
+    private static Object getJarFileLock(JarFile jarFile) {
+        Object lock = jarFileLocks.get(jarFile);
+        if( null == lock ) {
+            final Object newLock = new Object();
+            lock = jarFileLocks.putIfAbsent(jarFile, newLock);
+            if( null == lock ) {
+                lock = newLock;
+            }
+        }
+        return lock;
+    }
+    
+    /**
+     * Invalidates the negative lookup cache of {@link #findLibrary(String)}, 
+     * to be called after native libraries have been added.
+     */
+    private static void nativeLibsAdded() {
+        missGeneration.incrementAndGet();
+        missingLibs.clear();
+    }
+    
     /**
      * Adds native libraries, if not yet added.
      * 
@@ -130,12 +185,20 @@ public class TempJarCache {
      */
     public static final boolean addNativeLibs(Class<?> certClass, JarFile jarFile) throws IOException, SecurityException {        
         checkInitialized();
-        if(!nativeLibJars.contains(jarFile)) {
-            validateCertificates(certClass, jarFile);
-            JarUtil.extract(tmpFileCache.getTempDir(), nativeLibMap, jarFile, 
-                            true, false, false); 
-            nativeLibJars.add(jarFile);
-            return true;
+        if(nativeLibJars.containsKey(jarFile)) {
+            return false;
+        }
+        synchronized( getJarFileLock(jarFile) ) {
+            if(!nativeLibJars.containsKey(jarFile)) {
+                final Certificate[] rootCerts = validateCertificates(certClass, jarFile);
+                if( !PersistentJarCache.ENABLED || !extractPersistentNativeLibs(rootCerts, jarFile) ) {
+                    JarUtil.extract(tmpFileCache.getTempDir(), nativeLibMap, extractedFiles, jarFile, 
+                                    true, false, false);
+                }
+                nativeLibJars.put(jarFile, Boolean.TRUE);
+                nativeLibsAdded();
+                return true;
+            }
         }
         return false;
     }
@@ -155,12 +218,17 @@ public class TempJarCache {
      */
     public static final boolean addClasses(Class<?> certClass, JarFile jarFile) throws IOException, SecurityException {
         checkInitialized();
-        if(!classFileJars.contains(jarFile)) {
-            validateCertificates(certClass, jarFile);
-            JarUtil.extract(tmpFileCache.getTempDir(), null, jarFile, 
-                            false, true, false); 
-            classFileJars.add(jarFile);
-            return true;
+        if(classFileJars.containsKey(jarFile)) {
+            return false;
+        }
+        synchronized( getJarFileLock(jarFile) ) {
+            if(!classFileJars.containsKey(jarFile)) {
+                validateCertificates(certClass, jarFile);
+                JarUtil.extract(tmpFileCache.getTempDir(), null, extractedFiles, jarFile, 
+                                false, true, false); 
+                classFileJars.put(jarFile, Boolean.TRUE);
+                return true;
+            }
         }
         return false;
     }
@@ -177,12 +245,17 @@ public class TempJarCache {
      */
     public static final boolean addResources(Class<?> certClass, JarFile jarFile) throws IOException, SecurityException {        
         checkInitialized();
-        if(!resourceFileJars.contains(jarFile)) {
-            validateCertificates(certClass, jarFile);
-            JarUtil.extract(tmpFileCache.getTempDir(), null, jarFile, 
-                            false, false, true); 
-            resourceFileJars.add(jarFile);
-            return true;
+        if(resourceFileJars.containsKey(jarFile)) {
+            return false;
+        }
+        synchronized( getJarFileLock(jarFile) ) {
+            if(!resourceFileJars.containsKey(jarFile)) {
+                validateCertificates(certClass, jarFile);
+                JarUtil.extract(tmpFileCache.getTempDir(), null, extractedFiles, jarFile, 
+                                false, false, true); 
+                resourceFileJars.put(jarFile, Boolean.TRUE);
+                return true;
+            }
         }
         return false;
     }
@@ -203,41 +276,78 @@ public class TempJarCache {
      */
     public static final boolean addAll(Class<?> certClass, JarFile jarFile) throws IOException, SecurityException {
         checkInitialized();
-        if(!nativeLibJars.contains(jarFile) || 
-           !classFileJars.contains(jarFile) || 
-           !resourceFileJars.contains(jarFile)) {
-            final boolean extractNativeLibraries = !nativeLibJars.contains(jarFile);
-            final boolean extractClassFiles = !classFileJars.contains(jarFile);
-            final boolean extractOtherFiles = !resourceFileJars.contains(jarFile);
-            validateCertificates(certClass, jarFile);
-            JarUtil.extract(tmpFileCache.getTempDir(), nativeLibMap, jarFile, 
-                            extractNativeLibraries, extractClassFiles, extractOtherFiles);
-            if(extractNativeLibraries) {
-                nativeLibJars.add(jarFile);
-            }
-            if(extractClassFiles) {
-                classFileJars.add(jarFile);
-            }
-            if(extractOtherFiles) {
-                resourceFileJars.add(jarFile);
+        if(nativeLibJars.containsKey(jarFile) && 
+           classFileJars.containsKey(jarFile) && 
+           resourceFileJars.containsKey(jarFile)) {
+            return false;
+        }
+        synchronized( getJarFileLock(jarFile) ) {
+            final boolean extractNativeLibraries = !nativeLibJars.containsKey(jarFile);
+            final boolean extractClassFiles = !classFileJars.containsKey(jarFile);
+            final boolean extractOtherFiles = !resourceFileJars.containsKey(jarFile);
+            if( extractNativeLibraries || extractClassFiles || extractOtherFiles ) {
+                final Certificate[] rootCerts = validateCertificates(certClass, jarFile);
+                if( extractNativeLibraries && PersistentJarCache.ENABLED && extractPersistentNativeLibs(rootCerts, jarFile) ) {
+                    if( extractClassFiles || extractOtherFiles ) {
+                        JarUtil.extract(tmpFileCache.getTempDir(), nativeLibMap, extractedFiles, jarFile, 
+                                        false, extractClassFiles, extractOtherFiles);
+                    }
+                } else {
+                    JarUtil.extract(tmpFileCache.getTempDir(), nativeLibMap, extractedFiles, jarFile, 
+                                    extractNativeLibraries, extractClassFiles, extractOtherFiles);
+                }
+                if(extractNativeLibraries) {
+                    nativeLibJars.put(jarFile, Boolean.TRUE);
+                    nativeLibsAdded();
+                }
+                if(extractClassFiles) {
+                    classFileJars.put(jarFile, Boolean.TRUE);
+                }
+                if(extractOtherFiles) {
+                    resourceFileJars.put(jarFile, Boolean.TRUE);
+                }
+                return true;
             }
-            return true;
         }
         return false;
     }
     
+    /**
+     * Returns the absolute path of the native library of the given name, or <code>null</code> if not found.
+     * <p>
+     * Looks up the mapped library basenames first. 
+     * A valid library file name is looked up in the index of extracted files, 
+     * then as a file in the temp directory, e.g. copied there by the application, which is indexed if existing.
+     * </p>
+     * <p>
+     * A miss is cached until native libraries are added, 
+     * hence a library file copied to the temp directory after a miss is only found after that.
+     * </p>
+     */
     public static final String findLibrary(String libName) {
         checkInitialized();
         // try with mapped library basename first
         String path = nativeLibMap.get(libName);
         if(null == path) {
-            // if valid library name, try absolute path in temp-dir
+            final int generation = missGeneration.get();
+            final Integer missed = missingLibs.get(libName);
+            if( null != missed && generation == missed.intValue() ) {
+                return null;
+            }
+            // if valid library name, try extracted file (root entry) or absolute path in temp-dir
             if(null != NativeLibrary.isValidNativeLibraryName(libName, false)) {    
-                final File f = new File(tmpFileCache.getTempDir(), libName);
-                if(f.exists()) {
-                    path = f.getAbsolutePath();
+                path = extractedFiles.get(libName);
+                if(null == path) {
+                    final File f = new File(tmpFileCache.getTempDir(), libName);
+                    if(f.exists()) {
+                        path = f.getAbsolutePath();
+                        extractedFiles.putIfAbsent(libName, path);
+                    }
                 }
             }
+            if(null == path) {
+                missingLibs.put(libName, Integer.valueOf(generation));
+            }
         }
         return path;
     }
@@ -257,11 +367,25 @@ public class TempJarCache {
         return null;
     } */
     
+    /**
+     * Returns the absolute path of the extracted file of the given entry name, or <code>null</code> if not found.
+     * <p>
+     * Looks up the index of extracted files first. 
+     * A file not indexed but existing in the temp directory, e.g. copied there by the application, 
+     * is found as well and indexed.
+     * </p>
+     */
     public static final String findResource(String name) {
         checkInitialized();
+        final String path = extractedFiles.get(name);
+        if(null != path) {
+            return path;
+        }
         final File f = new File(tmpFileCache.getTempDir(), name);
         if(f.exists()) {
-            return f.getAbsolutePath();
+            final String fPath = f.getAbsolutePath();
+            extractedFiles.putIfAbsent(name, fPath);
+            return fPath;
         }
         return null;
     }
@@ -279,34 +403,38 @@ public class TempJarCache {
     public static final boolean bootstrapNativeLib(Class<?> certClass, String libBaseName, JarFile jarFile) 
             throws IOException, SecurityException {
         checkInitialized();
-        if(!nativeLibJars.contains(jarFile) && !nativeLibMap.containsKey(libBaseName) ) {                    
-           validateCertificates(certClass, jarFile);
-           final Enumeration<JarEntry> entries = jarFile.entries();
-            while (entries.hasMoreElements()) {
-                final JarEntry entry = (JarEntry) entries.nextElement();
-                final String entryName = entry.getName();
-    
-                if( entryName.indexOf('/') == -1 &&
-                    entryName.indexOf(File.separatorChar) == -1 &&
-                    entryName.indexOf(libBaseName) >= 0 ) 
-                {
-                    final File destFile = new File(tmpFileCache.getTempDir(), entryName);
-                    final InputStream in = new BufferedInputStream(jarFile.getInputStream(entry));
-                    final OutputStream out = new BufferedOutputStream(new FileOutputStream(destFile));
-                    int numBytes = 0; 
-                    try {
-                        final byte[] buf = new byte[ 2048 ];
-                        while (true) {
-                            int count;
-                            if ((count = in.read(buf)) == -1) { break; }
-                            out.write(buf, 0, count);
-                            numBytes += count;
+        if(nativeLibJars.containsKey(jarFile) || nativeLibMap.containsKey(libBaseName) ) {
+            return false;
+        }
+        synchronized( getJarFileLock(jarFile) ) {
+            if(!nativeLibJars.containsKey(jarFile) && !nativeLibMap.containsKey(libBaseName) ) {                    
+                final Certificate[] rootCerts = validateCertificates(certClass, jarFile);
+                final PersistentJarCache persistentCache = PersistentJarCache.ENABLED ? lockPersistentCache(rootCerts, jarFile) : null;
+                final File destDir = null != persistentCache ? persistentCache.getDirectory() : tmpFileCache.getTempDir();
+                try {
+                    final Enumeration<JarEntry> entries = jarFile.entries();
+                    while (entries.hasMoreElements()) {
+                        final JarEntry entry = (JarEntry) entries.nextElement();
+                        final String entryName = entry.getName();
+        
+                        if( entryName.indexOf('/') == -1 &&
+                            entryName.indexOf(File.separatorChar) == -1 &&
+                            entryName.indexOf(libBaseName) >= 0 ) 
+                        {
+                            final File destFile = new File(destDir, entryName);
+                            final int numBytes = JarUtil.extract(jarFile, entry, destFile, new byte[ BOOTSTRAP_BUFFER_SIZE ]);
+                            if (numBytes>0) {
+                                extractedFiles.put(entryName, destFile.getAbsolutePath());
+                                nativeLibMap.put(libBaseName, destFile.getAbsolutePath());
+                                nativeLibJars.put(jarFile, Boolean.TRUE);
+                                nativeLibsAdded();
+                                return true;
+                            }
                         }
-                    } finally { in.close(); out.close(); }
-                    if (numBytes>0) {
-                        nativeLibMap.put(libBaseName, destFile.getAbsolutePath());
-                        nativeLibJars.add(jarFile);
-                        return true;
+                    }
+                } finally {
+                    if( null != persistentCache ) {
+                        persistentCache.unlock();
                     }
                 }
             }
@@ -314,7 +442,70 @@ public class TempJarCache {
         return false;
     }
     
-    private static void validateCertificates(Class<?> certClass, JarFile jarFile) throws IOException, SecurityException {
+    /**
+     * Extracts the native libraries of the given jar file into its {@link PersistentJarCache} directory.
+     * 
+     * @return true if successful and the libraries are added to the nativeLibMap, 
+     *         otherwise false and the caller shall extract them into the temp directory. 
+     */
+    private static boolean extractPersistentNativeLibs(Certificate[] rootCerts, JarFile jarFile) {
+        final PersistentJarCache persistentCache = lockPersistentCache(rootCerts, jarFile);
+        if( null == persistentCache ) {
+            return false;
+        }
+        try {
+            // map into a local map first, the fallback shall not see partial results
+            final Map<String, String> libMap = new HashMap<String, String>();
+            final Map<String, String> fileMap = new HashMap<String, String>();
+            JarUtil.extract(persistentCache.getDirectory(), libMap, fileMap, jarFile, 
+                            true, false, false);
+            // merge w/ the same rule as JarUtil.extract(..): root entries take precedence,
+            // others don't replace a library already mapped from another jar file
+            final String rootDir = persistentCache.getDirectory().getAbsolutePath();
+            for(Map.Entry<String, String> e : libMap.entrySet()) {
+                if( rootDir.equals(new File(e.getValue()).getParent()) ) {
+                    nativeLibMap.put(e.getKey(), e.getValue());
+                } else {
+                    nativeLibMap.putIfAbsent(e.getKey(), e.getValue());
+                }
+            }
+            extractedFiles.putAll(fileMap);
+            return true;
+        } catch (IOException ex) {
+            System.err.println("TempJarCache: Persistent cache failed for "+jarFile.getName()+": "+ex.getMessage());
+            if(DEBUG) {
+                ex.printStackTrace();
+            }
+            return false;
+        } finally {
+            persistentCache.unlock();
+        }
+    }
+    
+    /**
+     * @return the locked {@link PersistentJarCache} of the given jar file, or null if not available.
+     */
+    private static PersistentJarCache lockPersistentCache(Certificate[] rootCerts, JarFile jarFile) {
+        try {
+            final PersistentJarCache persistentCache = new PersistentJarCache(tmpFileCache.getBaseDir(), rootCerts, jarFile);
+            persistentCache.lock();
+            if(DEBUG) {
+                System.err.println("TempJarCache: Persistent cache for "+jarFile.getName()+": "+persistentCache.getDirectory());
+            }
+            return persistentCache;
+        } catch (IOException ex) {
+            System.err.println("TempJarCache: Persistent cache not available for "+jarFile.getName()+": "+ex.getMessage());
+            if(DEBUG) {
+                ex.printStackTrace();
+            }
+            return null;
+        }
+    }
+    
+    /**
+     * @return the validated certificates of <code>certClass</code>, maybe <code>null</code>
+     */
+    private static Certificate[] validateCertificates(Class<?> certClass, JarFile jarFile) throws IOException, SecurityException {
         if(null == certClass) {
             throw new IllegalArgumentException("certClass is null");
         }
@@ -326,6 +517,8 @@ public class TempJarCache {
             // In case one tries to run uncertified JARs, the wrapping applet/JNLP
             // SecurityManager will kick in and throw a SecurityException.
             JarUtil.validateCertificates(rootCerts, jarFile);
-        }                        
+            return rootCerts;
+        }
+        return null;
     }    
 }
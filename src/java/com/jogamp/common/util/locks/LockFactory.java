@@ -29,12 +29,20 @@ package com.jogamp.common.util.locks;
 
 import jogamp.common.util.locks.RecursiveLockImpl01CompleteFair;
 import jogamp.common.util.locks.RecursiveLockImpl01Unfairish;
+import jogamp.common.util.locks.RecursiveLockImpl02CAS;
+import jogamp.common.util.locks.RecursiveReadWriteLockImplJava5;
+import jogamp.common.util.locks.RecursiveStampedLockImpl01;
 import jogamp.common.util.locks.RecursiveLockImplJava5;
 
 public class LockFactory {
 
     public enum ImplType {
-        Int01(0), Java5(1); 
+        /** Monitor based, see {@link RecursiveLockImpl01Unfairish} and {@link RecursiveLockImpl01CompleteFair} */
+        Int01(0), 
+        /** {@link java.util.concurrent.locks.ReentrantLock} based */
+        Java5(1), 
+        /** CAS based w/o blocking if uncontended, see {@link RecursiveLockImpl02CAS} */
+        Int02(2); 
         
         public final int id;
 
@@ -43,17 +51,72 @@ public class LockFactory {
         }
     }    
     
-    /** default is ImplType.Int01, unfair'ish (fastest w/ least deviation) */
+    /** 
+     * default is ImplType.Int01, unfair'ish (fastest w/ least deviation)
+     * <p>
+     * The lock is metered if {@link LockMetrics#ENABLED}.
+     * </p>
+     */
     public static RecursiveLock createRecursiveLock() {
-        return new RecursiveLockImpl01Unfairish();
+        return new RecursiveLockImpl01Unfairish(LockMetrics.ENABLED, null);
     }
     
+    /** 
+     * The lock is metered if {@link LockMetrics#ENABLED}.
+     */
     public static RecursiveLock createRecursiveLock(ImplType t, boolean fair) {
+        return createRecursiveLockImpl(t, fair, LockMetrics.ENABLED, null);
+    }
+    
+    /** 
+     * Returns a lock which is always metered, regardless of {@link LockMetrics#ENABLED}.
+     * 
+     * @param name the name of the lock in the {@link LockMetrics}, 
+     *             if <code>null</code> the location of the lock creation is used if {@link Lock#DEBUG},
+     *             otherwise the lock class and its identity
+     * @see LockMetrics#get(Lock)
+     */
+    public static RecursiveLock createMeteredRecursiveLock(ImplType t, boolean fair, String name) {
+        return createRecursiveLockImpl(t, fair, true, name);
+    }
+    
+    /** 
+     * Returns a read-write lock for read-mostly data, 
+     * which may be read by multiple threads at the same time.
+     * Its read and write lock are metered if {@link LockMetrics#ENABLED}.
+     */
+    public static RecursiveReadWriteLock createRecursiveReadWriteLock(boolean fair) {
+        return new RecursiveReadWriteLockImplJava5(fair, LockMetrics.ENABLED, null);
+    }
+    
+    /** 
+     * Returns a read-write lock whose read and write lock are always metered, regardless of {@link LockMetrics#ENABLED}.
+     * 
+     * @param name the name of the lock in the {@link LockMetrics}, suffixed by <code>.read</code> and <code>.write</code>,
+     *             see {@link #createMeteredRecursiveLock(ImplType, boolean, String)}
+     * @see LockMetrics#get(Lock)
+     */
+    public static RecursiveReadWriteLock createMeteredRecursiveReadWriteLock(boolean fair, String name) {
+        return new RecursiveReadWriteLockImplJava5(fair, true, name);
+    }
+    
+    /** 
+     * Returns an exclusive lock w/ optimistic reads, 
+     * where the write lock is of the given type.
+     * The write lock is metered if {@link LockMetrics#ENABLED}.
+     */
+    public static RecursiveStampedLock createRecursiveStampedLock(ImplType t, boolean fair) {
+        return new RecursiveStampedLockImpl01(createRecursiveLock(t, fair));
+    }
+    
+    private static RecursiveLock createRecursiveLockImpl(ImplType t, boolean fair, boolean metered, String name) {
         switch(t) {
             case Int01:
-                return fair ? new RecursiveLockImpl01CompleteFair() : new RecursiveLockImpl01Unfairish();
+                return fair ? new RecursiveLockImpl01CompleteFair(metered, name) : new RecursiveLockImpl01Unfairish(metered, name);
             case Java5:
-                return new RecursiveLockImplJava5(fair);
+                return new RecursiveLockImplJava5(fair, metered, name);
+            case Int02:
+                return new RecursiveLockImpl02CAS(fair, metered, name);
         }
         throw new InternalError("XXX");
     }
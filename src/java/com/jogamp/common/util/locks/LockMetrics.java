@@ -0,0 +1,250 @@
+/**
+ * Copyright 2011 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.common.util.locks;
+
+import java.io.PrintStream;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.security.AccessController;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import jogamp.common.Debug;
+
+/**
+ * Contention metrics of a lock and the registry of all live metered locks.
+ * <p>
+ * All locks created by the {@link LockFactory} are metered if {@link #ENABLED},
+ * single locks may be metered via {@link LockFactory#createMeteredRecursiveLock(LockFactory.ImplType, boolean, String)}
+ * and {@link LockFactory#createMeteredRecursiveReadWriteLock(boolean, String)}.
+ * </p>
+ * <p>
+ * The lock implementations account their outermost acquisitions and releases
+ * from within their own lock paths, hence a lock w/o metrics has no overhead.
+ * The counters of an exclusive lock are updated by the owning thread while holding the lock,
+ * hence they do not add any synchronization and are read w/o blocking.
+ * The counters of a shared lock are updated while synchronized on the metrics.
+ * </p>
+ */
+public class LockMetrics {
+
+    /** Enable metering of all {@link LockFactory} created locks via the property <code>jogamp.common.utils.locks.Lock.metrics</code> */
+    public static final boolean ENABLED = Debug.isPropertyDefined("jogamp.common.utils.locks.Lock.metrics", true, AccessController.getContext());
+
+    /** A lock which may be metered. */
+    public interface Metered {
+        /** Returns the metrics of this lock, or <code>null</code> if it is not metered */
+        LockMetrics getMetrics();
+
+        /** Returns the current number of threads waiting for the lock */
+        int getQueueLength();
+    }
+
+    private static class Entry extends WeakReference<LockMetrics> {
+        Entry(LockMetrics m, ReferenceQueue<LockMetrics> q) {
+            super(m, q);
+        }
+    }
+
+    private static final ReferenceQueue<LockMetrics> collected = new ReferenceQueue<LockMetrics>();
+    private static final Set<Entry> registry = new LinkedHashSet<Entry>();
+
+    private final String name;
+    private final Metered lock;
+    private final boolean shared;
+
+    // written by the lock owner only, or synchronized if shared
+    private volatile long acquisitions;
+    private volatile long contendedAcquisitions;
+    private volatile long totalWaitNanos;
+    private volatile long maxWaitNanos;
+    private volatile long maxHoldNanos;
+
+    /**
+     * Creates and registers the metrics of the given exclusive lock.
+     * @param name the name of the lock, if <code>null</code> the location of the lock creation is used if {@link Lock#DEBUG},
+     *             otherwise the lock class and its identity
+     * @param lock the metered lock, used to query the queue length
+     */
+    public LockMetrics(String name, Metered lock) {
+        this(name, lock, false);
+    }
+
+    /**
+     * Creates and registers the metrics of the given lock.
+     * @param name the name of the lock, if <code>null</code> the location of the lock creation is used if {@link Lock#DEBUG},
+     *             otherwise the lock class and its identity
+     * @param lock the metered lock, used to query the queue length
+     * @param shared true if the lock may be held by multiple threads at the same time
+     */
+    public LockMetrics(String name, Metered lock, boolean shared) {
+        this.name = null != name ? name : defaultName(lock);
+        this.lock = lock;
+        this.shared = shared;
+        synchronized(registry) {
+            Entry e;
+            while( null != ( e = (Entry) collected.poll() ) ) {
+                registry.remove(e);
+            }
+            registry.add(new Entry(this, collected));
+        }
+    }
+
+    private static String defaultName(Metered lock) {
+        if(Lock.DEBUG) {
+            return creationSite();
+        }
+        return lock.getClass().getSimpleName()+"@"+Integer.toHexString(System.identityHashCode(lock));
+    }
+
+    /** Returns the first caller outside of the lock implementation */
+    private static String creationSite() {
+        final StackTraceElement[] st = new Throwable().getStackTrace();
+        for(int i=0; i<st.length; i++) {
+            final String cn = st[i].getClassName();
+            if( !cn.startsWith("jogamp.common.util.locks.") &&
+                !cn.equals(LockFactory.class.getName()) && !cn.equals(LockMetrics.class.getName()) ) {
+                return cn+"."+st[i].getMethodName()+":"+st[i].getLineNumber();
+            }
+        }
+        return "<unknown>";
+    }
+
+    /**
+     * Accounts the outermost acquisition of the lock, must be called by the new owner.
+     * @param contended true if the lock was held by another thread
+     * @param t0 the {@link System#nanoTime()} before trying to acquire the lock
+     * @return the {@link System#nanoTime()} of the acquisition, to be passed to {@link #released(long)}
+     */
+    public final long acquired(boolean contended, long t0) {
+        final long t1 = System.nanoTime();
+        if(shared) {
+            synchronized(this) {
+                account(contended ? 1 : 0, t1 - t0);
+            }
+        } else {
+            account(contended ? 1 : 0, t1 - t0);
+        }
+        return t1;
+    }
+
+    private final void account(int contended, long waitNanos) {
+        acquisitions++;
+        contendedAcquisitions += contended;
+        totalWaitNanos += waitNanos;
+        if(waitNanos > maxWaitNanos) {
+            maxWaitNanos = waitNanos;
+        }
+    }
+
+    /**
+     * Accounts the outermost release of the lock, must be called by the owner before unlocking.
+     * @param t1 the time of the acquisition as returned by {@link #acquired(boolean, long)}
+     */
+    public final void released(long t1) {
+        final long holdNanos = System.nanoTime() - t1;
+        if(shared) {
+            synchronized(this) {
+                accountHold(holdNanos);
+            }
+        } else {
+            accountHold(holdNanos);
+        }
+    }
+
+    private final void accountHold(long holdNanos) {
+        if(holdNanos > maxHoldNanos) {
+            maxHoldNanos = holdNanos;
+        }
+    }
+
+    public final String getName() { return name; }
+
+    /** Returns the number of outermost acquisitions */
+    public final long getAcquisitions() { return acquisitions; }
+
+    /** Returns the number of outermost acquisitions while the lock was held by another thread */
+    public final long getContendedAcquisitions() { return contendedAcquisitions; }
+
+    /** Returns the cumulative time in ns spent to acquire the lock */
+    public final long getTotalWaitNanos() { return totalWaitNanos; }
+
+    public final long getMaxWaitNanos() { return maxWaitNanos; }
+
+    /** Returns the longest time in ns the lock was held, from the outermost acquisition to its release */
+    public final long getMaxHoldNanos() { return maxHoldNanos; }
+
+    /** Returns the current number of threads waiting for the lock */
+    public final int getQueueLength() { return lock.getQueueLength(); }
+
+    public String toString() {
+        return "LockMetrics["+name+": acquired "+acquisitions+", contended "+contendedAcquisitions+
+               ", wait "+totalWaitNanos/1000+" us total, "+maxWaitNanos/1000+" us max, hold "+maxHoldNanos/1000+
+               " us max, qsz "+getQueueLength()+"]";
+    }
+
+    /** Returns the metrics of the given lock, or <code>null</code> if it is not metered */
+    public static LockMetrics get(Lock lock) {
+        return lock instanceof Metered ? ((Metered)lock).getMetrics() : null;
+    }
+
+    /** Returns a snapshot of the metrics of all live metered locks, in creation order */
+    public static List<LockMetrics> getAll() {
+        final List<LockMetrics> res = new ArrayList<LockMetrics>();
+        synchronized(registry) {
+            for(Iterator<Entry> i = registry.iterator(); i.hasNext(); ) {
+                final LockMetrics m = i.next().get();
+                if(null != m) {
+                    res.add(m);
+                }
+            }
+        }
+        return res;
+    }
+
+    /** Prints the metrics of all live metered locks, the locks w/ the longest total wait time first */
+    public static void dump(PrintStream out) {
+        final List<LockMetrics> all = getAll();
+        Collections.sort(all, new Comparator<LockMetrics>() {
+            public int compare(LockMetrics a, LockMetrics b) {
+                final long wa = a.getTotalWaitNanos(), wb = b.getTotalWaitNanos();
+                return wa < wb ? 1 : ( wa > wb ? -1 : 0 );
+            }
+        });
+        out.println("LockMetrics: "+all.size()+" locks");
+        for(int i=0; i<all.size(); i++) {
+            out.println(i+": "+all.get(i));
+        }
+    }
+}
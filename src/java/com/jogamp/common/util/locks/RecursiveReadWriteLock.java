@@ -0,0 +1,80 @@
+/**
+ * Copyright 2011 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.common.util.locks;
+
+/**
+ * Reentrance read-write locking toolkit.
+ * <p>
+ * Multiple threads may hold the shared {@link #readLock()} at the same time,
+ * while the exclusive {@link #writeLock()} excludes all readers and other writers.
+ * Both locks block up to {@link Lock#TIMEOUT} in {@link Lock#lock()} and 
+ * throw a RuntimeException after it, as {@link RecursiveLock} does.
+ * </p>
+ * <p>
+ * The owner of the write lock may also acquire the read lock (downgrading), 
+ * a reader may not acquire the write lock.
+ * </p>
+ */
+public interface RecursiveReadWriteLock {
+
+    /**
+     * The shared lock of a {@link RecursiveReadWriteLock}.
+     */
+    public interface ReadLock extends Lock {
+        /** Return the number of read locks held by the current thread. */
+        int getHoldCount();
+
+        /** Return the number of read locks held by all threads. */
+        int getReadLockCount();
+
+        /** Returns true if the current thread holds the read lock. */
+        boolean isOwner();
+
+        /** 
+         * Validates that the current thread holds the read lock.
+         * @throws RuntimeException if not
+         */
+        void validateLocked() throws RuntimeException;
+    }
+
+    /** Returns the shared read lock */
+    ReadLock readLock();
+
+    /** 
+     * Returns the exclusive write lock.
+     * <p>
+     * Its {@link Lock#lock()} and {@link Lock#tryLock(long)} throw a RuntimeException
+     * if the current thread only holds the read lock, since waiting for the other readers would never end.
+     * </p>
+     */
+    RecursiveLock writeLock();
+
+    /** Returns the number of threads waiting for the read or write lock */
+    int getQueueLength();
+}
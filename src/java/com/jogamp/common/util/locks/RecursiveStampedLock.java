@@ -0,0 +1,67 @@
+/**
+ * Copyright 2011 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.common.util.locks;
+
+/**
+ * Exclusive {@link RecursiveLock} w/ optimistic reading.
+ * <p>
+ * Readers do not acquire any lock but take a stamp via {@link #tryOptimisticRead()},
+ * read the guarded state and {@link #validate(long) validate} the stamp afterwards.
+ * If the stamp is no more valid, a writer took the lock in the meantime and the
+ * reader shall retry or fall back to {@link #lock()}:
+ * <pre>
+    long stamp = lock.tryOptimisticRead();
+    int x = this.x, y = this.y;
+    if( !lock.validate(stamp) ) {
+        lock.lock();
+        try {
+            x = this.x; y = this.y;
+        } finally {
+            lock.unlock();
+        }
+    }
+ * </pre>
+ * Fields read optimistically must be <code>volatile</code> or final references to immutable objects, 
+ * otherwise their reads may be reordered after the validation.
+ * </p>
+ */
+public interface RecursiveStampedLock extends RecursiveLock {
+
+    /**
+     * Returns a stamp for an optimistic read, or zero if the lock is held by another thread.
+     * The owner of the lock retrieves a stamp which stays valid until its final {@link #unlock()}.
+     */
+    long tryOptimisticRead();
+
+    /**
+     * Returns true if the lock has not been acquired by another thread since the issuance 
+     * of the given stamp, i.e. the state read in between is consistent. Always false for a zero stamp.
+     */
+    boolean validate(long stamp);
+}
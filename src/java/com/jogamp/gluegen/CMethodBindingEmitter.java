@@ -107,7 +107,20 @@ public class CMethodBindingEmitter extends FunctionEmitter {
    * binding.getJavaReturnType().isArray() is false.
    */
   private MessageFormat returnValueLengthExpression = null;
-  
+
+  /**
+   * Access mode for non-direct buffer and primitive array arguments, and
+   * the byte size up to which arrays are still pinned in THRESHOLD mode.
+   */
+  private JavaEmitter.PrimitiveArrayAccess primitiveArrayAccess = JavaEmitter.PrimitiveArrayAccess.CRITICAL;
+  private int primitiveArrayAccessThreshold = 0;
+
+  /**
+   * Optional MessageFormat expressions, by argument index, of the number
+   * of elements the C function accesses in a copied non-direct array.
+   */
+  private Map<Integer, String> primitiveArrayAccessLengths = null;
+
   protected static final String STRING_CHARS_PREFIX = "_strchars_";
 
   // We need this in order to compute sizes of certain types
@@ -257,6 +270,59 @@ public class CMethodBindingEmitter extends FunctionEmitter {
     temporaryCVariableAssignments = arg;
   }
 
+  /**
+   * Returns the access mode for non-direct buffer and primitive array
+   * arguments.
+   */
+  public final JavaEmitter.PrimitiveArrayAccess getPrimitiveArrayAccess() {
+    return primitiveArrayAccess;
+  }
+
+  /**
+   * Returns the byte size up to which non-direct arrays are pinned
+   * if the access mode is THRESHOLD.
+   */
+  public final int getPrimitiveArrayAccessThreshold() {
+    return primitiveArrayAccessThreshold;
+  }
+
+  /**
+   * Sets the access mode for non-direct buffer and primitive array
+   * arguments. Only typed arguments, whose backing array element type is
+   * known, can be copied via Get/Set&lt;Type&gt;ArrayRegion; all others
+   * are always pinned via GetPrimitiveArrayCritical.
+   *
+   * @param mode the access mode, null is treated as CRITICAL
+   * @param threshold byte size up to which arrays are still pinned in
+   * THRESHOLD mode
+   */
+  public final void setPrimitiveArrayAccess(JavaEmitter.PrimitiveArrayAccess mode, int threshold) {
+    primitiveArrayAccess = null != mode ? mode : JavaEmitter.PrimitiveArrayAccess.CRITICAL;
+    primitiveArrayAccessThreshold = threshold;
+  }
+
+  /**
+   * Returns the C expressions of the number of elements the C function
+   * accesses in non-direct array arguments, keyed by argument index, or
+   * null.
+   */
+  public final Map<Integer, String> getPrimitiveArrayAccessLengths() {
+    return primitiveArrayAccessLengths;
+  }
+
+  /**
+   * Sets the C expressions, as MessageFormats over the argument names and
+   * keyed by argument index, of the number of elements the C function
+   * accesses in the given non-direct array arguments. A copied array is
+   * bounded by this number of elements instead of extending to the end of
+   * the Java array.
+   *
+   * @param lengths the expressions by argument index, may be null
+   */
+  public final void setPrimitiveArrayAccessLengths(Map<Integer, String> lengths) {
+    primitiveArrayAccessLengths = lengths;
+  }
+
   /**
    * Get the name of the class in which the corresponding Java method
    * resides.
@@ -416,6 +482,13 @@ public class CMethodBindingEmitter extends FunctionEmitter {
                                  type,
                                  binding.getCArgumentType(i),
                                  convName, javaArgName);
+        Class<?> regionCopyType = regionCopyComponentType(type);
+        if (null != regionCopyType) {
+          // scratch buffer receiving a copy of a non-direct array
+          String elemTypeName = JavaType.createForClass(regionCopyType).jniTypeName();
+          writer.println("  " + elemTypeName + " * " + regionCopyArgName(javaArgName) + " = NULL;");
+          writer.println("  jsize " + regionCopyLengthArgName(javaArgName) + " = 0;");
+        }
         if (needsDataCopy && !emittedDataCopyTemps) {
           // emit loop counter and array length variables used during data
           // copy 
@@ -574,6 +647,20 @@ public class CMethodBindingEmitter extends FunctionEmitter {
         }
     }
 
+    // Copy non-direct arrays into scratch buffers before any array is
+    // pinned below, since no other JNI call is allowed while a critical
+    // region is held
+    for (int i = 0; i < binding.getNumArguments(); i++) {
+      JavaType javaArgType = binding.getJavaArgumentType(i);
+      if (javaArgType.isJNIEnv() || binding.isArgumentThisPointer(i)) {
+        continue;
+      }
+      Class<?> regionCopyType = regionCopyComponentType(javaArgType);
+      if (null != regionCopyType) {
+        emitRegionCopyIn(writer, i, regionCopyType);
+      }
+    }
+
     // Convert all arrays to pointers, and get UTF-8 versions of jstring args
     for (int i = 0; i < binding.getNumArguments(); i++) {
       JavaType javaArgType = binding.getJavaArgumentType(i);
@@ -596,18 +683,30 @@ public class CMethodBindingEmitter extends FunctionEmitter {
         String convName = pointerConversionArgumentName(javaArgName);
 
         if (!needsDataCopy) {
-          writer.print("    ");
+          String indent = "    ";
+          if (null != regionCopyComponentType(javaArgType)) {
+            // the scratch copy already starts at the byte offset
+            String copyName = regionCopyArgName(javaArgName);
+            writer.println("    if ( NULL != " + copyName + " ) {");
+            writer.println("      " + convName + " = (" + cArgTypeName + ") " + copyName + ";");
+            writer.println("    } else {");
+            indent = "      ";
+          }
+          writer.print(indent);
           writer.print(convName);
           writer.print(" = (");
           if (javaArgType.isStringArray()) {
             // java-side type is String[]
             cArgTypeName = "jstring *";
-          }        
+          }
           writer.print(cArgTypeName);
-          writer.print(") (((char*) ( JNI_TRUE == " + isNIOArgName(i) + " ? "); 
+          writer.print(") (((char*) ( JNI_TRUE == " + isNIOArgName(i) + " ? ");
           writer.print(" (*env)->GetDirectBufferAddress(env, " + javaArgName + ") : ");
           writer.print(" (*env)->GetPrimitiveArrayCritical(env, " + javaArgName + ", NULL) ) ) + ");
           writer.println(byteOffsetArgName(i) + ");");
+          if (null != regionCopyComponentType(javaArgType)) {
+            writer.println("    }");
+          }
         } else {
           // Handle the case where the array elements are of a type that needs a
           // data copy operation to convert from the java memory model to the C
@@ -777,7 +876,12 @@ public class CMethodBindingEmitter extends FunctionEmitter {
         String convName = pointerConversionArgumentName(javaArgName);
 
         if (!needsDataCopy) {
-          writer.println("  if ( NULL != " + javaArgName + " && JNI_FALSE == " + isNIOArgName(i) + " ) {");
+          if (null != regionCopyComponentType(javaArgType)) {
+            writer.println("  if ( NULL != " + javaArgName + " && JNI_FALSE == " + isNIOArgName(i) +
+                           " && NULL == " + regionCopyArgName(javaArgName) + " ) {");
+          } else {
+            writer.println("  if ( NULL != " + javaArgName + " && JNI_FALSE == " + isNIOArgName(i) + " ) {");
+          }
 
           // Release array 
           writer.print("    (*env)->ReleasePrimitiveArrayCritical(env, " + javaArgName + ", " + convName + ", 0);");
@@ -891,6 +995,19 @@ public class CMethodBindingEmitter extends FunctionEmitter {
         writer.println("  }");
       }
     }
+
+    // Copy back and free the scratch buffers once all pinned arrays
+    // have been released
+    for (int i = 0; i < binding.getNumArguments(); i++) {
+      JavaType javaArgType = binding.getJavaArgumentType(i);
+      if (javaArgType.isJNIEnv() || binding.isArgumentThisPointer(i)) {
+        continue;
+      }
+      Class<?> regionCopyType = regionCopyComponentType(javaArgType);
+      if (null != regionCopyType) {
+        emitRegionCopyOut(writer, i, regionCopyType);
+      }
+    }
   }
 
   /** Returns the number of arguments passed so calling code knows
@@ -1090,11 +1207,25 @@ public class CMethodBindingEmitter extends FunctionEmitter {
   
   // Mangle a class, package or function name
   protected String jniMangle(String name) {
-    return name.replaceAll("_", "_1").replace('.', '_');
+    if (name.indexOf('_') < 0 && name.indexOf('.') < 0) {
+      return name;
+    }
+    StringBuilder buf = new StringBuilder(name.length() + 8);
+    for (int i = 0; i < name.length(); i++) {
+      char c = name.charAt(i);
+      if (c == '_') {
+        buf.append("_1");
+      } else if (c == '.') {
+        buf.append('_');
+      } else {
+        buf.append(c);
+      }
+    }
+    return buf.toString();
   }
 
   protected String jniMangle(MethodBinding binding) {
-    StringBuffer buf = new StringBuffer();
+    StringBuilder buf = new StringBuilder(64);
     buf.append(jniMangle(getName()));
     buf.append(getImplSuffix());
     buf.append("__");
@@ -1151,7 +1282,16 @@ public class CMethodBindingEmitter extends FunctionEmitter {
     return buf.toString();
   }
 
+  /**
+   * @deprecated use {@link #jniMangle(Class, StringBuilder, boolean)}
+   */
   protected void jniMangle(Class<?> c, StringBuffer res, boolean syntheticArgument) {
+    StringBuilder buf = new StringBuilder();
+    jniMangle(c, buf, syntheticArgument);
+    res.append(buf);
+  }
+
+  protected void jniMangle(Class<?> c, StringBuilder res, boolean syntheticArgument) {
     if (c.isPrimitive()) {
            if (c == Boolean.TYPE)   res.append("Z");
       else if (c == Byte.TYPE)      res.append("B");
@@ -1201,7 +1341,15 @@ public class CMethodBindingEmitter extends FunctionEmitter {
 
   private void emitOutOfMemoryCheck(PrintWriter writer, String varName, String errorMessage)  {
     writer.println("  if ( NULL == " + varName + " ) {");
-    writer.println("      (*env)->ThrowNew(env, (*env)->FindClass(env, \"java/lang/OutOfMemoryError\"),");
+    emitThrowAndReturn(writer, "java/lang/OutOfMemoryError", errorMessage);
+    writer.println("    }");
+  }
+
+  /** Frees all array region copies allocated so far, throws the given
+      exception and returns from the native method. */
+  private void emitThrowAndReturn(PrintWriter writer, String exceptionClassName, String errorMessage)  {
+    emitRegionCopyFree(writer, "      ");
+    writer.println("      (*env)->ThrowNew(env, (*env)->FindClass(env, \"" + exceptionClassName + "\"),");
     writer.print("                       \"" + errorMessage);
     writer.print(" in native dispatcher for \\\"");
     writer.print(getName());
@@ -1211,7 +1359,6 @@ public class CMethodBindingEmitter extends FunctionEmitter {
       writer.print(" 0");
     }
     writer.println(";");
-    writer.println("    }");
   }
 
   private void emitMalloc(PrintWriter writer,
@@ -1468,6 +1615,128 @@ public class CMethodBindingEmitter extends FunctionEmitter {
     return "_" + argName + "_ptr";
   }
 
+  protected String regionCopyArgName(String argName) {
+    return "_" + argName + "_region";
+  }
+
+  protected String regionCopyLengthArgName(String argName) {
+    return "_" + argName + "_region_len";
+  }
+
+  /**
+   * Returns the primitive element type of the Java array backing the
+   * given non-direct argument if it is copied via
+   * Get/Set&lt;Type&gt;ArrayRegion instead of being pinned, otherwise
+   * null. Untyped buffers, e.g. <code>java.nio.Buffer</code> or
+   * PointerBuffer, may be backed by any array type and are always
+   * pinned.
+   */
+  protected Class<?> regionCopyComponentType(JavaType javaArgType) {
+    if (primitiveArrayAccess == JavaEmitter.PrimitiveArrayAccess.CRITICAL) {
+      return null;
+    }
+    if (javaArgType.isPrimitiveArray()) {
+      return javaArgType.getJavaClass().getComponentType();
+    }
+    if (!javaArgType.isNIOBuffer() || !forIndirectBufferAndArrayImplementation) {
+      return null;
+    }
+    Class<?> c = javaArgType.getJavaClass();
+    if (c == java.nio.ByteBuffer.class) {
+      return Byte.TYPE;
+    } else if (c == java.nio.ShortBuffer.class) {
+      return Short.TYPE;
+    } else if (c == java.nio.CharBuffer.class) {
+      return Character.TYPE;
+    } else if (c == java.nio.IntBuffer.class) {
+      return Integer.TYPE;
+    } else if (c == java.nio.LongBuffer.class) {
+      return Long.TYPE;
+    } else if (c == java.nio.FloatBuffer.class) {
+      return Float.TYPE;
+    } else if (c == java.nio.DoubleBuffer.class) {
+      return Double.TYPE;
+    }
+    return null;
+  }
+
+  private void emitRegionCopyIn(PrintWriter writer, int i, Class<?> componentType) {
+    String javaArgName = binding.getArgumentName(i);
+    String elemTypeName = JavaType.createForClass(componentType).jniTypeName();
+    String copyName = regionCopyArgName(javaArgName);
+    String lenName = regionCopyLengthArgName(javaArgName);
+    String startExpr = "(jsize) ( " + byteOffsetArgName(i) + " / sizeof(" + elemTypeName + ") )";
+
+    writer.println("  if ( NULL != " + javaArgName + " && JNI_FALSE == " + isNIOArgName(i) + " ) {");
+    writer.println("    " + lenName + " = (*env)->GetArrayLength(env, " + javaArgName + ") - " + startExpr + ";");
+    String accessLength = null != primitiveArrayAccessLengths ?
+                          primitiveArrayAccessLengths.get(Integer.valueOf(i)) : null;
+    if (null != accessLength) {
+      // only copy the elements the C function accesses
+      String accessLengthExpr = "(jsize) ( " + new MessageFormat(accessLength).format(argumentNameArray()) + " )";
+      writer.println("    if ( " + accessLengthExpr + " < " + lenName + " ) {");
+      writer.println("      " + lenName + " = " + accessLengthExpr + ";");
+      writer.println("    }");
+    }
+    writer.println("    if ( 0 > " + startExpr + " || 0 > " + lenName + " ) {");
+    emitThrowAndReturn(writer, "java/lang/ArrayIndexOutOfBoundsException",
+                       "Invalid array region of \\\"" + javaArgName + "\\\"");
+    writer.println("    }");
+    String indent = "    ";
+    if (primitiveArrayAccess == JavaEmitter.PrimitiveArrayAccess.THRESHOLD) {
+      // small arrays are still pinned
+      writer.println("    if ( (size_t) " + lenName + " * sizeof(" + elemTypeName + ") > " +
+                     primitiveArrayAccessThreshold + " ) {");
+      indent = "      ";
+    }
+    writer.println(indent + copyName + " = (" + elemTypeName + " *) malloc( ( 0 < " + lenName +
+                   " ? " + lenName + " : 1 ) * sizeof(" + elemTypeName + ") );");
+    emitOutOfMemoryCheck(writer, copyName, "Could not allocate array region copy of \\\"" + javaArgName + "\\\"");
+    writer.println(indent + "(*env)->Get" + regionFunctionTypeName(componentType) + "ArrayRegion(env, (" +
+                   elemTypeName + "Array) " + javaArgName + ", " + startExpr + ", " + lenName + ", " + copyName + ");");
+    if (primitiveArrayAccess == JavaEmitter.PrimitiveArrayAccess.THRESHOLD) {
+      writer.println("    }");
+    }
+    writer.println("  }");
+  }
+
+  /** Frees the array region copies of all arguments; those not allocated
+      yet are still NULL. */
+  private void emitRegionCopyFree(PrintWriter writer, String indent) {
+    for (int i = 0; i < binding.getNumArguments(); i++) {
+      JavaType javaArgType = binding.getJavaArgumentType(i);
+      if (javaArgType.isJNIEnv() || binding.isArgumentThisPointer(i)) {
+        continue;
+      }
+      if (null != regionCopyComponentType(javaArgType)) {
+        writer.println(indent + "free(" + regionCopyArgName(binding.getArgumentName(i)) + ");");
+      }
+    }
+  }
+
+  private void emitRegionCopyOut(PrintWriter writer, int i, Class<?> componentType) {
+    String javaArgName = binding.getArgumentName(i);
+    String elemTypeName = JavaType.createForClass(componentType).jniTypeName();
+    String copyName = regionCopyArgName(javaArgName);
+    Type cArgType = binding.getCArgumentType(i);
+
+    writer.println("  if ( NULL != " + copyName + " ) {");
+    // const data can't have been modified, so skip copying it back
+    if (!cArgType.isPointer() || !cArgType.asPointer().getTargetType().isConst()) {
+      writer.println("    (*env)->Set" + regionFunctionTypeName(componentType) + "ArrayRegion(env, (" +
+                     elemTypeName + "Array) " + javaArgName + ", (jsize) ( " + byteOffsetArgName(i) +
+                     " / sizeof(" + elemTypeName + ") ), " + regionCopyLengthArgName(javaArgName) +
+                     ", " + copyName + ");");
+    }
+    writer.println("    free(" + copyName + ");");
+    writer.println("  }");
+  }
+
+  private static String regionFunctionTypeName(Class<?> componentType) {
+    String name = componentType.getName();
+    return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+  }
+
   /**
    * Class that emits a generic comment for CMethodBindingEmitters; the comment
    * includes the C signature of the native method that is being bound by the
@@ -95,8 +95,30 @@ public abstract class FunctionEmitter {
   /**
    * Emit the function to the specified output (instead of the default
    * output).
+   * <p>
+   * The function is rendered into a reusable per-thread buffer first and
+   * handed to the output in one piece, saving the locking and flush checks
+   * the output does for each of the many small print calls.
+   * </p>
    */
   public void emit(PrintWriter output)  {
+    final MethodBuffer buf = methodBuffer.get();
+    if (buf.inUse) {
+      // nested emission, e.g. toString() while emitting
+      emitImpl(output);
+      return;
+    }
+    buf.inUse = true;
+    try {
+      emitImpl(buf.writer);
+      buf.writer.flush();
+      buf.writeTo(output);
+    } finally {
+      buf.reset();
+    }
+  }
+
+  private void emitImpl(PrintWriter output)  {
     emitDocComment(output);
     //output.println("  // Emitter: " + getClass().getName());
     emitSignature(output);
@@ -114,9 +136,10 @@ public abstract class FunctionEmitter {
   /** Returns, as a String, whatever {@link #emit} would output. */
   @Override
   public String toString()  {
-    StringWriter sw = new StringWriter(500);
+    StringBuilderWriter sw = new StringBuilderWriter(new StringBuilder(512));
     PrintWriter w = new PrintWriter(sw);
     emit(w);
+    w.flush();
     return sw.toString();
   }
 
@@ -169,7 +192,6 @@ public abstract class FunctionEmitter {
   }
 
   protected int emitModifiers(PrintWriter writer)  {
-    PrintWriter w = getDefaultOutput();
     int numEmitted = 0;
     for (Iterator<EmissionModifier> it = getModifiers(); it.hasNext(); )   {
       writer.print(it.next());
@@ -192,6 +214,81 @@ public abstract class FunctionEmitter {
   protected abstract int emitArguments(PrintWriter writer);  
   protected abstract void emitBody(PrintWriter writer);
   
+  /** Initial capacity of the per-thread method buffer, large enough for most methods. */
+  private static final int METHOD_BUFFER_SIZE = 8192;
+
+  private static final ThreadLocal<MethodBuffer> methodBuffer = new ThreadLocal<MethodBuffer>() {
+    @Override
+    protected MethodBuffer initialValue() {
+      return new MethodBuffer();
+    }
+  };
+
+  /** Per-thread scratch space a single function is rendered into. */
+  private static class MethodBuffer {
+    private StringBuilder sb = new StringBuilder(METHOD_BUFFER_SIZE);
+    private char[] chars = new char[METHOD_BUFFER_SIZE];
+    private StringBuilderWriter sbw = new StringBuilderWriter(sb);
+    PrintWriter writer = new PrintWriter(sbw);
+    boolean inUse;
+
+    void writeTo(PrintWriter output) {
+      final int len = sb.length();
+      if (chars.length < len) {
+        chars = new char[Math.max(len, 2 * chars.length)];
+      }
+      sb.getChars(0, len, chars, 0);
+      output.write(chars, 0, len);
+    }
+
+    void reset() {
+      if (sb.capacity() > 16 * METHOD_BUFFER_SIZE) {
+        // don't hold on to the memory of an exceptionally large method
+        sb = new StringBuilder(METHOD_BUFFER_SIZE);
+        chars = new char[METHOD_BUFFER_SIZE];
+        sbw = new StringBuilderWriter(sb);
+        writer = new PrintWriter(sbw);
+      } else {
+        sb.setLength(0);
+      }
+      inUse = false;
+    }
+  }
+
+  /** Unsynchronized counterpart of StringWriter. */
+  static class StringBuilderWriter extends Writer {
+    private final StringBuilder sb;
+
+    StringBuilderWriter(StringBuilder sb) { this.sb = sb; }
+
+    @Override
+    public void write(int c) { sb.append((char) c); }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) { sb.append(cbuf, off, len); }
+
+    @Override
+    public void write(String str) { sb.append(str); }
+
+    @Override
+    public void write(String str, int off, int len) { sb.append(str, off, off + len); }
+
+    @Override
+    public Writer append(CharSequence csq) {
+      sb.append(csq);
+      return this;
+    }
+
+    @Override
+    public void flush() { }
+
+    @Override
+    public void close() { }
+
+    @Override
+    public String toString() { return sb.toString(); }
+  }
+
   public static class EmissionModifier  {
 
     @Override
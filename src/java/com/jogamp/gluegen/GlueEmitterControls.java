@@ -58,4 +58,9 @@ public interface GlueEmitterControls {
       call it from that method call. Calling it during glue code
       emission may cause problems. */
   public void runSymbolFilter(SymbolFilter filter);
+
+  /** Returns the profile of the current run, or <code>null</code> if
+      profiling is disabled. Emitters may use it to record the time
+      spent on single items, see {@link GlueGenProfile#beginItem}. */
+  public GlueGenProfile getProfile();
 }
@@ -49,6 +49,7 @@ import antlr.*;
 import com.jogamp.gluegen.cgram.*;
 import com.jogamp.gluegen.cgram.types.*;
 import com.jogamp.gluegen.pcpp.*;
+import com.jogamp.gluegen.GlueGenProfile.Phase;
 
 import static java.lang.System.*;
 
@@ -63,6 +64,8 @@ public class GlueGen implements GlueEmitterControls {
 
     private List<String> forcedStructNames = new ArrayList<String>();
     private PCPP preprocessor;
+    private GlueGenProfile profile;
+    private boolean streamedParse;
     
     // State for SymbolFilters
     private List<ConstantDefinition> constants;
@@ -76,7 +79,35 @@ public class GlueGen implements GlueEmitterControls {
         return preprocessor.findFile(headerFileName);
     }
 
+    public GlueGenProfile getProfile() {
+        return profile;
+    }
+
+    /** Enables profiling of the next {@link #run} with the given profile, or disables it if <code>null</code>. */
+    public void setProfile(GlueGenProfile profile) {
+        this.profile = profile;
+    }
+
+    /**
+     * Enables walking each external definition right after parsing it in the next {@link #run},
+     * instead of parsing the whole preprocessed unit into one tree first.
+     * Disabled by default.
+     */
+    public void setStreamedParse(boolean streamedParse) {
+        this.streamedParse = streamedParse;
+    }
+
+    public boolean isStreamedParse() {
+        return streamedParse;
+    }
+
+    /** Switches the profile to the given phase, if profiling */
+    private Phase enter(Phase phase) {
+        return null != profile ? profile.enter(phase) : null;
+    }
+
     public void runSymbolFilter(SymbolFilter filter) {
+        final Phase prev = enter(Phase.SYMBOL_FILTER);
         filter.filterSymbols(constants, functions);
         List<ConstantDefinition> newConstants = filter.getConstants();
         List<FunctionSymbol> newFunctions = filter.getFunctions();
@@ -86,12 +117,16 @@ public class GlueGen implements GlueEmitterControls {
         if (newFunctions != null) {
             functions = newFunctions;
         }
+        enter(prev);
     }
 
   
     @SuppressWarnings("unchecked")
     public void run(final Reader reader, final String filename, Class<?> emitterClass, List<String> includePaths, List<String> cfgFiles, String outputRootDir, boolean debug, boolean copyPCPPOutput2Stderr) {
 
+        if (null != profile) {
+            profile.start();
+        }
         try {
             final PipedInputStream ppIn = new PipedInputStream();
             final PipedOutputStream ppOut = new PipedOutputStream(ppIn);
@@ -109,10 +144,13 @@ public class GlueGen implements GlueEmitterControls {
             preprocessor.addDefine("__GLUEGEN__", "2");
             preprocessor.setOut(outStream);
 
+            enter(Phase.PREPROCESS);
             preprocessor.run(reader, filename);
             outStream.flush();
             outStream.close();
 
+            enter(Phase.PARSE);
+
             FileInputStream inStream = new FileInputStream(out);
             DataInputStream dis = new DataInputStream(inStream);
 
@@ -126,16 +164,7 @@ public class GlueGen implements GlueEmitterControls {
             parser.setASTNodeClass(TNode.class.getName());
             TNode.setTokenVocabulary(GNUCTokenTypes.class.getName());
 
-            // invoke parser
-            try {
-                parser.translationUnit();
-            } catch (RecognitionException e) {
-                throw new RuntimeException("Fatal IO error", e);
-            } catch (TokenStreamException e) {
-                throw new RuntimeException("Fatal IO error", e);
-            }
-
-            HeaderParser headerParser = new HeaderParser();
+            final HeaderParser headerParser = new HeaderParser();
             headerParser.setDebug(debug);
             TypeDictionary td = new TypeDictionary();
             headerParser.setTypedefDictionary(td);
@@ -143,8 +172,30 @@ public class GlueGen implements GlueEmitterControls {
             headerParser.setStructDictionary(sd);
             // set AST node type to TNode or get nasty cast class errors
             headerParser.setASTNodeClass(TNode.class.getName());
-            // walk that tree
-            headerParser.translationUnit(parser.getAST());
+
+            // invoke parser
+            try {
+                if (streamedParse) {
+                    // walk the tree of each external definition right away,
+                    // so the tree of the whole unit is never built
+                    parser.streamedTranslationUnit(new GnuCParser.ExternalDefListener() {
+                        public void externalDef(TNode def) throws RecognitionException {
+                            final Phase prev = enter(Phase.HEADER_PARSER);
+                            headerParser.externalDef(def);
+                            enter(prev);
+                        }
+                    });
+                } else {
+                    parser.translationUnit();
+                    // walk that tree
+                    enter(Phase.HEADER_PARSER);
+                    headerParser.translationUnit(parser.getAST());
+                }
+            } catch (RecognitionException e) {
+                throw new RuntimeException("Fatal IO error", e);
+            } catch (TokenStreamException e) {
+                throw new RuntimeException("Fatal IO error", e);
+            }
             dis.close();
             inStream.close();
 
@@ -170,9 +221,11 @@ public class GlueGen implements GlueEmitterControls {
                 }
             }
 
+            enter(Phase.CONFIGURATION);
             for (String config : cfgFiles) {
                 emit.readConfigurationFile(config);
             }
+            enter(Phase.OTHER);
 
             if (null != outputRootDir && outputRootDir.trim().length() > 0) {
                 if (emit instanceof JavaEmitter) {
@@ -210,6 +263,7 @@ public class GlueGen implements GlueEmitterControls {
             // begin emission of glue code
             emit.beginEmission(this);
 
+            enter(Phase.DEFINES);
             emit.beginDefines();
             Set<String> emittedDefines = new HashSet<String>(100);
             // emit java equivalent of enum { ... } statements
@@ -218,25 +272,29 @@ public class GlueGen implements GlueEmitterControls {
                     emittedDefines.add(def.getName());
                     String comment = null;
                     Set<String> aliases = def.getAliases();
-                    if (aliases != null) {
-                        comment = "Alias for: <code>";
-                        for (String alias : aliases) {
-                            comment += " " + alias;
+                    String enumName = def.getEnumName();
+                    if (aliases != null || enumName != null) {
+                        StringBuilder buf = new StringBuilder(64);
+                        if (aliases != null) {
+                            buf.append("Alias for: <code>");
+                            for (String alias : aliases) {
+                                buf.append(' ').append(alias);
+                            }
+                            buf.append("</code>");
                         }
-                        comment += "</code>";
-                    }
-                    if (def.getEnumName() != null) {
-                        String enumName = "Defined as part of enum type \"" + def.getEnumName() + "\"";
-                        if (comment == null) {
-                            comment = enumName;
-                        } else {
-                            comment += "<br>\n" + enumName;
+                        if (enumName != null) {
+                            if (buf.length() > 0) {
+                                buf.append("<br>\n");
+                            }
+                            buf.append("Defined as part of enum type \"").append(enumName).append('"');
                         }
+                        comment = buf.toString();
                     }
                     emit.emitDefine(def, comment);
                 }
             }
             emit.endDefines();
+            enter(Phase.OTHER);
 
             // Iterate through the functions finding structs that are referenced in
             // the function signatures; these will be remembered for later emission
@@ -264,6 +322,7 @@ public class GlueGen implements GlueEmitterControls {
             }
 
             // Lay out structs
+            enter(Phase.STRUCT_LAYOUT);
             emit.beginStructLayout();
             for (Iterator<Type> iter = referencedStructs.results(); iter.hasNext();) {
                 Type t = iter.next();
@@ -278,30 +337,47 @@ public class GlueGen implements GlueEmitterControls {
             emit.endStructLayout();
 
             // Emit structs
+            enter(Phase.STRUCT_EMISSION);
             emit.beginStructs(td, sd, headerParser.getCanonMap());
             for (Iterator<Type> iter = referencedStructs.results(); iter.hasNext();) {
                 Type t = iter.next();
+                // the emitted name, unnamed structs are skipped by the emitter and not profiled
+                String structName = null;
+                if (null != profile) {
+                    profile.beginItem();
+                }
                 if (t.isCompound()) {
+                    structName = t.getName();
                     emit.emitStruct(t.asCompound(), null);
                 } else if (t.isPointer()) {
                     PointerType p = t.asPointer();
                     CompoundType c = p.getTargetType().asCompound();
                     assert p.hasTypedefedName() && c.getName() == null : "ReferencedStructs incorrectly recorded pointer type " + p;
+                    structName = p.getName();
                     emit.emitStruct(c, p.getName());
                 }
+                if (null != profile && null != structName) {
+                    profile.endItem("struct", structName);
+                }
             }
             emit.endStructs();
 
             // emit java and C code to interface with the native functions
+            enter(Phase.FUNCTION_EMISSION);
             emit.beginFunctions(td, sd, headerParser.getCanonMap());
             emit.emitFunctions(functions);
             emit.endFunctions();
 
             // end emission of glue code
+            enter(Phase.OTHER);
             emit.endEmission();
 
         } catch (Exception e) {
             throw new RuntimeException("Exception occurred while generating glue code.", e);
+        } finally {
+            if (null != profile) {
+                profile.stop();
+            }
         }
     }
 
@@ -319,6 +395,10 @@ public class GlueGen implements GlueEmitterControls {
         List<String> cfgFiles = new ArrayList<String>();
         boolean debug = false;
         boolean copyCPPOutput2Stderr = false;
+        boolean profile = false;
+        boolean profileItems = false;
+        boolean streamedParse = false;
+        String profileReport = null;
 
         List<String> includePaths = new ArrayList<String>();
         for (int i = 0; i < args.length; i++) {
@@ -337,6 +417,16 @@ public class GlueGen implements GlueEmitterControls {
                     debug=true;
                 } else if (arg.equals("--dumpCPP")) {
                     copyCPPOutput2Stderr=true;
+                } else if (arg.equals("--streamParse")) {
+                    streamedParse=true;
+                } else if (arg.equals("--profile")) {
+                    profile=true;
+                } else if (arg.equals("--profileItems")) {
+                    profile=true;
+                    profileItems=true;
+                } else if (arg.startsWith("--profileReport=")) {
+                    profile=true;
+                    profileReport = arg.substring(16);
                 } else {
                     usage();
                 }
@@ -361,9 +451,27 @@ public class GlueGen implements GlueEmitterControls {
 
         try {
             Class<?> emitterClass = emitterFQN == null ? null : Class.forName(emitterFQN);
-            new GlueGen().run(reader, filename, emitterClass, includePaths, cfgFiles, outputRootDir, debug, copyCPPOutput2Stderr);
+            GlueGen glueGen = new GlueGen();
+            glueGen.setStreamedParse(streamedParse);
+            if (profile) {
+                glueGen.setProfile(new GlueGenProfile(profileItems));
+            }
+            glueGen.run(reader, filename, emitterClass, includePaths, cfgFiles, outputRootDir, debug, copyCPPOutput2Stderr);
+            if (profile) {
+                glueGen.getProfile().print(out);
+                if (null != profileReport) {
+                    Writer w = new BufferedWriter(new FileWriter(profileReport));
+                    try {
+                        glueGen.getProfile().writeJSON(w);
+                    } finally {
+                        w.close();
+                    }
+                }
+            }
         } catch (ClassNotFoundException ex) {
             throw new RuntimeException("specified emitter class was not in the classpath", ex);
+        } catch (IOException ex) {
+            throw new RuntimeException("unable to write profile report", ex);
         }
 
     }
@@ -386,6 +494,10 @@ public class GlueGen implements GlueEmitterControls {
         out.println("-Cjava-emitter.cfg.");
         out.println("  --debug enables debug mode");
         out.println("  --dumpCPP directs PCPP to dump all output to stderr as well");
+        out.println("  --streamParse walks each external definition right after parsing it");
+        out.println("  --profile prints the time and allocations spent in each generation phase");
+        out.println("  --profileItems additionally profiles each emitted struct and function");
+        out.println("  --profileReport=<file> writes the profile as JSON to the given file");
         exit(1);
     }
 }
@@ -0,0 +1,288 @@
+/**
+ * Copyright 2011 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.gluegen;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects the time and, where the VM supports it, the allocated bytes
+ * spent in each {@link Phase} of a {@link GlueGen} run, optionally down to
+ * each emitted struct and function.
+ * <p>
+ * Phases are exclusive: {@link #enter(Phase)} charges the time since the last
+ * switch to the current phase and returns it, so a nested phase like
+ * {@link Phase#HEADER_PARSER} within {@link Phase#PARSE} is resumed with
+ * <code>profile.enter(prev)</code>.
+ * </p>
+ */
+public class GlueGenProfile {
+
+    /** The profiled phases of {@link GlueGen#run}, in run order. */
+    public enum Phase {
+        /** Preprocessing the header files via PCPP */
+        PREPROCESS,
+        /** Lexing and parsing the preprocessed output */
+        PARSE,
+        /** Walking the parsed tree into types and function symbols */
+        HEADER_PARSER,
+        /** Reading the emitter configuration files */
+        CONFIGURATION,
+        /** Running {@link SymbolFilter}s on behalf of the emitter */
+        SYMBOL_FILTER,
+        /** Emitting the constants */
+        DEFINES,
+        /** Computing the struct layouts */
+        STRUCT_LAYOUT,
+        /** Emitting the struct classes */
+        STRUCT_EMISSION,
+        /** Binding and emitting the functions */
+        FUNCTION_EMISSION,
+        /** Everything not covered by another phase */
+        OTHER
+    }
+
+    /** Time and allocations of an emitted struct or function */
+    public static class Item {
+        public final String kind;
+        public final String name;
+        public final long nanos;
+        public final long allocatedBytes;
+
+        Item(String kind, String name, long nanos, long allocatedBytes) {
+            this.kind = kind;
+            this.name = name;
+            this.nanos = nanos;
+            this.allocatedBytes = allocatedBytes;
+        }
+    }
+
+    /** Reads the allocated bytes of a thread via com.sun.management.ThreadMXBean, if the VM supports it */
+    private static class AllocationCounter {
+        private final com.sun.management.ThreadMXBean bean;
+
+        AllocationCounter() {
+            bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            if (!bean.isThreadAllocatedMemorySupported()) {
+                throw new UnsupportedOperationException("Thread allocated memory not supported");
+            }
+            bean.setThreadAllocatedMemoryEnabled(true);
+        }
+
+        long allocatedBytes(long threadId) {
+            return bean.getThreadAllocatedBytes(threadId);
+        }
+    }
+
+    /** null if the VM lacks com.sun.management.ThreadMXBean or the allocated memory support */
+    private static final AllocationCounter allocationCounter;
+
+    static {
+        AllocationCounter c;
+        try {
+            c = new AllocationCounter();
+        } catch (Throwable t) {
+            c = null;
+        }
+        allocationCounter = c;
+    }
+
+    /** Returns the bytes allocated by the given thread so far, or -1 if not supported */
+    static long allocatedBytes(long threadId) {
+        return null != allocationCounter ? allocationCounter.allocatedBytes(threadId) : -1;
+    }
+
+    private final boolean recordItems;
+    private final long[] phaseNanos = new long[Phase.values().length];
+    private final long[] phaseBytes = new long[Phase.values().length];
+    private final int[] phaseCount = new int[Phase.values().length];
+    private final List<Item> items = new ArrayList<Item>();
+
+    private Phase current = Phase.OTHER;
+    /** The profiled thread, which runs {@link GlueGen#run} */
+    private long threadId;
+    private long switchNanos, switchBytes;
+    private long itemNanos, itemBytes;
+    private long startNanos, startBytes;
+    private long totalNanos, totalBytes;
+
+    /**
+     * @param recordItems if true, {@link #beginItem()} and {@link #endItem(String, String)}
+     *        record each emitted struct and function.
+     */
+    public GlueGenProfile(boolean recordItems) {
+        this.recordItems = recordItems;
+    }
+
+    public boolean isRecordingItems() {
+        return recordItems;
+    }
+
+    /** Starts the profile in phase {@link Phase#OTHER}. */
+    public void start() {
+        threadId = Thread.currentThread().getId();
+        startNanos = switchNanos = System.nanoTime();
+        startBytes = switchBytes = allocatedBytes(threadId);
+        current = Phase.OTHER;
+    }
+
+    /** Charges the remaining time to the current phase and stops the total time. */
+    public void stop() {
+        enter(Phase.OTHER);
+        totalNanos = switchNanos - startNanos;
+        totalBytes = startBytes < 0 ? -1 : switchBytes - startBytes;
+    }
+
+    /**
+     * Charges the time and allocations since the last switch to the current phase
+     * and makes the given phase current.
+     * @return the previously current phase
+     */
+    public Phase enter(Phase phase) {
+        final long nanos = System.nanoTime();
+        final long bytes = allocatedBytes(threadId);
+        final int i = current.ordinal();
+        phaseNanos[i] += nanos - switchNanos;
+        phaseBytes[i] += bytes - switchBytes;
+        final Phase prev = current;
+        if (prev != phase) {
+            phaseCount[phase.ordinal()]++;
+        }
+        current = phase;
+        switchNanos = nanos;
+        switchBytes = bytes;
+        return prev;
+    }
+
+    /** Marks the start of an item, see {@link #endItem(String, String)}. No-op unless recording items. */
+    public void beginItem() {
+        if (recordItems) {
+            itemNanos = System.nanoTime();
+            itemBytes = allocatedBytes(threadId);
+        }
+    }
+
+    /** Records the item started by {@link #beginItem()}. No-op unless recording items. */
+    public void endItem(String kind, String name) {
+        if (recordItems) {
+            final long nanos = System.nanoTime() - itemNanos;
+            final long bytes = itemBytes < 0 ? -1 : allocatedBytes(threadId) - itemBytes;
+            items.add(new Item(kind, name, nanos, bytes));
+        }
+    }
+
+    public long getNanos(Phase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    /** Returns the bytes allocated within the given phase, or -1 if not supported by the VM */
+    public long getAllocatedBytes(Phase phase) {
+        return startBytes < 0 ? -1 : phaseBytes[phase.ordinal()];
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    public List<Item> getItems() {
+        return items;
+    }
+
+    /** Prints a human readable summary of the phases. */
+    public void print(PrintStream out) {
+        out.println("GlueGen profile: total " + totalNanos / 1000000 + " ms" +
+                    (totalBytes < 0 ? "" : ", " + totalBytes / 1024 + " KiB allocated"));
+        for (Phase phase : Phase.values()) {
+            final long bytes = getAllocatedBytes(phase);
+            out.println("  " + pad(phase.name().toLowerCase(), 18) + pad(phaseNanos[phase.ordinal()] / 1000000 + " ms", 10) +
+                        (bytes < 0 ? "" : bytes / 1024 + " KiB"));
+        }
+    }
+
+    private static String pad(String s, int width) {
+        final StringBuilder sb = new StringBuilder(s);
+        while (sb.length() < width) {
+            sb.append(' ');
+        }
+        return sb.toString();
+    }
+
+    /** Writes the profile as JSON object with the total, the phases and the recorded items. */
+    public void writeJSON(Writer w) throws IOException {
+        w.write("{\n");
+        w.write("  \"total\": { \"nanos\": " + totalNanos + ", \"allocatedBytes\": " + totalBytes + " },\n");
+        w.write("  \"phases\": [");
+        final Phase[] phases = Phase.values();
+        for (int i = 0; i < phases.length; i++) {
+            w.write(i == 0 ? "\n" : ",\n");
+            w.write("    { \"name\": \"" + phases[i].name().toLowerCase() + "\", \"nanos\": " + phaseNanos[i] +
+                    ", \"allocatedBytes\": " + getAllocatedBytes(phases[i]) + ", \"count\": " + phaseCount[i] + " }");
+        }
+        w.write("\n  ],\n");
+        w.write("  \"items\": [");
+        for (int i = 0; i < items.size(); i++) {
+            final Item item = items.get(i);
+            w.write(i == 0 ? "\n" : ",\n");
+            w.write("    { \"kind\": \"" + escapeJSON(item.kind) + "\", \"name\": \"" + escapeJSON(item.name) +
+                    "\", \"nanos\": " + item.nanos + ", \"allocatedBytes\": " + item.allocatedBytes + " }");
+        }
+        w.write(items.isEmpty() ? "]\n" : "\n  ]\n");
+        w.write("}\n");
+    }
+
+    /** Returns the given string escaped for a JSON string literal, an empty string if <code>null</code>. */
+    static String escapeJSON(String s) {
+        if (null == s) {
+            return "";
+        }
+        final StringBuilder sb = new StringBuilder(s.length() + 8);
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            switch (c) {
+                case '"':  sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        final String hex = Integer.toHexString(c);
+                        sb.append("\\u00").append(hex.length() < 2 ? "0" : "").append(hex);
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.toString();
+    }
+}
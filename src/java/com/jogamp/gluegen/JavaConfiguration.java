@@ -42,6 +42,7 @@ package com.jogamp.gluegen;
 
 import com.jogamp.gluegen.JavaEmitter.EmissionStyle;
 import com.jogamp.gluegen.JavaEmitter.MethodAccess;
+import com.jogamp.gluegen.JavaEmitter.PrimitiveArrayAccess;
 import java.io.*;
 import java.lang.reflect.Array;
 import java.util.*;
@@ -100,6 +101,20 @@ public class JavaConfiguration {
      */
     private boolean tagNativeBinding;
 
+    /**
+     * If true, each public native entry point counts its calls and accumulates
+     * its duration in a generated <code>CALL_PROFILE</code> instance of
+     * com.jogamp.gluegen.runtime.CallProfile. Defaults to false.
+     */
+    private boolean emitCallProfile;
+
+    /**
+     * Name of the generated class holding the field offsets and sizes of all
+     * emitted structs for all MachineDescription.StaticConfig targets.
+     * If null, each struct class holds its own offset and size arrays.
+     */
+    private String structLayoutTable;
+
     /**
      * Style of code emission. Can emit everything into one class
      * (AllStatic), separate interface and implementing classes
@@ -144,10 +159,19 @@ public class JavaConfiguration {
     private Set<Pattern> ignoreNots = new HashSet<Pattern>();
     private Set<Pattern> unignores = new HashSet<Pattern>();
     private Set<Pattern> unimplemented = new HashSet<Pattern>();
+    // Compiled forms of the pattern sets above and memoized decisions,
+    // built lazily and discarded whenever the configuration changes
+    private SymbolPatternMatcher ignoresMatcher;
+    private SymbolPatternMatcher unimplementedMatcher;
+    private Map<String, Boolean> ignoreInInterfaceCache = new HashMap<String, Boolean>();
+    private Map<String, Boolean> ignoreInImplCache = new HashMap<String, Boolean>();
     private boolean forceNioOnly4All = false;
     private Set<String> nioOnly = new HashSet<String>();
     private boolean forceNioDirectOnly4All = false;
     private Set<String> nioDirectOnly = new HashSet<String>();
+    private Map<String, PrimitiveArrayAccess> primitiveArrayAccess = new HashMap<String, PrimitiveArrayAccess>();
+    private Map<String, Integer> primitiveArrayAccessThresholds = new HashMap<String, Integer>();
+    private Map<String, Map<Integer, String>> primitiveArrayAccessLengths = new HashMap<String, Map<Integer, String>>();
     private Set<String> manuallyImplement = new HashSet<String>();
     private Map<String, List<String>> customJavaCode = new HashMap<String, List<String>>();
     private Map<String, List<String>> classJavadoc = new HashMap<String, List<String>>();
@@ -303,6 +327,22 @@ public class JavaConfiguration {
         return tagNativeBinding;
     }
 
+    /** Returns whether the generated methods shall record call counts and durations. */
+    public boolean emitCallProfile() {
+        return emitCallProfile;
+    }
+
+    /**
+     * Returns the fully qualified name of the class holding the layouts of all emitted structs,
+     * or null if each struct class holds its own offsets and sizes.
+     */
+    public String structLayoutTable() {
+        if (structLayoutTable == null || structLayoutTable.indexOf('.') >= 0) {
+            return structLayoutTable;
+        }
+        return packageName + "." + structLayoutTable;
+    }
+
     /** Returns the code emission style (constants in JavaEmitter) parsed from the configuration file. */
     public EmissionStyle emissionStyle() {
         return emissionStyle;
@@ -519,6 +559,34 @@ public class JavaConfiguration {
     return forceNioDirectOnly4All || nioDirectOnly.contains(functionName);
   }
 
+  /** Returns the way the C glue of the given function accesses non-direct
+      buffer and primitive array arguments. A function without its own
+      <code>PrimitiveArrayAccess</code> entry uses the <code>__ALL__</code>
+      entry, if any, otherwise {@link PrimitiveArrayAccess#CRITICAL}. */
+  public PrimitiveArrayAccess primitiveArrayAccess(String functionName) {
+    PrimitiveArrayAccess ret = primitiveArrayAccess.get(primitiveArrayAccessKey(functionName));
+    return null != ret ? ret : PrimitiveArrayAccess.CRITICAL;
+  }
+
+  /** Returns the byte size up to which arrays are still pinned if the given
+      function uses {@link PrimitiveArrayAccess#THRESHOLD}, otherwise 0. */
+  public int primitiveArrayAccessThreshold(String functionName) {
+    Integer ret = primitiveArrayAccessThresholds.get(primitiveArrayAccessKey(functionName));
+    return null != ret ? ret.intValue() : 0;
+  }
+
+  /** Returns a map from argument index to a MessageFormat string of the C
+      expression calculating the number of array elements the given
+      function accesses, used to bound the copy of non-direct arrays, or
+      null if no expression has been specified. */
+  public Map<Integer, String> primitiveArrayAccessLengths(String functionName) {
+    return primitiveArrayAccessLengths.get(functionName);
+  }
+
+  private String primitiveArrayAccessKey(String functionName) {
+    return primitiveArrayAccess.containsKey(functionName) ? functionName : "__ALL__";
+  }
+
   /** Returns true if the glue code for the given function will be
       manually implemented by the end user. */
   public boolean manuallyImplement(String functionName) {
@@ -666,15 +734,21 @@ public class JavaConfiguration {
     if(DEBUG_IGNORES) {
         dumpIgnoresOnce();
     }
-    // Simple case; the entire symbol (orig or renamed) is in the interface ignore table
-    if (extendedIntfSymbolsIgnore.contains(symbol) ||
-        extendedIntfSymbolsIgnore.contains(getJavaSymbolRename(symbol))) {
-      if(DEBUG_IGNORES) {
-          System.err.println("Ignore Intf: "+symbol);
+    Boolean res = ignoreInInterfaceCache.get(symbol);
+    if (res == null) {
+      // Simple case; the entire symbol (orig or renamed) is in the interface ignore table
+      if (extendedIntfSymbolsIgnore.contains(symbol) ||
+          extendedIntfSymbolsIgnore.contains(getJavaSymbolRename(symbol))) {
+        if(DEBUG_IGNORES) {
+            System.err.println("Ignore Intf: "+symbol);
+        }
+        res = Boolean.TRUE;
+      } else {
+        res = Boolean.valueOf(shouldIgnoreInImpl_Int(symbol));
       }
-      return true;
+      ignoreInInterfaceCache.put(symbol, res);
     }
-    return shouldIgnoreInImpl_Int(symbol);
+    return res.booleanValue();
   }
 
   public boolean shouldIgnoreInImpl(String symbol) {
@@ -687,6 +761,15 @@ public class JavaConfiguration {
       dumpIgnoresOnce();
     }
 
+    Boolean res = ignoreInImplCache.get(symbol);
+    if (res == null) {
+      res = Boolean.valueOf(computeIgnoreInImpl(symbol));
+      ignoreInImplCache.put(symbol, res);
+    }
+    return res.booleanValue();
+  }
+
+  private boolean computeIgnoreInImpl(String symbol) {
     if (!extendedIntfSymbolsOnly.isEmpty()) {
       if(!extendedIntfSymbolsOnly.contains(symbol) &&
          !extendedIntfSymbolsOnly.contains(getJavaSymbolRename(symbol))) {
@@ -696,61 +779,29 @@ public class JavaConfiguration {
           return true;
       }
     }
-        
-    // Simple case; the entire symbol is in the ignore table.
-    if (ignores.contains(symbol)) {
+
+    // All Ignore and IgnoreField expressions are tested at once
+    if (ignoresMatcher == null) {
+      ignoresMatcher = new SymbolPatternMatcher(ignores);
+    }
+    if (ignoresMatcher.matches(symbol)) {
       if(DEBUG_IGNORES) {
-          System.err.println("Ignore Impl ignores: "+symbol);
+          System.err.println("Ignore Impl RegEx: "+symbol);
       }
       return true;
     }
 
-    // Ok, the slow case. We need to check the entire table, in case the table
-    // contains an regular expression that matches the symbol.
-    for (Pattern regexp : ignores) {
-      Matcher matcher = regexp.matcher(symbol);
-      if (matcher.matches()) {
+    // A symbol not matching any one of the IgnoreNot expressions is ignored,
+    // regardless of the Unignore expressions.
+    for (Pattern regexp : ignoreNots) {
+      if (!regexp.matcher(symbol).matches()) {
         if(DEBUG_IGNORES) {
-            System.err.println("Ignore Impl RegEx: "+symbol);
+            System.err.println("Ignore Impl IgnoreNot: "+symbol);
         }
         return true;
       }
     }
 
-    // Check negated ignore table if not empty
-    if (ignoreNots.size() > 0) {
-      // Ok, the slow case. We need to check the entire table, in case the table
-      // contains an regular expression that matches the symbol.
-      for (Pattern regexp : ignoreNots) {
-        Matcher matcher = regexp.matcher(symbol);
-        if (!matcher.matches()) {
-          // Special case as this is most often likely to be the case. 
-          // Unignores are not used very often.
-          if(unignores.isEmpty()) {
-            if(DEBUG_IGNORES) {
-                System.err.println("Ignore Impl unignores==0: "+symbol);
-            }
-            return true;
-          }
-         	  
-          boolean unignoreFound = false;
-          for (Pattern unignoreRegexp : unignores) {
-            Matcher unignoreMatcher = unignoreRegexp.matcher(symbol);
-            if (unignoreMatcher.matches()) {
-              unignoreFound = true;
-              break;
-            }
-          }
-         	  
-          if (!unignoreFound)
-            if(DEBUG_IGNORES) {
-                System.err.println("Ignore Impl !unignore: "+symbol);
-            }
-            return true;
-        }
-      }
-    }
-
     return false;
   }
 
@@ -758,24 +809,21 @@ public class JavaConfiguration {
       throws a run-time exception with an "unimplemented" message
       during glue code generation. */
   public boolean isUnimplemented(String symbol) {
-
-    // Simple case; the entire symbol is in the ignore table.
-    if (unimplemented.contains(symbol)) {
-      return true;
-    }
-
-    // Ok, the slow case. We need to check the entire table, in case the table
-    // contains an regular expression that matches the symbol.
-    for (Pattern regexp : unimplemented) {
-      Matcher matcher = regexp.matcher(symbol);
-      if (matcher.matches()) {
-        return true;
-      }
+    if (unimplementedMatcher == null) {
+      unimplementedMatcher = new SymbolPatternMatcher(unimplemented);
     }
+    return unimplementedMatcher.matches(symbol);
+  }
 
-    return false;
+  /** Discards the compiled symbol patterns and memoized decisions. */
+  protected void invalidateSymbolMatchers() {
+    ignoresMatcher = null;
+    unimplementedMatcher = null;
+    ignoreInInterfaceCache.clear();
+    ignoreInImplCache.clear();
   }
 
+
   /** Returns a replacement name for this type, which should be the
       name of a Java wrapper class for a C struct, or the name
       unchanged if no RenameJavaType directive was specified for this
@@ -800,6 +848,7 @@ public class JavaConfiguration {
   /** Programmatically adds a rename directive for the given symbol. */
   public void addJavaSymbolRename(String origName, String newName) {
     javaSymbolRenames.put(origName, newName);
+    invalidateSymbolMatchers();
   }
 
   /** Returns true if the emission style is AllStatic. */
@@ -851,6 +900,7 @@ public class JavaConfiguration {
 
   protected void dispatch(String cmd, StringTokenizer tok, File file, String filename, int lineNo) throws IOException {
     //System.err.println("read cmd = [" + cmd + "]"); 
+    invalidateSymbolMatchers();
     if (cmd.equalsIgnoreCase("Package")) {
       packageName = readString("package", tok, filename, lineNo);
     } else if (cmd.equalsIgnoreCase("GlueGenRuntimePackage")) {
@@ -870,6 +920,10 @@ public class JavaConfiguration {
       nativeOutputUsesJavaHierarchy = Boolean.valueOf(tmp).booleanValue();
     } else if (cmd.equalsIgnoreCase("TagNativeBinding")) {
       tagNativeBinding = readBoolean("TagNativeBinding", tok, filename, lineNo).booleanValue();
+    } else if (cmd.equalsIgnoreCase("EmitCallProfile")) {
+      emitCallProfile = readBoolean("EmitCallProfile", tok, filename, lineNo).booleanValue();
+    } else if (cmd.equalsIgnoreCase("StructLayoutTable")) {
+      structLayoutTable = readString("StructLayoutTable", tok, filename, lineNo);
     } else if (cmd.equalsIgnoreCase("Style")) {
         try{
           emissionStyle = EmissionStyle.valueOf(readString("Style", tok, filename, lineNo));
@@ -932,6 +986,10 @@ public class JavaConfiguration {
       } else {
           addNioDirectOnly( funcName );
       }
+    } else if (cmd.equalsIgnoreCase("PrimitiveArrayAccess")) {
+      readPrimitiveArrayAccess(tok, filename, lineNo);
+    } else if (cmd.equalsIgnoreCase("PrimitiveArrayAccessLength")) {
+      readPrimitiveArrayAccessLength(tok, filename, lineNo);
     } else if (cmd.equalsIgnoreCase("EmitStruct")) {
       forcedStructs.add(readString("EmitStruct", tok, filename, lineNo));
     } else if (cmd.equalsIgnoreCase("StructPackage")) {
@@ -1296,6 +1354,43 @@ public class JavaConfiguration {
     }
   }
 
+  protected void readPrimitiveArrayAccess(StringTokenizer tok, String filename, int lineNo) {
+    try {
+      String functionName = tok.nextToken();
+      PrimitiveArrayAccess mode = PrimitiveArrayAccess.valueOf(tok.nextToken().toUpperCase());
+      int threshold = 0;
+      if (mode == PrimitiveArrayAccess.THRESHOLD) {
+        threshold = Integer.parseInt(tok.nextToken());
+        if (threshold < 0) {
+          throw new IllegalArgumentException("Negative threshold " + threshold);
+        }
+      }
+      primitiveArrayAccess.put(functionName, mode);
+      primitiveArrayAccessThresholds.put(functionName, Integer.valueOf(threshold));
+    } catch (Exception e) {
+      throw new RuntimeException("Error parsing \"PrimitiveArrayAccess\" command at line " + lineNo +
+        " in file \"" + filename + "\"", e);
+    }
+  }
+
+  protected void readPrimitiveArrayAccessLength(StringTokenizer tok, String filename, int lineNo) {
+    try {
+      String functionName = tok.nextToken();
+      int argNum = Integer.parseInt(tok.nextToken());
+      String restOfLine = tok.nextToken("\n\r\f");
+      restOfLine = restOfLine.trim();
+      Map<Integer, String> lengths = primitiveArrayAccessLengths.get(functionName);
+      if (lengths == null) {
+        lengths = new HashMap<Integer, String>();
+        primitiveArrayAccessLengths.put(functionName, lengths);
+      }
+      lengths.put(Integer.valueOf(argNum), restOfLine);
+    } catch (Exception e) {
+      throw new RuntimeException("Error parsing \"PrimitiveArrayAccessLength\" command at line " + lineNo +
+        " in file \"" + filename + "\"", e);
+    }
+  }
+
   protected void readReturnValueCapacity(StringTokenizer tok, String filename, int lineNo) {
     try {
       String functionName = tok.nextToken();
@@ -46,6 +46,11 @@ import com.jogamp.common.os.MachineDescription;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.text.MessageFormat;
 
 import com.jogamp.gluegen.cgram.types.*;
@@ -89,11 +94,31 @@ public class JavaEmitter implements GlueEmitter {
    */
   public enum MethodAccess {PUBLIC, PROTECTED, PRIVATE, PACKAGE_PRIVATE, PUBLIC_ABSTRACT}
 
+  /**
+   * Access mode of the native glue for non-direct buffer and primitive
+   * array arguments: pin the array for the whole call via
+   * GetPrimitiveArrayCritical (CRITICAL), copy it into a scratch native
+   * buffer via Get/Set&lt;Type&gt;ArrayRegion (REGION), or pin only
+   * arrays up to a byte size threshold and copy larger ones (THRESHOLD).
+   */
+  public enum PrimitiveArrayAccess {CRITICAL, REGION, THRESHOLD}
+
   private PrintWriter javaWriter; // Emits either interface or, in AllStatic mode, everything
   private PrintWriter javaImplWriter; // Only used in non-AllStatic modes for impl class
   private PrintWriter cWriter;
+
+  /** Name of the generated CallProfile field, see {@link JavaConfiguration#emitCallProfile()}. */
+  public static final String CALL_PROFILE_FIELD = "CALL_PROFILE";
+  // CallProfile function ids by binding name, in order of emission
+  private final Map<String, Integer> callProfileIds = new LinkedHashMap<String, Integer>();
   private final MachineDescription machDescJava = MachineDescription.StaticConfig.X86_64_UNIX.md;
   private final MachineDescription.StaticConfig[] machDescTargetConfigs = MachineDescription.StaticConfig.values();
+
+  /** Offset and size thunks of all structs emitted with a layout table, indexed by the struct classes */
+  private List<SizeThunk> structLayoutEntries;
+
+  /** Profile of the current run, or null */
+  private GlueGenProfile profile;
       
   protected final static Logger LOG = Logger.getLogger(JavaEmitter.class.getPackage().getName());
 
@@ -131,6 +156,7 @@ public class JavaEmitter implements GlueEmitter {
   }
 
     public void beginEmission(GlueEmitterControls controls) throws IOException {
+        profile = controls.getProfile();
 
         // Request emission of any structs requested
         for (String structs : cfg.forcedStructs()) {
@@ -378,6 +404,7 @@ public class JavaEmitter implements GlueEmitter {
     this.typedefDictionary = typedefDictionary;
     this.structDictionary  = structDictionary;
     this.canonMap          = canonMap;
+    callProfileIds.clear();
 
     if ((cfg.allStatic() || cfg.emitInterface()) && !cfg.structsOnly()) {
       javaWriter().println();
@@ -416,7 +443,13 @@ public class JavaEmitter implements GlueEmitter {
     for (FunctionSymbol cFunc : funcsToBind) {
       // Check to see whether this function should be ignored
       if (!cfg.shouldIgnoreInImpl(cFunc.getName())) {
+          if (null != profile) {
+              profile.beginItem();
+          }
           methodBindingEmitters.addAll(generateMethodBindingEmitters(methodBindingSet, cFunc));
+          if (null != profile) {
+              profile.endItem("binding", cFunc.getName());
+          }
       }
 
     }
@@ -425,8 +458,14 @@ public class JavaEmitter implements GlueEmitter {
     for (FunctionEmitter emitter : methodBindingEmitters) {
       try {
         if (!emitter.isInterface() || !cfg.shouldIgnoreInInterface(emitter.getName())) {
+            if (null != profile) {
+                profile.beginItem();
+            }
             emitter.emit();
             emitter.getDefaultOutput().println(); // put newline after method body
+            if (null != profile) {
+                profile.endItem(emitter.getClass().getSimpleName(), emitter.getName());
+            }
         }
       } catch (Exception e) {
         throw new RuntimeException(
@@ -488,7 +527,8 @@ public class JavaEmitter implements GlueEmitter {
                          (binding.needsNIOWrappingOrUnwrapping() ||
                           binding.signatureUsesJavaPrimitiveArrays()) ||
                          (prologue != null) ||
-                         (epilogue != null));
+                         (epilogue != null) ||
+                         cfg.emitCallProfile());
 
     JavaMethodBindingEmitter emitter =
       new JavaMethodBindingEmitter(binding,
@@ -520,9 +560,22 @@ public class JavaEmitter implements GlueEmitter {
     emitter.setReturnedArrayLengthExpression(cfg.returnedArrayLength(binding.getName()));
     emitter.setPrologue(prologue);
     emitter.setEpilogue(epilogue);
+    if (cfg.emitCallProfile() && !signatureOnly && !isUnimplemented) {
+      emitter.setCallProfile(CALL_PROFILE_FIELD, callProfileId(binding.getName()));
+    }
     allEmitters.add(emitter);
   }
 
+  /** Returns the CallProfile function id of the given binding name, allocating a new one if required. */
+  protected int callProfileId(String bindingName) {
+    Integer id = callProfileIds.get(bindingName);
+    if (id == null) {
+      id = Integer.valueOf(callProfileIds.size());
+      callProfileIds.put(bindingName, id);
+    }
+    return id.intValue();
+  }
+
   /**
    * Generates the private emitters for this MethodBinding. On the
    * Java side these will simply produce signatures for native
@@ -539,9 +592,11 @@ public class JavaEmitter implements GlueEmitter {
       return;
     }
 
+    // A profiled public method always has a body calling a private native method
     boolean hasPrologueOrEpilogue =
         ((cfg.javaPrologueForMethod(binding, false, false) != null) ||
-         (cfg.javaEpilogueForMethod(binding, false, false) != null));
+         (cfg.javaEpilogueForMethod(binding, false, false) != null) ||
+         cfg.emitCallProfile());
 
     // If we already generated a public native entry point for this
     // method, don't emit another one
@@ -636,6 +691,9 @@ public class JavaEmitter implements GlueEmitter {
       }
       cEmitter.setTemporaryCVariableDeclarations(cfg.temporaryCVariableDeclarations(binding.getName()));
       cEmitter.setTemporaryCVariableAssignments(cfg.temporaryCVariableAssignments(binding.getName()));
+      cEmitter.setPrimitiveArrayAccess(cfg.primitiveArrayAccess(binding.getName()),
+                                       cfg.primitiveArrayAccessThreshold(binding.getName()));
+      cEmitter.setPrimitiveArrayAccessLengths(cfg.primitiveArrayAccessLengths(binding.getName()));
   }
 
   /**
@@ -732,6 +790,10 @@ public class JavaEmitter implements GlueEmitter {
 
   public void endFunctions() throws Exception {
     if (!cfg.structsOnly()) {
+        if (cfg.emitCallProfile() && cfg.emitImpl()) {
+            emitCallProfile(cfg.allStatic() ? javaWriter() : javaImplWriter(),
+                            cfg.allStatic() ? cfg.className() : cfg.implClassName());
+        }
         if (cfg.allStatic() || cfg.emitInterface()) {
             emitCustomJavaCode(javaWriter(), cfg.className());
         }
@@ -741,6 +803,24 @@ public class JavaEmitter implements GlueEmitter {
     }
   }
 
+  /** Emits the CallProfile instance referenced by the profiled method bodies. */
+  protected void emitCallProfile(PrintWriter writer, String className) {
+    writer.println();
+    writer.println("  /** Call counts and durations of the native methods, indexed by function id. */");
+    writer.print("  public static final " + cfg.gluegenRuntimePackage() + ".CallProfile " + CALL_PROFILE_FIELD +
+                 " = new " + cfg.gluegenRuntimePackage() + ".CallProfile(\"" + className + "\", new String[] {");
+    boolean first = true;
+    for (String name : callProfileIds.keySet()) {
+      if (!first) {
+        writer.print(",");
+      }
+      writer.println();
+      writer.print("      \"" + name + "\"");
+      first = false;
+    }
+    writer.println(" });");
+  }
+
   public void beginStructLayout() throws Exception {}
   public void layoutStruct(CompoundType t) throws Exception {
     getLayout().layout(t);
@@ -753,6 +833,7 @@ public class JavaEmitter implements GlueEmitter {
     this.typedefDictionary = typedefDictionary;
     this.structDictionary  = structDictionary;
     this.canonMap          = canonMap;
+    structLayoutEntries    = new ArrayList<SizeThunk>();
   }
 
   public void emitStruct(CompoundType structType, String alternateName) throws Exception {
@@ -798,10 +879,17 @@ public class JavaEmitter implements GlueEmitter {
     // Native code for calls through function pointers gets emitted
     // into the abstract base class; Java code which accesses fields
     // gets emitted into the concrete classes
-    for (int i = 0; i < structType.getNumFields(); i++) {
-      if (structType.getField(i).getType().isFunctionPointer()) {
+    //
+    // The Java names of the fields are resolved once up front, null marks an ignored field
+    final String[] fieldNames = new String[structType.getNumFields()];
+    for (int i = 0; i < fieldNames.length; i++) {
+      final Field field = structType.getField(i);
+      if (field.getType().isFunctionPointer()) {
         needsNativeCode = true;
-        break;
+      }
+      if (!cfg.shouldIgnoreInInterface(name + " " + field.getName())) {
+        final String renamed = cfg.getJavaSymbolRename(field.getName());
+        fieldNames[i] = renamed==null ? field.getName() : renamed;
       }
     }
 
@@ -865,6 +953,9 @@ public class JavaEmitter implements GlueEmitter {
     writer.println("  StructAccessor accessor;");
     writer.println();
     writer.println("  private static final int mdIdx = MachineDescriptionRuntime.getStatic().ordinal();");    
+    if (null != cfg.structLayoutTable()) {
+      writer.println("  private static final int[] layout = " + cfg.structLayoutTable() + ".get(mdIdx);");
+    }
     writer.println();
     // generate all offset and size arrays
     generateOffsetAndSizeArrays(writer, containingTypeName, structType, null); /* w/o offset */    
@@ -872,9 +963,8 @@ public class JavaEmitter implements GlueEmitter {
       final Field field = structType.getField(i);
       final Type fieldType = field.getType();
 
-      if (!cfg.shouldIgnoreInInterface(name + " " + field.getName())) {
-        final String renamed = cfg.getJavaSymbolRename(field.getName());
-        final String fieldName = renamed==null ? field.getName() : renamed;
+      final String fieldName = fieldNames[i];
+      if (fieldName != null) {
         if (fieldType.isFunctionPointer()) {
            // no offset/size for function pointer ..
         } else if (fieldType.isCompound()) {
@@ -918,7 +1008,7 @@ public class JavaEmitter implements GlueEmitter {
     writer.println();
 
     writer.println("  public static int size() {");
-    writer.println("    return "+containingTypeName+"_size[mdIdx];");
+    writer.println("    return "+structSizeExpr(containingTypeName)+";");
     writer.println("  }");
     writer.println();
     writer.println("  public static " + containingTypeName + " create() {");
@@ -941,9 +1031,8 @@ public class JavaEmitter implements GlueEmitter {
       final Field field = structType.getField(i);
       final Type fieldType = field.getType();
 
-      if (!cfg.shouldIgnoreInInterface(name + " " + field.getName())) {
-        final String renamed = cfg.getJavaSymbolRename(field.getName());
-        final String fieldName = renamed==null ? field.getName() : renamed;
+      final String fieldName = fieldNames[i];
+      if (fieldName != null) {
 
         if (fieldType.isFunctionPointer()) {
             try {
@@ -1023,7 +1112,7 @@ public class JavaEmitter implements GlueEmitter {
           generateGetterSignature(writer, false, fieldType.getName(), capitalizeString(fieldName));
           writer.println(" {");
           writer.println("    return " + fieldType.getName() + ".create( accessor.slice( " +
-                           fieldName+"_offset[mdIdx], "+fieldName+"_size[mdIdx] ) );");
+                           structOffsetExpr(fieldName)+", "+structSizeExpr(fieldName)+" ) );");
           writer.println(" }");
 
         } else if (fieldType.isArray()) {
@@ -1040,14 +1129,14 @@ public class JavaEmitter implements GlueEmitter {
             writer.println();
             generateSetterSignature(writer, false, containingTypeName, capitalized, paramType+"[]");
             writer.println(" {");
-            writer.print  ("    accessor.set" + capitalizeString(paramType) + "sAt(" + fieldName+"_offset[mdIdx], val);");
+            writer.print  ("    accessor.set" + capitalizeString(paramType) + "sAt(" + structOffsetExpr(fieldName)+", val);");
             writer.println("    return this;");
             writer.println("  }");
             writer.println();
             // Getter
             generateGetterSignature(writer, false, paramType+"[]", capitalized);
             writer.println(" {");
-            writer.print  ("    return accessor.get" + capitalizeString(paramType) + "sAt(" + fieldName+"_offset[mdIdx], new " +paramType+"["+fieldType.asArray().getLength()+"]);");
+            writer.print  ("    return accessor.get" + capitalizeString(paramType) + "sAt(" + structOffsetExpr(fieldName)+", new " +paramType+"["+fieldType.asArray().getLength()+"]);");
             writer.println(" }");
         } else {
           JavaType javaType = null;
@@ -1074,9 +1163,9 @@ public class JavaEmitter implements GlueEmitter {
             generateSetterSignature(writer, false, containingTypeName, capFieldName, javaTypeName);
             writer.println(" {");
             if( fieldTypeNativeSizeFixed ) {
-                writer.println("    accessor.set" + capJavaTypeName + "At(" + fieldName+"_offset[mdIdx], val);");
+                writer.println("    accessor.set" + capJavaTypeName + "At(" + structOffsetExpr(fieldName)+", val);");
             } else {
-                writer.println("    accessor.set" + capJavaTypeName + "At(" + fieldName+"_offset[mdIdx], val, MachineDescriptionRuntime.getStatic().md."+javaTypeName+"SizeInBytes());");
+                writer.println("    accessor.set" + capJavaTypeName + "At(" + structOffsetExpr(fieldName)+", val, MachineDescriptionRuntime.getStatic().md."+javaTypeName+"SizeInBytes());");
             }
             writer.println("    return this;");
             writer.println("  }");
@@ -1087,9 +1176,9 @@ public class JavaEmitter implements GlueEmitter {
             writer.println(" {");
             writer.print  ("    return ");            
             if( fieldTypeNativeSizeFixed ) {
-                writer.println("accessor.get" + capJavaTypeName + "At(" + fieldName+"_offset[mdIdx]);");
+                writer.println("accessor.get" + capJavaTypeName + "At(" + structOffsetExpr(fieldName)+");");
             } else {
-                writer.println("accessor.get" + capJavaTypeName + "At(" + fieldName+"_offset[mdIdx], MachineDescriptionRuntime.getStatic().md."+javaTypeName+"SizeInBytes());");
+                writer.println("accessor.get" + capJavaTypeName + "At(" + structOffsetExpr(fieldName)+", MachineDescriptionRuntime.getStatic().md."+javaTypeName+"SizeInBytes());");
             }            
             writer.println("  }");
           }
@@ -1105,7 +1194,154 @@ public class JavaEmitter implements GlueEmitter {
       newWriter.close();
     }
   }
-  public void endStructs() throws Exception {}
+  public void endStructs() throws Exception {
+    if (null != cfg.structLayoutTable() && !structLayoutEntries.isEmpty()) {
+      emitStructLayoutTable(cfg.structLayoutTable(), computeStructLayoutTable());
+    }
+  }
+
+  /**
+   * Computes the values of all {@link #structLayoutEntries} for each target MachineDescription,
+   * one target per thread.
+   */
+  private int[][] computeStructLayoutTable() throws Exception {
+    final SizeThunk[] entries = structLayoutEntries.toArray(new SizeThunk[structLayoutEntries.size()]);
+    final int nThreads = Math.min(machDescTargetConfigs.length, Runtime.getRuntime().availableProcessors());
+    final ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+    try {
+      final List<Future<int[]>> rows = new ArrayList<Future<int[]>>(machDescTargetConfigs.length);
+      for (final MachineDescription.StaticConfig target : machDescTargetConfigs) {
+        rows.add(executor.submit(new Callable<int[]>() {
+            public int[] call() {
+              final int[] row = new int[entries.length];
+              for (int i = 0; i < entries.length; i++) {
+                row[i] = (int) entries[i].computeSize(target.md);
+              }
+              return row;
+            }
+          }));
+      }
+      final int[][] table = new int[machDescTargetConfigs.length][];
+      for (int i = 0; i < table.length; i++) {
+        try {
+          table[i] = rows.get(i).get();
+        } catch (ExecutionException e) {
+          throw new RuntimeException("Unable to compute struct layouts for " + machDescTargetConfigs[i].name(), e.getCause());
+        }
+      }
+      return table;
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Emits the struct layout table class. Each row is stored as string constants,
+   * one char per value or 0xFFFF followed by two chars for larger values,
+   * which keeps the table out of the class initializer code.
+   */
+  private void emitStructLayoutTable(String fqClassName, int[][] table) throws IOException {
+    final int dot = fqClassName.lastIndexOf('.');
+    final String pkg = fqClassName.substring(0, dot);
+    final String className = fqClassName.substring(dot + 1);
+    final PrintWriter writer = openFile(cfg.javaOutputDir() + File.separator +
+                                        CodeGenUtils.packageAsPath(pkg) + File.separator + className + ".java");
+    try {
+      CodeGenUtils.emitAutogeneratedWarning(writer, this);
+      writer.println();
+      writer.println("package " + pkg + ";");
+      writer.println();
+      writer.println("/**");
+      writer.println(" * Field offsets and sizes of the generated struct classes, one row per");
+      writer.println(" * {@link " + MachineDescription.StaticConfig.class.getName().replace('$', '.') + "} in ordinal order.");
+      writer.println(" */");
+      writer.println("public class " + className + " {");
+      writer.println();
+      writer.println("  private static final int SIZE = " + structLayoutEntries.size() + ";");
+      writer.println();
+      writer.println("  private static final String[][] rows = new String[][] {");
+      for (int i = 0; i < table.length; i++) {
+        writer.println("    /* " + machDescTargetConfigs[i].name() + " */ {");
+        emitStructLayoutRow(writer, table[i]);
+        writer.println("    }" + (i < table.length - 1 ? "," : ""));
+      }
+      writer.println("  };");
+      writer.println();
+      writer.println("  private static final int[][] layouts = new int[rows.length][];");
+      writer.println();
+      writer.println("  /** Returns the offsets and sizes for the MachineDescription.StaticConfig of the given ordinal. */");
+      writer.println("  public static synchronized int[] get(int mdIdx) {");
+      writer.println("    if (null == layouts[mdIdx]) {");
+      writer.println("      final int[] layout = new int[SIZE];");
+      writer.println("      int n = 0;");
+      writer.println("      for (String chunk : rows[mdIdx]) {");
+      writer.println("        for (int i = 0; i < chunk.length(); i++) {");
+      writer.println("          final char c = chunk.charAt(i);");
+      writer.println("          if (c == 0xFFFF) {");
+      writer.println("            layout[n++] = (chunk.charAt(i + 1) << 16) | chunk.charAt(i + 2);");
+      writer.println("            i += 2;");
+      writer.println("          } else {");
+      writer.println("            layout[n++] = c;");
+      writer.println("          }");
+      writer.println("        }");
+      writer.println("      }");
+      writer.println("      layouts[mdIdx] = layout;");
+      writer.println("    }");
+      writer.println("    return layouts[mdIdx];");
+      writer.println("  }");
+      writer.println("}");
+    } finally {
+      writer.close();
+    }
+  }
+
+  /** Chars per string constant, well below the class file limit of 65535 bytes of modified UTF-8 */
+  private static final int STRUCT_LAYOUT_CHUNK = 8192;
+
+  private static void emitStructLayoutRow(PrintWriter writer, int[] row) {
+    final StringBuilder chunk = new StringBuilder();
+    int chars = 0;
+    boolean first = true;
+    for (int i = 0; i <= row.length; i++) {
+      final boolean last = i == row.length;
+      final int v = last ? 0 : row[i];
+      final int n = v < 0xFFFF ? 1 : 3;
+      if (last || chars + n > STRUCT_LAYOUT_CHUNK) {
+        writer.println((first ? "      \"" : "    , \"") + chunk + "\"");
+        chunk.setLength(0);
+        chars = 0;
+        first = false;
+        if (last) {
+          break;
+        }
+      }
+      if (n == 1) {
+        appendCharLiteral(chunk, v);
+      } else {
+        appendCharLiteral(chunk, 0xFFFF);
+        appendCharLiteral(chunk, v >>> 16);
+        appendCharLiteral(chunk, v & 0xFFFF);
+      }
+      chars += n;
+    }
+  }
+
+  /**
+   * Appends a char as escape sequence within a string literal. Octal escapes are used below 0x100,
+   * since unicode escapes of line terminators, quotes and backslashes are translated before the literal is parsed.
+   */
+  private static void appendCharLiteral(StringBuilder sb, int c) {
+    if (c < 0x100) {
+      sb.append('\\').append((char) ('0' + (c >> 6))).append((char) ('0' + ((c >> 3) & 7))).append((char) ('0' + (c & 7)));
+    } else {
+      final String hex = Integer.toHexString(c);
+      sb.append("\\u");
+      for (int i = hex.length(); i < 4; i++) {
+        sb.append('0');
+      }
+      sb.append(hex);
+    }
+  }
 
   public static int addStrings2Buffer(StringBuilder buf, String sep, String first, Collection<String> col) {
     int num = 0;
@@ -1143,7 +1379,32 @@ public class JavaEmitter implements GlueEmitter {
       writer.print("  public " + (abstractMethod ? "abstract " : "") + returnTypeName + " set" + capitalizedFieldName + "(" + paramTypeName + " val)");
   }
 
+  /** Returns the expression of the offset of the given struct field for the running platform */
+  private String structOffsetExpr(String fieldName) {
+      return null != cfg.structLayoutTable() ? "layout["+fieldName+"_offset]" : fieldName+"_offset[mdIdx]";
+  }
+
+  /** Returns the expression of the size of the given struct or struct field for the running platform */
+  private String structSizeExpr(String fieldName) {
+      return null != cfg.structLayoutTable() ? "layout["+fieldName+"_size]" : fieldName+"_size[mdIdx]";
+  }
+
   private void generateOffsetAndSizeArrays(PrintWriter writer, String fieldName, Type fieldType, Field field) {      
+      if (null != cfg.structLayoutTable()) {
+          // indices into the struct layout table
+          if(null != field) {
+              writer.println("  private static final int "+fieldName+"_offset = "+structLayoutEntries.size()+";");
+              structLayoutEntries.add(field.getOffset());
+          }
+          if(null != fieldType) {
+              if (null == fieldType.getSize()) {
+                  throw new RuntimeException("No size set for type \"" + fieldType.getName() + "\"");
+              }
+              writer.println("  private static final int "+fieldName+"_size = "+structLayoutEntries.size()+";");
+              structLayoutEntries.add(fieldType.getSize());
+          }
+          return;
+      }
       if(null != field) {
           writer.print("  private static final int[] "+fieldName+"_offset = new int[] { ");    
           for( int i=0; i < machDescTargetConfigs.length; i++ ) {
@@ -1884,7 +2145,7 @@ public class JavaEmitter implements GlueEmitter {
   /**
    * Converts first letter to upper case.
    */
-  private final String capitalizeString(String string) {
+  protected final String capitalizeString(String string) {
       return Character.toUpperCase(string.charAt(0)) + string.substring(1);
   }
 
@@ -85,6 +85,10 @@ public class JavaMethodBindingEmitter extends FunctionEmitter {
   protected List<String> prologue;
   protected List<String> epilogue;
 
+  // Expression referring to the CallProfile instance, null if calls are not profiled
+  protected String callProfile;
+  protected int callProfileId;
+
   // A non-null value indicates that rather than returning a compound
   // type accessor we are returning an array of such accessors; this
   // expression is a MessageFormat string taking the names of the
@@ -148,6 +152,8 @@ public class JavaMethodBindingEmitter extends FunctionEmitter {
     isUnimplemented               = arg.isUnimplemented;
     prologue                      = arg.prologue;
     epilogue                      = arg.epilogue;
+    callProfile                   = arg.callProfile;
+    callProfileId                 = arg.callProfileId;
     returnedArrayLengthExpression = arg.returnedArrayLengthExpression;
     cfg                           = arg.cfg;
   }
@@ -198,6 +204,14 @@ public class JavaMethodBindingEmitter extends FunctionEmitter {
     this.epilogue = epilogue;
   }
 
+  /** Lets the emitted body record its calls in the given CallProfile
+      expression using the function id <code>id</code>; a null expression
+      disables profiling. */
+  public void setCallProfile(String callProfile, int id) {
+    this.callProfile = callProfile;
+    this.callProfileId = id;
+  }
+
   /** Indicates whether this emitter will print only a signature, or
       whether it will emit Java code for the body of the method as
       well. */
@@ -409,6 +423,8 @@ public class JavaMethodBindingEmitter extends FunctionEmitter {
       writer.println();
       if (isUnimplemented) {
         writer.println("    throw new " + getUnsupportedExceptionType() + "(\"Unimplemented\");");
+      } else if (callProfile != null) {
+        emitProfiledCall(mBinding, writer);
       } else {
         emitPrologueOrEpilogue(prologue, writer);
         emitPreCallSetup(mBinding, writer);
@@ -419,6 +435,31 @@ public class JavaMethodBindingEmitter extends FunctionEmitter {
     }
   }
 
+  /** Wraps the regular body into a try / finally block timing the call. */
+  protected void emitProfiledCall(MethodBinding binding, PrintWriter writer) {
+    StringBuilderWriter body = new StringBuilderWriter(new StringBuilder(1024));
+    PrintWriter bodyWriter = new PrintWriter(body);
+    emitPrologueOrEpilogue(prologue, bodyWriter);
+    emitPreCallSetup(binding, bodyWriter);
+    emitReturnVariableSetupAndCall(binding, bodyWriter);
+    bodyWriter.flush();
+
+    writer.println("    final boolean _prof = " + callProfile + ".isEnabled();");
+    writer.println("    final long _prof_t0 = _prof ? System.nanoTime() : 0L;");
+    writer.println("    try {");
+    for (String line : body.toString().split("\\r?\\n")) {
+      if (line.length() > 0) {
+        writer.print("  ");
+      }
+      writer.println(line);
+    }
+    writer.println("    } finally {");
+    writer.println("      if (_prof) {");
+    writer.println("        " + callProfile + ".record(" + callProfileId + ", System.nanoTime() - _prof_t0);");
+    writer.println("      }");
+    writer.println("    }");
+  }
+
   protected void emitPrologueOrEpilogue(List<String> code, PrintWriter writer) {
     if (code != null) {
       String[] argumentNames = argumentNameArray();
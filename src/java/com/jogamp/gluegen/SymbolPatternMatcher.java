@@ -0,0 +1,151 @@
+/**
+ * Copyright 2011 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.gluegen;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Tests a symbol against a set of regular expressions at once,
+ * i.e. {@link #matches(String)} is true if any of the patterns
+ * {@link java.util.regex.Matcher#matches() matches} the whole symbol.
+ * <p>
+ * The patterns are compiled into
+ * <ul>
+ *   <li>a hash set of plain literals, e.g. <code>glBegin</code>,</li>
+ *   <li>a hash set of literal prefixes for patterns like <code>glVertex.*</code>, probed once per distinct prefix length,</li>
+ *   <li>one alternation of all remaining regular expressions.</li>
+ * </ul>
+ * Patterns which cannot be merged into an alternation without changing
+ * their meaning, e.g. using back references or flags, are tested one by one.
+ * </p>
+ */
+final class SymbolPatternMatcher {
+    private static final String META_CHARS = "\\[](){}.*+?^$|";
+
+    private final Set<String> literals = new HashSet<String>();
+    private final Map<String, Pattern> prefixes = new HashMap<String, Pattern>();
+    private final int[] prefixLengths;
+    private final Pattern alternation;
+    private final List<Pattern> separate = new ArrayList<Pattern>();
+
+    SymbolPatternMatcher(Collection<Pattern> patterns) {
+        final Set<Integer> lengths = new HashSet<Integer>();
+        final StringBuilder alt = new StringBuilder();
+        for (Pattern p : patterns) {
+            final String regex = p.pattern();
+            if (p.flags() != 0) {
+                separate.add(p);
+            } else if (isLiteral(regex, regex.length())) {
+                literals.add(regex);
+            } else if (regex.endsWith(".*") && isLiteral(regex, regex.length()-2)) {
+                final String prefix = regex.substring(0, regex.length()-2);
+                prefixes.put(prefix, p);
+                lengths.add(Integer.valueOf(prefix.length()));
+            } else if (regex.indexOf("\\Q") >= 0 || regex.indexOf("\\k") >= 0 || hasBackReference(regex)) {
+                separate.add(p);
+            } else {
+                if (alt.length() > 0) {
+                    alt.append('|');
+                }
+                alt.append("(?:").append(regex).append(')');
+            }
+        }
+        prefixLengths = new int[lengths.size()];
+        int i = 0;
+        for (Integer l : lengths) {
+            prefixLengths[i++] = l.intValue();
+        }
+        Arrays.sort(prefixLengths);
+        alternation = alt.length() > 0 ? Pattern.compile(alt.toString()) : null;
+    }
+
+    boolean isEmpty() {
+        return literals.isEmpty() && prefixes.isEmpty() && null == alternation && separate.isEmpty();
+    }
+
+    boolean matches(String symbol) {
+        if (literals.contains(symbol)) {
+            return true;
+        }
+        for (int i = 0; i < prefixLengths.length && prefixLengths[i] <= symbol.length(); i++) {
+            final Pattern p = prefixes.get(symbol.substring(0, prefixLengths[i]));
+            if (null != p) {
+                // '.' does not match line terminators, leave the rare case to the regex
+                if (!hasLineTerminator(symbol, prefixLengths[i]) || p.matcher(symbol).matches()) {
+                    return true;
+                }
+            }
+        }
+        if (null != alternation && alternation.matcher(symbol).matches()) {
+            return true;
+        }
+        for (Pattern p : separate) {
+            if (p.matcher(symbol).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isLiteral(String regex, int len) {
+        for (int i = 0; i < len; i++) {
+            if (META_CHARS.indexOf(regex.charAt(i)) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean hasBackReference(String regex) {
+        for (int i = regex.indexOf('\\'); 0 <= i && i < regex.length()-1; i = regex.indexOf('\\', i+2)) {
+            if (Character.isDigit(regex.charAt(i+1))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasLineTerminator(String s, int from) {
+        for (int i = from; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
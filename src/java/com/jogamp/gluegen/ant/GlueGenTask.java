@@ -73,6 +73,10 @@ import org.apache.tools.ant.util.JavaEnvUtils;
                 emitter="[emitter class name]"
                 config="[configuration file]"
                 dumpCPP="[optional boolean]"
+                streamParse="[optional boolean]"
+                profile="[optional boolean]"
+                profileItems="[optional boolean]"
+                profileReport="[optional JSON profile report file]"
                 debug="[optional boolean]" /&gt;
  * </pre> 
  *
@@ -105,6 +109,26 @@ public class GlueGenTask extends Task
      */
     private boolean dumpCPP=false;
 
+    /**
+     * <p>The optional streamParse flag.</p>
+     */
+    private boolean streamParse=false;
+
+    /**
+     * <p>The optional profile flag.</p>
+     */
+    private boolean profile=false;
+
+    /**
+     * <p>The optional profileItems flag.</p>
+     */
+    private boolean profileItems=false;
+
+    /**
+     * <p>The optional JSON profile report file name.</p>
+     */
+    private String profileReport;
+
     /**
      * <p>The optional output root dir.</p>
      */
@@ -190,6 +214,48 @@ public class GlueGenTask extends Task
         this.dumpCPP=dumpCPP;
     }
 
+    /**
+     * <p>Set the streamParse flag (optional), walking each external definition
+     * right after parsing it.  This is called by ANT.</p>
+     */
+    public void setStreamParse(boolean streamParse)
+    {
+        log( ("Setting streamParse flag: " + streamParse), Project.MSG_VERBOSE);
+        this.streamParse=streamParse;
+    }
+
+    /**
+     * <p>Set the profile flag (optional), printing the time and allocations
+     * spent in each generation phase.  This is called by ANT.</p>
+     */
+    public void setProfile(boolean profile)
+    {
+        log( ("Setting profile flag: " + profile), Project.MSG_VERBOSE);
+        this.profile=profile;
+    }
+
+    /**
+     * <p>Set the profileItems flag (optional), additionally profiling each
+     * emitted struct and function.  This is called by ANT.</p>
+     */
+    public void setProfileItems(boolean profileItems)
+    {
+        log( ("Setting profileItems flag: " + profileItems), Project.MSG_VERBOSE);
+        this.profileItems=profileItems;
+    }
+
+    /**
+     * <p>Set the file the profile is written to as JSON (optional).  Implies
+     * the profile flag.  This is called by ANT.</p>
+     * 
+     * @param  profileReport the name of the JSON report file
+     */
+    public void setProfileReport(String profileReport)
+    {
+        log( ("Setting profile report file name to: " + profileReport), Project.MSG_VERBOSE);
+        this.profileReport=profileReport;
+    }
+
     /**
      * <p>Set the output root dir (optional).  This is called by ANT.</p>
      * 
@@ -459,6 +525,22 @@ public class GlueGenTask extends Task
             gluegenCommandline.createArgument().setValue("--dumpCPP");
         }
 
+        // add the streamParse flag if enabled
+        if(streamParse) {
+            gluegenCommandline.createArgument().setValue("--streamParse");
+        }
+
+        // add the profile flags if enabled
+        if(profile) {
+            gluegenCommandline.createArgument().setValue("--profile");
+        }
+        if(profileItems) {
+            gluegenCommandline.createArgument().setValue("--profileItems");
+        }
+        if(isValid(profileReport)) {
+            gluegenCommandline.createArgument().setValue("--profileReport=" + profileReport);
+        }
+
         // add the output root dir
         if(null!=outputRootDir && outputRootDir.trim().length()>0) {
             gluegenCommandline.createArgument().setValue("-O" + outputRootDir);
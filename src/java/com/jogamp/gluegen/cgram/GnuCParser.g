@@ -48,6 +48,11 @@ options
     // access to symbol table
     public CSymbolTable symbolTable = new CSymbolTable();
 
+    // receiver of the external definitions parsed by streamedTranslationUnit
+    public static interface ExternalDefListener {
+        public void externalDef(TNode def) throws RecognitionException;
+    }
+
     // source for names to unnamed scopes
     protected int unnamedScopeCounter = 0;
 
@@ -63,6 +68,18 @@ options
       return returnValue;
     }
 
+    // Symbol table entry of a declared name. isTypedefName() only needs to
+    // know whether the name is a typedef, so unlike a copy of the whole
+    // declaration this doesn't keep the parsed trees reachable.
+    protected TNode symbolTableEntry(AST declarationSpecifiers) {
+      for (AST node = declarationSpecifiers; node != null; node = node.getNextSibling()) {
+        if (node.getType() == LITERAL_typedef) {
+          return (TNode) astFactory.create(LITERAL_typedef, "typedef");
+        }
+      }
+      return (TNode) astFactory.create(ID, "");
+    }
+
 
     public String getAScopeName() {
       return "" + (unnamedScopeCounter++);
@@ -153,6 +170,12 @@ options
 translationUnit
         :       ( externalList )?       /* Empty source files are allowed.  */
         ;
+
+/* Same as translationUnit, but hands each external definition to the listener
+   right after parsing it instead of building the tree of the whole unit. */
+streamedTranslationUnit[ExternalDefListener listener]
+        :       ( e:externalDef!        { listener.externalDef(#e); } )*
+        ;
 asm_expr
         :       "asm"^ 
                 ("volatile")? LCURLY expr RCURLY ( SEMI )+
@@ -408,10 +431,8 @@ initDeclList[AST declarationSpecifiers]
 initDecl[AST declarationSpecifiers]
                                         { String declName = ""; }
         :       declName = d:declarator[false]
-                                        {   AST ds1, d1;
-                                            ds1 = astFactory.dupList(declarationSpecifiers);
-                                            d1 = astFactory.dupList(#d);
-                                            symbolTable.add(declName, #(null, ds1, d1) );
+                                        {
+                                            symbolTable.add(declName, symbolTableEntry(declarationSpecifiers));
                                         }
                 ( attributeDecl )*
                 ( ASSIGN initializer
@@ -460,10 +481,7 @@ nestedFunctionDef
                 )?
                 declName = d:declarator[false]
                             {
-                            AST d2, ds2;
-                            d2 = astFactory.dupList(#d);
-                            ds2 = astFactory.dupList(#ds);
-                            symbolTable.add(declName, #(null, ds2, d2));
+                            symbolTable.add(declName, symbolTableEntry(#ds));
                             pushScope(declName);
                             }
                 ( declaration )*
@@ -93,6 +93,18 @@ options
       return returnValue;
     }
 
+    // Symbol table entry of a declared name. isTypedefName() only needs to
+    // know whether the name is a typedef, so unlike a copy of the whole
+    // declaration this doesn't keep the parsed trees reachable.
+    protected TNode symbolTableEntry(AST declarationSpecifiers) {
+      for (AST node = declarationSpecifiers; node != null; node = node.getNextSibling()) {
+        if (node.getType() == LITERAL_typedef) {
+          return (TNode) astFactory.create(LITERAL_typedef, "typedef");
+        }
+      }
+      return (TNode) astFactory.create(ID, "");
+    }
+
 
     public String getAScopeName() {
       return "" + (unnamedScopeCounter++);
@@ -398,10 +410,8 @@ initDeclList[AST declarationSpecifiers]
 initDecl[AST declarationSpecifiers]
                                         { String declName = ""; }
         :       declName = d:declarator[false]
-                                        {   AST ds1, d1;
-                                            ds1 = astFactory.dupList(declarationSpecifiers);
-                                            d1 = astFactory.dupList(#d);
-                                            symbolTable.add(declName, #(null, ds1, d1) );
+                                        {
+                                            symbolTable.add(declName, symbolTableEntry(declarationSpecifiers));
                                         }
                 ( ASSIGN initializer
                 | COLON expr
@@ -491,10 +501,7 @@ parameterDeclaration
         :       ds:declSpecifiers
                 ( ( declarator[false] )=> declName = d:declarator[false]
                             {
-                            AST d2, ds2;
-                            d2 = astFactory.dupList(#d);
-                            ds2 = astFactory.dupList(#ds);
-                            symbolTable.add(declName, #(null, ds2, d2));
+                            symbolTable.add(declName, symbolTableEntry(#ds));
                             }
                 | nonemptyAbstractDeclarator
                 )?
@@ -518,10 +525,7 @@ functionDef
                 )
                 declName = d:declarator[true]
                             {
-                            AST d2, ds2;
-                            d2 = astFactory.dupList(#d);
-                            ds2 = astFactory.dupList(#ds);
-                            symbolTable.add(declName, #(null, ds2, d2));
+                            symbolTable.add(declName, symbolTableEntry(#ds));
                             pushScope(declName);
                             }
                 ( declaration )* (VARARGS)? ( SEMI! )*
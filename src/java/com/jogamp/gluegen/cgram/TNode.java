@@ -21,6 +21,11 @@ import java.util.Enumeration;
 
   It stores line numbers for nodes.
 
+  The source file and token number of nodes created from a token
+  are kept in plain fields, which are visible as the "source" and
+  "tokenNumber" attributes. The attribute table is only allocated
+  for other attributes, hence most nodes do not have one.
+
   Searches for parents and children of a tree can be done
   based on their type.
 
@@ -38,6 +43,9 @@ public class TNode extends CommonAST {
   protected TNode left;
   protected boolean marker = false;
   protected Hashtable attributes = null;
+  protected boolean hasTokenInfo = false;
+  protected String source;
+  protected int tokenNumber;
   static String tokenVocabulary;  
   
 
@@ -56,8 +64,9 @@ public void initialize(Token token) {
         setText(tok.getText());
         setType(tok.getType());
         setLineNum(tok.getLine());
-        setAttribute("source", tok.getSource());
-        setAttribute("tokenNumber", new Integer(tok.getTokenNumber()));
+        hasTokenInfo = true;
+        source = tok.getSource();
+        tokenNumber = tok.getTokenNumber();
 }       
 public void initialize(AST tr) {
         TNode t = (TNode) tr;
@@ -65,9 +74,17 @@ public void initialize(AST tr) {
         setType(t.getType());
         setLineNum(t.getLineNum());
         setDefNode(t.getDefNode());
-        this.attributes = t.getAttributesTable();
+        copyAttributes(t);
+        this.attributes = t.attributes;
 }       
 
+  /** copy the source and token number of the given node */
+  private void copyAttributes(TNode t) {
+    hasTokenInfo = t.hasTokenInfo;
+    source = t.source;
+    tokenNumber = t.tokenNumber;
+  }
+
 
   /** Get the token type for this node */
   public int getType() { return ttype; }
@@ -89,11 +106,18 @@ public void initialize(AST tr) {
     marker = marker_; 
   }
 
-  /** get the hashtable that holds attribute values.
+  /** get the hashtable that holds attribute values,
+   including the source and token number of nodes created from a token.
    */  
   public Hashtable getAttributesTable() {
     if(attributes == null)
       attributes = new Hashtable(7);
+    if(hasTokenInfo) {
+      if(!attributes.containsKey("source") && source != null)
+        attributes.put("source", source);
+      if(!attributes.containsKey("tokenNumber"))
+        attributes.put("tokenNumber", new Integer(tokenNumber));
+    }
     return attributes;
   }
 
@@ -109,10 +133,15 @@ public void initialize(AST tr) {
     If the value does not exist, it returns null.
     */
   public Object getAttribute(String attrName) {
-    if(attributes == null)
-      return null;
-    else
+    if(attributes != null && attributes.containsKey(attrName))
       return attributes.get(attrName);
+    if(hasTokenInfo) {
+      if(attrName.equals("source"))
+        return source;
+      if(attrName.equals("tokenNumber"))
+        return new Integer(tokenNumber);
+    }
+    return null;
   }
 
   /** Get the line number for this node.
@@ -272,6 +301,7 @@ public void initialize(AST tr) {
     copy.text = text;
     copy.lineNum = lineNum;
     copy.defNode = defNode;
+    copy.copyAttributes(this);
     if(attributes != null)
       copy.attributes = (Hashtable)attributes.clone();
     if(down != null)
@@ -291,6 +321,7 @@ public void initialize(AST tr) {
     copy.text = text;
     copy.lineNum = lineNum;
     copy.defNode = defNode;
+    copy.copyAttributes(this);
     if(attributes != null)
       copy.attributes = (Hashtable)attributes.clone();
     if(down != null)
@@ -147,15 +147,100 @@ public abstract class SizeThunk implements Cloneable {
       }
     };
 
+  /**
+   * Composite thunk caching its results per MachineDescription, since offsets
+   * of consecutive struct fields and sizes of nested structs share their thunks.
+   * Without the cache, computing the offsets of all fields of a struct evaluates
+   * the thunks of all preceding fields again for each field.
+   * <p>
+   * Size and alignment are computed and cached together, so querying
+   * the fields in order only recurses into the previous, cached field.
+   * The results are kept in small arrays, replaced as a whole when a
+   * MachineDescription is added, hence they may be read concurrently.
+   * </p>
+   */
+  private static abstract class Memoized extends SizeThunk {
+    private static final class Memo {
+      final MachineDescription[] machDescs;
+      final long[] sizes;
+      final long[] alignments;
+
+      Memo(MachineDescription[] machDescs, long[] sizes, long[] alignments) {
+        this.machDescs = machDescs;
+        this.sizes = sizes;
+        this.alignments = alignments;
+      }
+    }
+
+    private volatile Memo memo = new Memo(new MachineDescription[0], new long[0], new long[0]);
+
+    Memoized() { super(false); }
+
+    abstract long computeSizeImpl(MachineDescription machDesc);
+    abstract long computeAlignmentImpl(MachineDescription machDesc);
+
+    public final long computeSize(MachineDescription machDesc) {
+      Memo m = memo;
+      int i = indexOf(m, machDesc);
+      if (i < 0) {
+        m = compute(machDesc);
+        i = indexOf(m, machDesc);
+      }
+      return m.sizes[i];
+    }
+
+    public final long computeAlignment(MachineDescription machDesc) {
+      Memo m = memo;
+      int i = indexOf(m, machDesc);
+      if (i < 0) {
+        m = compute(machDesc);
+        i = indexOf(m, machDesc);
+      }
+      return m.alignments[i];
+    }
+
+    private static int indexOf(Memo m, MachineDescription machDesc) {
+      final MachineDescription[] mds = m.machDescs;
+      for (int i = 0; i < mds.length; i++) {
+        if (mds[i] == machDesc) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    private Memo compute(MachineDescription machDesc) {
+      final long size = computeSizeImpl(machDesc);
+      final long alignment = computeAlignmentImpl(machDesc);
+      synchronized (this) {
+        final Memo m = memo;
+        if (indexOf(m, machDesc) >= 0) {
+          return m; // computed concurrently
+        }
+        final int n = m.machDescs.length;
+        final MachineDescription[] mds = new MachineDescription[n + 1];
+        final long[] sizes = new long[n + 1];
+        final long[] alignments = new long[n + 1];
+        System.arraycopy(m.machDescs, 0, mds, 0, n);
+        System.arraycopy(m.sizes, 0, sizes, 0, n);
+        System.arraycopy(m.alignments, 0, alignments, 0, n);
+        mds[n] = machDesc;
+        sizes[n] = size;
+        alignments[n] = alignment;
+        return memo = new Memo(mds, sizes, alignments);
+      }
+    }
+  }
+
   // Factory methods for performing certain limited kinds of
   // arithmetic on these values
   public static SizeThunk add(final SizeThunk thunk1,
                               final SizeThunk thunk2) {
-    return new SizeThunk(false) {
-        public long computeSize(MachineDescription machDesc) {
+    return new Memoized() {
+        long computeSizeImpl(MachineDescription machDesc) {
           return thunk1.computeSize(machDesc) + thunk2.computeSize(machDesc);
         }
-        public long computeAlignment(MachineDescription machDesc) {
+        long computeAlignmentImpl(MachineDescription machDesc) {
           final long thunk1A = thunk1.computeAlignment(machDesc); 
           final long thunk2A = thunk2.computeAlignment(machDesc);
           return ( thunk1A > thunk2A ) ? thunk1A : thunk2A ;
@@ -165,11 +250,11 @@ public abstract class SizeThunk implements Cloneable {
 
   public static SizeThunk mul(final SizeThunk thunk1,
                               final SizeThunk thunk2) {
-    return new SizeThunk(false) {
-        public long computeSize(MachineDescription machDesc) {
+    return new Memoized() {
+        long computeSizeImpl(MachineDescription machDesc) {
           return thunk1.computeSize(machDesc) * thunk2.computeSize(machDesc);
         }
-        public long computeAlignment(MachineDescription machDesc) {
+        long computeAlignmentImpl(MachineDescription machDesc) {
           final long thunk1A = thunk1.computeAlignment(machDesc); 
           final long thunk2A = thunk2.computeAlignment(machDesc);
           return ( thunk1A > thunk2A ) ? thunk1A : thunk2A ;
@@ -179,8 +264,8 @@ public abstract class SizeThunk implements Cloneable {
 
   public static SizeThunk align(final SizeThunk offsetThunk,
                                 final SizeThunk alignmentThunk) {
-    return new SizeThunk(false) {
-        public long computeSize(MachineDescription machDesc) {
+    return new Memoized() {
+        long computeSizeImpl(MachineDescription machDesc) {
           // x % 2n == x & (2n - 1)
           // remainder = net_size & ( alignment - 1 )
           // padding = alignment - remainder ;
@@ -194,7 +279,7 @@ public abstract class SizeThunk implements Cloneable {
           return size + padding;
         }
         
-        public long computeAlignment(MachineDescription machDesc) {
+        long computeAlignmentImpl(MachineDescription machDesc) {
           final long thunk1A = offsetThunk.computeAlignment(machDesc); 
           final long thunk2A = alignmentThunk.computeAlignment(machDesc);
           return ( thunk1A > thunk2A ) ? thunk1A : thunk2A ;
@@ -204,11 +289,11 @@ public abstract class SizeThunk implements Cloneable {
 
   public static SizeThunk max(final SizeThunk thunk1,
                               final SizeThunk thunk2) {
-    return new SizeThunk(false) {
-        public long computeSize(MachineDescription machDesc) {
+    return new Memoized() {
+        long computeSizeImpl(MachineDescription machDesc) {
           return Math.max(thunk1.computeSize(machDesc), thunk2.computeSize(machDesc));
         }
-        public long computeAlignment(MachineDescription machDesc) {
+        long computeAlignmentImpl(MachineDescription machDesc) {
           final long thunk1A = thunk1.computeAlignment(machDesc); 
           final long thunk2A = thunk2.computeAlignment(machDesc);
           return ( thunk1A > thunk2A ) ? thunk1A : thunk2A ;
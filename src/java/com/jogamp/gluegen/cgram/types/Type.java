@@ -55,6 +55,8 @@ public abstract class Type implements Cloneable {
   private int    cvAttributes;
   private int    typedefedCVAttributes;
   private boolean hasTypedefName;
+  private boolean computedHashcode;
+  private int     hashcode;
 
   protected Type(String name, SizeThunk size, int cvAttributes) {
     setName(name);
@@ -97,6 +99,7 @@ public abstract class Type implements Cloneable {
     // we don't redundantly repeat them in the CV attributes string
     typedefedCVAttributes = cvAttributes;
     hasTypedefName = true;
+    computedHashcode = false;
   }
 
   /** SizeThunk which computes size of this type in bytes. */
@@ -168,18 +171,23 @@ public abstract class Type implements Cloneable {
     return (isPointer() && asPointer().getTargetType().isFunction());
   }
 
-  /** Hashcode for Types. */
+  /** Hashcode for Types, computed once per name. The const/volatile
+      attributes of a type never change. */
   @Override
   public int hashCode() {
-    if (name == null) {
-      return 0;
+    if (computedHashcode) {
+      return hashcode;
     }
-    
-    if (cvAttributes != 0)  {
+    if (name == null) {
+      hashcode = 0;
+    } else if (cvAttributes != 0)  {
       String nameWithAttribs = name + cvAttributes;
-      return nameWithAttribs.hashCode();
+      hashcode = nameWithAttribs.hashCode();
+    } else {
+      hashcode = name.hashCode();
     }
-    return name.hashCode();
+    computedHashcode = true;
+    return hashcode;
   }
   
   /**
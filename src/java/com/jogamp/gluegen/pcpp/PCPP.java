@@ -48,7 +48,6 @@ import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.io.Reader;
-import java.io.StreamTokenizer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -77,9 +76,20 @@ public class PCPP {
     private Map<String, Macro>  macroMap           = new HashMap<String, Macro>(128);
     private Set<String>         nonConstantDefines = new HashSet<String>(128);
 
+    /** Guard macro by absolute path of each file whose content is wrapped in one #ifndef block */
+    private Map<String, String> includeGuards      = new HashMap<String, String>();
+    /** Absolute paths of the files containing #pragma once */
+    private Set<String>         pragmaOnceFiles    = new HashSet<String>();
+
+    /** Canonical instances of all words read, shared by the tokenizers of all files. */
+    private final PCPPTokenizer.WordTable words = new PCPPTokenizer.WordTable();
+
     /** List containing the #include paths as Strings */
     private List<String> includePaths;
 
+    /** Results of {@link #findFile(String)} by file name, including the names not found as null values */
+    private final Map<String, String> resolvedFiles = new HashMap<String, String>();
+
     private ParseState  state;
 
     private boolean enableDebugPrint;
@@ -93,45 +103,38 @@ public class PCPP {
     }
 
     public void run(Reader reader, String filename) throws IOException {
-        StreamTokenizer tok = null;
-        BufferedReader bufReader = null;
-        if (reader instanceof BufferedReader) {
-            bufReader = (BufferedReader) reader;
-        } else {
-            bufReader = new BufferedReader(reader);
-        }
-
-        tok = new StreamTokenizer(new ConcatenatingReader(bufReader));
-        initTokenizer(tok);
+        PCPPTokenizer tok = new PCPPTokenizer(reader, words);
 
         ParseState curState = new ParseState(tok, filename);
         ParseState oldState = state;
         state = curState;
         lineDirective();
         parse();
+        if (curState.guardState == ParseState.GUARD_END) {
+            debugPrint(false, "GUARD " + curState.guardMacro + ", file \"" + filename + "\"");
+            includeGuards.put(new File(filename).getAbsolutePath(), curState.guardMacro);
+        }
         state = oldState;
         if (state != null) {
             lineDirective();
         }
     }
 
-    private void initTokenizer(StreamTokenizer tok) {
-        tok.resetSyntax();
-        tok.wordChars('a', 'z');
-        tok.wordChars('A', 'Z');
-        tok.wordChars('0', '9');
-        tok.wordChars('_', '_');
-        tok.wordChars('-', '.');
-        tok.wordChars(128, 255);
-        tok.whitespaceChars(0, ' ');
-        tok.quoteChar('"');
-        tok.quoteChar('\'');
-        tok.eolIsSignificant(true);
-        tok.slashSlashComments(true);
-        tok.slashStarComments(true);
+    /**
+     * Returns the path of the given file within the first include path containing it,
+     * or null if not found. The result is looked up only once per PCPP instance,
+     * sparing the file system checks of all include paths on repeated includes.
+     */
+    public String findFile(String filename) {
+        String fullPath = resolvedFiles.get(filename);
+        if (null == fullPath && !resolvedFiles.containsKey(filename)) {
+            fullPath = findFileImpl(filename);
+            resolvedFiles.put(filename, fullPath);
+        }
+        return fullPath;
     }
 
-    public String findFile(String filename) {
+    private String findFileImpl(String filename) {
         String sep = File.separator;
         for (String inclPath : includePaths) {
             String fullPath = inclPath + sep + filename;
@@ -155,12 +158,26 @@ public class PCPP {
     // State
     static class ParseState {
 
-        private StreamTokenizer tok;
+        private PCPPTokenizer tok;
         private String filename;
         private boolean startOfLine;
         private boolean startOfFile;
 
-        ParseState(StreamTokenizer tok, String filename) {
+        /** No include guard, the file has content outside of its first conditional block */
+        static final int GUARD_NONE   = 0;
+        /** Nothing but line breaks and comments read so far */
+        static final int GUARD_START  = 1;
+        /** Inside the first block, started by #ifndef {@link #guardMacro} */
+        static final int GUARD_INSIDE = 2;
+        /** Past the #endif of the first block, which guards the whole file unless more content follows */
+        static final int GUARD_END    = 3;
+
+        private int guardState = GUARD_START;
+        private String guardMacro;
+        /** Depth of the enable bits outside of the guard block */
+        private int guardDepth;
+
+        ParseState(PCPPTokenizer tok, String filename) {
             this.tok = tok;
             this.filename = filename;
             startOfLine = true;
@@ -237,7 +254,7 @@ public class PCPP {
         int lineno = lineNumber();
         // Check to see whether the previous call to nextToken() left an
         // EOL on the stream
-        if (state.curToken() == StreamTokenizer.TT_EOL) {
+        if (state.curToken() == PCPPTokenizer.TT_EOL) {
             state.setStartOfLine(true);
         } else if (!state.startOfFile()) {
             state.setStartOfLine(false);
@@ -245,13 +262,13 @@ public class PCPP {
         state.setStartOfFile(false);
         int val = state.nextToken();
         if (!returnEOLs) {
-            if (val == StreamTokenizer.TT_EOL) {
+            if (val == PCPPTokenizer.TT_EOL) {
                 do {
                     // Consume and return next token, setting state appropriately
                     val = state.nextToken();
                     state.setStartOfLine(true);
                     println();
-                } while (val == StreamTokenizer.TT_EOL);
+                } while (val == PCPPTokenizer.TT_EOL);
             }
         }
         if (lineNumber() > lineno + 1) {
@@ -271,8 +288,8 @@ public class PCPP {
         if (nextTok != requiredToken) {
             String msg = "Expected token '" + requiredToken + "' but got ";
             switch (nextTok) {
-                case StreamTokenizer.TT_EOF: msg += "<EOF>"; break;
-                case StreamTokenizer.TT_EOL: msg += "<EOL>"; break;
+                case PCPPTokenizer.TT_EOF: msg += "<EOF>"; break;
+                case PCPPTokenizer.TT_EOL: msg += "<EOL>"; break;
                 default: msg += "'" + curTokenAsString() + "'"; break;
             }
             msg += " at file " + filename() + ", line " + lineNumber();
@@ -283,10 +300,10 @@ public class PCPP {
 
     private String curTokenAsString() {
         int t = state.curToken();
-        if (t == StreamTokenizer.TT_WORD) {
+        if (t == PCPPTokenizer.TT_WORD) {
             return state.curWord();
         }
-        if (t == StreamTokenizer.TT_EOL) {
+        if (t == PCPPTokenizer.TT_EOL) {
             throw new RuntimeException("Should not be converting EOL characters to strings at file " + filename() + ", line " + lineNumber());
         }
         char c = (char) t;
@@ -297,7 +314,18 @@ public class PCPP {
             sb.append(c);
             return sb.toString();
         }
-        return new String(new char[] { c });
+        if (c < charStrings.length) {
+            return charStrings[c];
+        }
+        return String.valueOf(c);
+    }
+
+    /** Single character token Strings, reused for every occurrence */
+    private static final String[] charStrings = new String[128];
+    static {
+        for (int i = 0; i < charStrings.length; i++) {
+            charStrings[i] = String.valueOf((char) i);
+        }
     }
 
     private String nextWordOrString() throws IOException {
@@ -307,7 +335,7 @@ public class PCPP {
 
     private String nextWord() throws IOException {
         int val = nextToken();
-        if (val != StreamTokenizer.TT_WORD) {
+        if (val != PCPPTokenizer.TT_WORD) {
             throw new RuntimeException("Expected word at file " + filename() +
                                        ", line " + lineNumber());
         }
@@ -332,17 +360,20 @@ public class PCPP {
 
     private void parse() throws IOException {
         int tok = 0;
-        while ((tok = nextToken()) != StreamTokenizer.TT_EOF) {
+        while ((tok = nextToken()) != PCPPTokenizer.TT_EOF) {
             // A '#' at the beginning of a line is a preprocessor directive
             if (startOfLine() && (tok == '#')) {
                 preprocessorDirective();
             } else {
+                if (state.guardState != ParseState.GUARD_INSIDE) {
+                    state.guardState = ParseState.GUARD_NONE;
+                }
                 // Output white space plus current token, handling #defines
                 // (though not properly -- only handling #defines to constants and the empty string)
 
                 // !!HACK!! - print space only for word tokens. This way multicharacter
                 // operators such as ==, != etc. are property printed.
-                if (tok == StreamTokenizer.TT_WORD) {
+                if (tok == PCPPTokenizer.TT_WORD) {
                     print(" ");
                 }
                 String s = curTokenAsString();
@@ -351,11 +382,11 @@ public class PCPP {
                     newS = s;
                 }
                 
-                Macro macro = macroMap.get(newS);
+                Macro macro = macroMap.isEmpty() ? null : macroMap.get(newS);
                 if(macro != null) {
                     newS = "";
                     List<String> args = new ArrayList<String>();
-                    while (nextToken() != StreamTokenizer.TT_EOL) {
+                    while (nextToken() != PCPPTokenizer.TT_EOL) {
                         String token = curTokenAsString();
                         if(")".equals(token)) {
                             break;
@@ -394,6 +425,10 @@ public class PCPP {
     private void preprocessorDirective() throws IOException {
         String w = nextWord();
         boolean shouldPrint = true;
+        if (state.guardState == ParseState.GUARD_END ||
+            (state.guardState == ParseState.GUARD_START && !w.equals("ifndef"))) {
+            state.guardState = ParseState.GUARD_NONE;
+        }
         if (w.equals("warning")) {
             handleWarning();
             shouldPrint = false;
@@ -421,6 +456,15 @@ public class PCPP {
         } else if (w.equals("include")) {
             handleInclude();
             shouldPrint = false;
+        } else if (w.equals("pragma")) {
+            // Passed on like any other pragma, only noting a '#pragma once'
+            if (nextToken(true) == PCPPTokenizer.TT_WORD && "once".equals(state.curWord()) && enabled()) {
+                pragmaOnceFiles.add(new File(filename()).getAbsolutePath());
+            }
+            state.pushBackToken();
+            print("# ");
+            print(w);
+            shouldPrint = false;
         } else {
             int line = -1;
             try {
@@ -452,7 +496,7 @@ public class PCPP {
 
         // there shouldn't be any extra symbols after the name, but just in case...
         List<String> values = new ArrayList<String>();
-        while (nextToken(true) != StreamTokenizer.TT_EOL) {
+        while (nextToken(true) != PCPPTokenizer.TT_EOL) {
             values.add(curTokenAsString());
         }
 
@@ -491,7 +535,7 @@ public class PCPP {
         // since whitespace is our delimiter we can't determine wether we are dealing with
         // macros or normal defines starting with a brace.
         // this will glue the brace to the token if there is no whitespace between both
-        state.tok.wordChars('(', '(');
+        state.tok.setParenIsWordChar(true);
 
         // Next token is the name of the #define
         String name = nextWord();
@@ -512,9 +556,9 @@ public class PCPP {
         }
 
         // restore normal syntax
-        state.tok.ordinaryChar('(');
+        state.tok.setParenIsWordChar(false);
 
-        while (nextToken(true) != StreamTokenizer.TT_EOL) {
+        while (nextToken(true) != PCPPTokenizer.TT_EOL) {
             values.add(curTokenAsString());
         }
         addDefine(name, macroDefinition, values);
@@ -786,6 +830,12 @@ public class PCPP {
 
         debugPrint(false, (isIfdef ? "IFDEF " : "IFNDEF ") + symbolName + ", enabledOutside " + enabledOutside + ", isDefined " + symbolIsDefined + ", file \"" + filename() + " line " + lineNumber());
 
+        if (state.guardState == ParseState.GUARD_START) {
+            state.guardMacro = symbolName;
+            state.guardDepth = enabledBits.size();
+            state.guardState = ParseState.GUARD_INSIDE;
+        }
+
         boolean enabledNow = enabled() && symbolIsDefined == isIfdef ;
         pushEnableBit( enabledNow ) ; // StateCondition
         pushEnableBit( enabledNow ) ; // StateInside
@@ -793,6 +843,7 @@ public class PCPP {
 
     /** Handles #else directives */
     private void handleElse() throws IOException {
+        endGuardBlock(enabledBits.size() - 2, false);
         popEnableBit(); // Inside
         boolean enabledCondition = enabled();
         popEnableBit(); // Condition
@@ -806,6 +857,7 @@ public class PCPP {
     private void handleEndif() {
         popEnableBit(); // Inside
         popEnableBit(); // Condition
+        endGuardBlock(enabledBits.size(), true);
         boolean enabledOutside = enabled();
 
         // print the endif if we were enabled prior to popEnableBit() (sending
@@ -813,6 +865,17 @@ public class PCPP {
         debugPrint(false, "ENDIF, enabledOutside " + enabledOutside);
     }
 
+    /**
+     * Notes the end of a conditional block for the include guard detection,
+     * an #else or #elif of the guard block disqualifies it as a guard.
+     * @param outsideDepth depth of the enable bits outside of the ended block
+     */
+    private void endGuardBlock(int outsideDepth, boolean isEndif) {
+        if (state.guardState == ParseState.GUARD_INSIDE && outsideDepth == state.guardDepth) {
+            state.guardState = isEndif ? ParseState.GUARD_END : ParseState.GUARD_NONE;
+        }
+    }
+
     /**
      * @param isIf if true, we're processing #if; if false, we're
      * processing #elif.
@@ -822,6 +885,7 @@ public class PCPP {
         boolean enabledOutside;
 
         if (!isIf) {
+            endGuardBlock(enabledBits.size() - 2, false);
             popEnableBit(); // Inside
             enabledCondition = enabled();
             popEnableBit(); // Condition
@@ -869,7 +933,7 @@ public class PCPP {
         int tok;
         do {
             tok = nextToken(true);
-            //System.err.println("-- READ: [" + (tok == StreamTokenizer.TT_EOL ? "<EOL>" :curTokenAsString()) + "]");
+            //System.err.println("-- READ: [" + (tok == PCPPTokenizer.TT_EOL ? "<EOL>" :curTokenAsString()) + "]");
             switch (tok) {
                 case '(':
                     ++openParens;
@@ -927,7 +991,7 @@ public class PCPP {
                         ifValue = false;
                     }
                     break;
-                case StreamTokenizer.TT_WORD:
+                case PCPPTokenizer.TT_WORD:
                     {
                         String word = curTokenAsString();
                         if (word.equals("defined")) {
@@ -974,11 +1038,11 @@ public class PCPP {
                         }
                     } // end case TT_WORD
                     break;
-                case StreamTokenizer.TT_EOL:
+                case PCPPTokenizer.TT_EOL:
                     //System.err.println("HANDLE_IF_RECURSIVE HIT <EOL>!");
                     state.pushBackToken(); // so caller hits EOL as well if we're recursing
                     break;
-                case StreamTokenizer.TT_EOF:
+                case PCPPTokenizer.TT_EOF:
                     throw new RuntimeException("Unexpected end of file while parsing " +
                                                "#if statement at file " + filename() + ", line " + lineNumber());
 
@@ -987,8 +1051,8 @@ public class PCPP {
                                                ") while parsing " + "#if statement at file " + filename() +
                                                ", line " + lineNumber());
             }
-            //System.err.println("END OF WHILE: greedy = " + greedy + " parens = " +openParens + " not EOL = " + (tok != StreamTokenizer.TT_EOL) + " --> " + ((greedy && openParens >= 0) && tok != StreamTokenizer.TT_EOL));
-        } while ((greedy && openParens >= 0) && tok != StreamTokenizer.TT_EOL);
+            //System.err.println("END OF WHILE: greedy = " + greedy + " parens = " +openParens + " not EOL = " + (tok != PCPPTokenizer.TT_EOL) + " --> " + ((greedy && openParens >= 0) && tok != PCPPTokenizer.TT_EOL));
+        } while ((greedy && openParens >= 0) && tok != PCPPTokenizer.TT_EOL);
         //System.err.println("OUT HANDLE_IF_RECURSIVE (" + tmp-- + ", returning " + ifValue + ")");
         //System.err.flush();
         return ifValue;
@@ -1009,10 +1073,10 @@ public class PCPP {
             // Components of path name are coming in as separate tokens;
             // concatenate them
             StringBuilder buf = new StringBuilder();
-            while ((t = nextToken()) != '>' && (t != StreamTokenizer.TT_EOF)) {
+            while ((t = nextToken()) != '>' && (t != PCPPTokenizer.TT_EOF)) {
                 buf.append(curTokenAsString());
             }
-            if (t == StreamTokenizer.TT_EOF) {
+            if (t == PCPPTokenizer.TT_EOF) {
                 LOG.warning("unexpected EOF while processing #include directive");
             }
             filename = buf.toString();
@@ -1028,9 +1092,25 @@ public class PCPP {
             if (fullname == null) {
                 throw new RuntimeException("Can't find #include file \"" + filename + "\" at file " + filename() + ", line " + lineNumber());
             }
+            // Skip files included before which are either marked '#pragma once'
+            // or wrapped in an include guard whose macro is still defined
+            final String path = new File(fullname).getAbsolutePath();
+            if (pragmaOnceFiles.contains(path)) {
+                debugPrint(true, "INCLUDE [" + fullname + "] skipped, #pragma once");
+                return;
+            }
+            final String guardMacro = includeGuards.get(path);
+            if (null != guardMacro && null != defineMap.get(guardMacro)) {
+                debugPrint(true, "INCLUDE [" + fullname + "] skipped, guarded by " + guardMacro);
+                return;
+            }
             // Process this file in-line
-            Reader reader = new BufferedReader(new FileReader(fullname));
-            run(reader, fullname);
+            Reader reader = new FileReader(fullname);
+            try {
+                run(reader, fullname);
+            } finally {
+                reader.close();
+            }
         } else {
             //System.err.println("INACTIVE BLOCK, SKIPPING " + filename);
         }
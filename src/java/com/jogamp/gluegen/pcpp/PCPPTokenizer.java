@@ -0,0 +1,370 @@
+/**
+ * Copyright 2011 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.gluegen.pcpp;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StreamTokenizer;
+
+/**
+ * Tokenizer of {@link PCPP}, producing the same tokens as a {@link StreamTokenizer}
+ * reading through a {@link ConcatenatingReader} with PCPP's syntax:
+ * <ul>
+ *   <li>words of <code>a-z A-Z 0-9 _ - .</code> and characters &gt;= 128,</li>
+ *   <li>whitespace <code>0 .. ' '</code>, significant end of lines,</li>
+ *   <li><code>'"'</code> and <code>'\''</code> quotes,</li>
+ *   <li>C and C++ comments,</li>
+ *   <li>lines ending with <code>'\'</code> continued with the next line.</li>
+ * </ul>
+ * <p>
+ * The whole input is read into one char array up front and tokens are scanned
+ * in place. Words are interned via a {@link WordTable} shared by all files
+ * of one PCPP run, so a recurring identifier is neither copied into a new String
+ * nor hashed again by the symbol table lookups.
+ * </p>
+ */
+final class PCPPTokenizer {
+    public static final int TT_EOF = StreamTokenizer.TT_EOF;
+    public static final int TT_EOL = StreamTokenizer.TT_EOL;
+    public static final int TT_WORD = StreamTokenizer.TT_WORD;
+    public static final int TT_NOTHING = -4;
+
+    private static final String newline = System.getProperty("line.separator");
+
+    /** Type of the last token, a character or one of the TT_ constants. */
+    public int ttype = TT_NOTHING;
+    /** Word or quoted string of the last token. */
+    public String sval;
+
+    private final WordTable words;
+    private final char[] buf;
+    private final int len;
+    private int pos;
+    private boolean skipLF;
+    private boolean pushedBack;
+    private int lineno = 1;
+    private boolean parenIsWordChar;
+    private char[] quoteBuf = new char[64];
+
+    PCPPTokenizer(Reader reader, WordTable words) throws IOException {
+        this.words = words;
+        final char[] raw = readFully(reader);
+        // Lines ending with a backslash are joined with the next one,
+        // all other lines are terminated by the platform line separator.
+        final char[] nl = newline.toCharArray();
+        char[] out = new char[raw.length + raw.length / 16 + nl.length];
+        int n = 0;
+        int i = 0;
+        while (i < raw.length) {
+            int eol = i;
+            while (eol < raw.length && raw[eol] != '\n' && raw[eol] != '\r') {
+                eol++;
+            }
+            int end = eol;
+            boolean needNewline = true;
+            if (end > i && raw[end - 1] == '\\') {
+                end--;
+                needNewline = false;
+            }
+            final int required = n + (end - i) + nl.length;
+            if (required > out.length) {
+                final char[] tmp = new char[Math.max(required, out.length * 2)];
+                System.arraycopy(out, 0, tmp, 0, n);
+                out = tmp;
+            }
+            System.arraycopy(raw, i, out, n, end - i);
+            n += end - i;
+            if (needNewline) {
+                System.arraycopy(nl, 0, out, n, nl.length);
+                n += nl.length;
+            }
+            // skip the line terminator: "\n", "\r" or "\r\n"
+            if (eol < raw.length && raw[eol] == '\r') {
+                eol++;
+                if (eol < raw.length && raw[eol] == '\n') {
+                    eol++;
+                }
+            } else if (eol < raw.length) {
+                eol++;
+            }
+            i = eol;
+        }
+        this.buf = out;
+        this.len = n;
+    }
+
+    private static char[] readFully(Reader reader) throws IOException {
+        char[] data = new char[8192];
+        int n = 0;
+        int r;
+        while ((r = reader.read(data, n, data.length - n)) >= 0) {
+            n += r;
+            if (n == data.length) {
+                final char[] tmp = new char[data.length * 2];
+                System.arraycopy(data, 0, tmp, 0, n);
+                data = tmp;
+            }
+        }
+        final char[] res = new char[n];
+        System.arraycopy(data, 0, res, 0, n);
+        return res;
+    }
+
+    /** Lets '(' be part of words, used to recognize <code>#define MACRO(x)</code>. */
+    void setParenIsWordChar(boolean v) {
+        parenIsWordChar = v;
+    }
+
+    int lineno() {
+        return lineno;
+    }
+
+    /** Causes the next call of {@link #nextToken()} to return the current token again. */
+    void pushBack() {
+        if (ttype != TT_NOTHING) {
+            pushedBack = true;
+        }
+    }
+
+    private int read() {
+        return pos < len ? buf[pos++] : -1;
+    }
+
+    private boolean isWordChar(int c) {
+        return ( 'a' <= c && c <= 'z' ) || ( 'A' <= c && c <= 'Z' ) || ( '0' <= c && c <= '9' ) ||
+               c == '_' || c == '-' || c == '.' || c >= 128 || ( c == '(' && parenIsWordChar );
+    }
+
+    int nextToken() {
+        if (pushedBack) {
+            pushedBack = false;
+            return ttype;
+        }
+        sval = null;
+
+        while (true) {
+            if (skipLF) {
+                // remainder of a "\r\n" line terminator
+                skipLF = false;
+                final int c = read();
+                if (c < 0) {
+                    return ttype = TT_EOF;
+                }
+                if (c != '\n') {
+                    pos--;
+                }
+            }
+            int c = read();
+            while (0 <= c && c <= ' ') {
+                if (c == '\r') {
+                    lineno++;
+                    skipLF = true;
+                    return ttype = TT_EOL;
+                }
+                if (c == '\n') {
+                    lineno++;
+                    return ttype = TT_EOL;
+                }
+                c = read();
+            }
+            if (c < 0) {
+                return ttype = TT_EOF;
+            }
+
+            if (isWordChar(c)) {
+                final int start = pos - 1;
+                while (pos < len && isWordChar(buf[pos])) {
+                    pos++;
+                }
+                sval = words.intern(buf, start, pos - start);
+                return ttype = TT_WORD;
+            }
+
+            if (c == '"' || c == '\'') {
+                return ttype = readQuoted(c);
+            }
+
+            if (c == '/') {
+                c = read();
+                if (c == '*') {
+                    int prevc = 0;
+                    while ((c = read()) != '/' || prevc != '*') {
+                        if (c == '\r') {
+                            lineno++;
+                            c = read();
+                            if (c == '\n') {
+                                c = read();
+                            }
+                        } else if (c == '\n') {
+                            lineno++;
+                            c = read();
+                        }
+                        if (c < 0) {
+                            return ttype = TT_EOF;
+                        }
+                        prevc = c;
+                    }
+                    continue;
+                }
+                if (c == '/') {
+                    while ((c = read()) != '\n' && c != '\r' && c >= 0) { }
+                    if (c >= 0) {
+                        pos--; // the line terminator is the next token
+                    }
+                    continue;
+                }
+                if (c >= 0) {
+                    pos--;
+                }
+                return ttype = '/';
+            }
+
+            return ttype = c;
+        }
+    }
+
+    private int readQuoted(int quote) {
+        int i = 0;
+        int c;
+        int d = read();
+        while (d >= 0 && d != quote && d != '\n' && d != '\r') {
+            if (d == '\\') {
+                c = read();
+                final int first = c; // to allow \377, but not \477
+                if (c >= '0' && c <= '7') {
+                    c = c - '0';
+                    int c2 = read();
+                    if ('0' <= c2 && c2 <= '7') {
+                        c = (c << 3) + (c2 - '0');
+                        c2 = read();
+                        if ('0' <= c2 && c2 <= '7' && first <= '3') {
+                            c = (c << 3) + (c2 - '0');
+                            d = read();
+                        } else {
+                            d = c2;
+                        }
+                    } else {
+                        d = c2;
+                    }
+                } else {
+                    switch (c) {
+                        case 'a': c = 0x7; break;
+                        case 'b': c = '\b'; break;
+                        case 'f': c = 0xC; break;
+                        case 'n': c = '\n'; break;
+                        case 'r': c = '\r'; break;
+                        case 't': c = '\t'; break;
+                        case 'v': c = 0xB; break;
+                    }
+                    d = read();
+                }
+            } else {
+                c = d;
+                d = read();
+            }
+            if (i >= quoteBuf.length) {
+                final char[] tmp = new char[quoteBuf.length * 2];
+                System.arraycopy(quoteBuf, 0, tmp, 0, i);
+                quoteBuf = tmp;
+            }
+            quoteBuf[i++] = (char) c;
+        }
+        // keep a terminating end of line for the next token
+        if (d != quote && d >= 0) {
+            pos--;
+        }
+        sval = new String(quoteBuf, 0, i);
+        return quote;
+    }
+
+    /**
+     * Canonical String instances of words, looked up by their characters
+     * without creating a String first.
+     */
+    static final class WordTable {
+        private String[] table = new String[1024];
+        private int size;
+
+        String intern(char[] chars, int off, int len) {
+            int h = 0;
+            for (int i = 0; i < len; i++) {
+                h = 31 * h + chars[off + i];
+            }
+            int mask = table.length - 1;
+            int idx = mix(h) & mask;
+            String s;
+            while ((s = table[idx]) != null) {
+                if (s.length() == len && s.hashCode() == h && regionEquals(s, chars, off, len)) {
+                    return s;
+                }
+                idx = (idx + 1) & mask;
+            }
+            s = new String(chars, off, len);
+            table[idx] = s;
+            if (++size > table.length / 2) {
+                rehash();
+            }
+            return s;
+        }
+
+        int size() {
+            return size;
+        }
+
+        private static int mix(int h) {
+            h ^= (h >>> 16);
+            return h * 0x85ebca6b;
+        }
+
+        private static boolean regionEquals(String s, char[] chars, int off, int len) {
+            for (int i = 0; i < len; i++) {
+                if (s.charAt(i) != chars[off + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void rehash() {
+            final String[] old = table;
+            table = new String[old.length * 2];
+            final int mask = table.length - 1;
+            for (int i = 0; i < old.length; i++) {
+                final String s = old[i];
+                if (s != null) {
+                    int idx = mix(s.hashCode()) & mask;
+                    while (table[idx] != null) {
+                        idx = (idx + 1) & mask;
+                    }
+                    table[idx] = s;
+                }
+            }
+        }
+    }
+}
@@ -88,6 +88,8 @@ public class ProcAddressCMethodBindingEmitter extends CMethodBindingEmitter {
         }
         setTemporaryCVariableDeclarations(methodToWrap.getTemporaryCVariableDeclarations());
         setTemporaryCVariableAssignments(methodToWrap.getTemporaryCVariableAssignments());
+        setPrimitiveArrayAccess(methodToWrap.getPrimitiveArrayAccess(), methodToWrap.getPrimitiveArrayAccessThreshold());
+        setPrimitiveArrayAccessLengths(methodToWrap.getPrimitiveArrayAccessLengths());
 
         setCommentEmitter(defaultCommentEmitter);
 
@@ -203,7 +205,7 @@ public class ProcAddressCMethodBindingEmitter extends CMethodBindingEmitter {
 
     @Override
     protected String jniMangle(MethodBinding binding) {
-        StringBuffer buf = new StringBuffer(super.jniMangle(binding));
+        StringBuilder buf = new StringBuilder(super.jniMangle(binding));
         if (callThroughProcAddress) {
             jniMangle(Long.TYPE, buf, false);  // to account for the additional _addr_ parameter
         }
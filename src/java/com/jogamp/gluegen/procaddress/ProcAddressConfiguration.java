@@ -55,6 +55,9 @@ public class ProcAddressConfiguration extends JavaConfiguration {
     private String getProcAddressTableExpr;
     private String localProcAddressCallingConvention4All = null;
 
+    private boolean emitCommandBuffer = false;
+    private String commandBufferClassName = "CommandBuffer";
+
     private ConvNode procAddressNameConverter;
     private final Set<String> skipProcAddressGen = new HashSet<String>();
     private final List<String> forceProcAddressGen = new ArrayList<String>();
@@ -89,6 +92,10 @@ public class ProcAddressConfiguration extends JavaConfiguration {
             readProcAddressNameExpr(tok, filename, lineNo);
         } else if (cmd.equalsIgnoreCase("LocalProcAddressCallingConvention")) {
             readLocalProcAddressCallingConvention(tok, filename, lineNo);
+        } else if (cmd.equalsIgnoreCase("EmitCommandBuffer")) {
+            emitCommandBuffer = readBoolean("EmitCommandBuffer", tok, filename, lineNo).booleanValue();
+        } else if (cmd.equalsIgnoreCase("CommandBufferClassName")) {
+            commandBufferClassName = readString("CommandBufferClassName", tok, filename, lineNo);
         } else {
             super.dispatch(cmd, tok, file, filename, lineNo);
         }
@@ -267,6 +274,16 @@ public class ProcAddressConfiguration extends JavaConfiguration {
         return tableClassName;
     }
 
+    /** Returns true if a command buffer class recording calls for later
+        replay by a single native dispatcher shall be emitted. */
+    public boolean emitCommandBuffer() {
+        return emitCommandBuffer;
+    }
+
+    public String commandBufferClassName() {
+        return commandBufferClassName;
+    }
+
     public boolean skipProcAddressGen(String name) {
         return skipProcAddressGen.contains(name);
     }
@@ -52,6 +52,8 @@ import com.jogamp.gluegen.*;
 import com.jogamp.gluegen.cgram.types.*;
 import com.jogamp.gluegen.runtime.*;
 
+import static java.util.logging.Level.*;
+
 /**
  * A subclass of JavaEmitter that modifies the normal emission of C
  * and Java code to allow dynamic lookups of the C entry points
@@ -66,6 +68,7 @@ public class ProcAddressEmitter extends JavaEmitter {
     protected Set<String> emittedTableEntries;
     protected String tableClassPackage;
     protected String tableClassName;
+    protected List<MethodBinding> commandBufferBindings;
 
     @Override
     public void beginFunctions(TypeDictionary typedefDictionary, TypeDictionary structDictionary, Map<Type, Type>  canonMap) throws Exception {
@@ -74,6 +77,12 @@ public class ProcAddressEmitter extends JavaEmitter {
         if (getProcAddressConfig().emitProcAddressTable()) {
             beginProcAddressTable();
         }
+        if (getProcAddressConfig().emitCommandBuffer()) {
+            if (!getProcAddressConfig().emitProcAddressTable()) {
+                throw new RuntimeException("EmitCommandBuffer requires EmitProcAddressTable");
+            }
+            commandBufferBindings = new ArrayList<MethodBinding>();
+        }
         super.beginFunctions(typedefDictionary, structDictionary, canonMap);
     }
 
@@ -82,6 +91,10 @@ public class ProcAddressEmitter extends JavaEmitter {
         if (getProcAddressConfig().emitProcAddressTable()) {
             endProcAddressTable();
         }
+        if (null != commandBufferBindings) {
+            emitCommandBuffer();
+            commandBufferBindings = null;
+        }
         super.endFunctions();
     }
 
@@ -140,6 +153,9 @@ public class ProcAddressEmitter extends JavaEmitter {
                 // emit an entry in the GL proc address table for this method.
                 emitProcAddressTableEntryForString(getAliasedSymName(sym));
             }
+            if (null != commandBufferBindings) {
+                addCommandBufferBinding(defaultEmitters);
+            }
         }
         for (FunctionEmitter emitter : defaultEmitters) {
             if (emitter instanceof JavaMethodBindingEmitter) {
@@ -351,6 +367,278 @@ public class ProcAddressEmitter extends JavaEmitter {
         tableWriter.println(";");
     }
 
+    /** Method names of the emitted command buffer class, which can't be used for recording methods. */
+    private static final Set<String> commandBufferReservedNames =
+            new HashSet<String>(Arrays.asList("size", "clear", "flush", "reserve", "dispatch0"));
+
+    /** Size of a command's opcode and function address, which are followed by its arguments. */
+    private static final int COMMAND_HEADER_SIZE = 16;
+
+    /** Size of the slot of each argument in a command, sufficient for all primitive types. */
+    private static final int COMMAND_ARG_SIZE = 8;
+
+    /**
+     * Adds the binding of the given function to the command buffer, if
+     * its call can be recorded, i.e. it returns void and takes only
+     * primitive arguments.
+     */
+    protected void addCommandBufferBinding(List<? extends FunctionEmitter> defaultEmitters) {
+        for (FunctionEmitter emitter : defaultEmitters) {
+            if (emitter instanceof CMethodBindingEmitter) {
+                MethodBinding binding = ((CMethodBindingEmitter) emitter).getBinding();
+                if (isCommandBufferCapable(binding)) {
+                    commandBufferBindings.add(binding);
+                }
+                return;
+            }
+        }
+    }
+
+    protected boolean isCommandBufferCapable(MethodBinding binding) {
+        if (!binding.getJavaReturnType().isVoid() || binding.hasContainingType() ||
+            getConfig().manuallyImplement(binding.getName())) {
+            return false;
+        }
+        if (commandBufferReservedNames.contains(binding.getName())) {
+            LOG.log(WARNING, "not recording \"{0}\" in command buffer, name is reserved", binding.getName());
+            return false;
+        }
+        for (int i = 0; i < binding.getNumArguments(); i++) {
+            JavaType type = binding.getJavaArgumentType(i);
+            if (!type.isVoid() && !type.isPrimitive()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int commandSize(MethodBinding binding) {
+        int size = COMMAND_HEADER_SIZE;
+        for (int i = 0; i < binding.getNumArguments(); i++) {
+            if (!binding.getJavaArgumentType(i).isVoid()) {
+                size += COMMAND_ARG_SIZE;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Emits the Java command buffer class recording calls of the
+     * collected bindings, and its native dispatcher replaying them
+     * through the recorded function pointers.
+     */
+    protected void emitCommandBuffer() throws Exception {
+        String className = getProcAddressConfig().commandBufferClassName();
+        String packageName = tableClassPackage;
+        if (packageName == null) {
+            packageName = getImplPackageName();
+        }
+        String jImplRoot = getJavaOutputDir() + File.separator + CodeGenUtils.packageAsPath(packageName);
+
+        PrintWriter writer = openFile(jImplRoot + File.separator + className + ".java");
+        try {
+            emitCommandBufferClass(writer, packageName, className);
+        } finally {
+            writer.flush();
+            writer.close();
+        }
+
+        if (null != cWriter()) {
+            emitCommandBufferDispatcher(cWriter(), packageName, className);
+        } else {
+            LOG.log(WARNING, "no native code emitted, skipping dispatcher of command buffer {0}", className);
+        }
+    }
+
+    protected void emitCommandBufferClass(PrintWriter writer, String packageName, String className) {
+        int maxCommandSize = COMMAND_HEADER_SIZE;
+        for (MethodBinding binding : commandBufferBindings) {
+            maxCommandSize = Math.max(maxCommandSize, commandSize(binding));
+        }
+
+        CodeGenUtils.emitAutogeneratedWarning(writer, this);
+
+        writer.println("package " + packageName + ";");
+        writer.println();
+        for (String imporT : getConfig().imports()) {
+            writer.println("import " + imporT + ";");
+        }
+        writer.println();
+        writer.println("/**");
+        writer.println(" * Records calls of the functions of {@link " + tableClassName + "} returning void");
+        writer.println(" * and taking only primitive arguments into a direct command buffer,");
+        writer.println(" * which is replayed by a single native call.");
+        writer.println(" * <p>");
+        writer.println(" * Each command is encoded in native byte order as its opcode, the function");
+        writer.println(" * address read from the table at recording time and one " + COMMAND_ARG_SIZE + " byte slot");
+        writer.println(" * per argument. Recorded commands are replayed in order by {@link #flush()},");
+        writer.println(" * or implicitly if the buffer has no room left for the next command.");
+        writer.println(" * </p>");
+        writer.println(" * <p>");
+        writer.println(" * Instances are not thread safe.");
+        writer.println(" * </p>");
+        writer.println(" */");
+        writer.println("public class " + className + " {");
+        writer.println();
+        writer.println("  /** Size in bytes of the largest command, the minimum capacity. */");
+        writer.println("  public static final int MAX_COMMAND_SIZE = " + maxCommandSize + ";");
+        writer.println();
+        for (int op = 0; op < commandBufferBindings.size(); op++) {
+            writer.println("  public static final int OP_" + commandBufferBindings.get(op).getName() + " = " + op + ";");
+        }
+        writer.println();
+        writer.println("  private final " + tableClassName + " table;");
+        writer.println("  private final java.nio.ByteBuffer buffer;");
+        writer.println("  private int size;");
+        writer.println();
+        writer.println("  /**");
+        writer.println("   * @param table the function addresses used for recorded commands");
+        writer.println("   * @param capacity size of the command buffer in bytes");
+        writer.println("   */");
+        writer.println("  public " + className + "(" + tableClassName + " table, int capacity) {");
+        writer.println("    if (capacity < MAX_COMMAND_SIZE) {");
+        writer.println("      throw new IllegalArgumentException(\"capacity \"+capacity+\" < \"+MAX_COMMAND_SIZE);");
+        writer.println("    }");
+        writer.println("    this.table = table;");
+        writer.println("    this.buffer = com.jogamp.common.nio.Buffers.newDirectByteBuffer(capacity);");
+        writer.println("  }");
+        writer.println();
+        writer.println("  /** Returns the number of recorded bytes not yet replayed. */");
+        writer.println("  public final int size() {");
+        writer.println("    return size;");
+        writer.println("  }");
+        writer.println();
+        writer.println("  /** Discards all recorded commands. */");
+        writer.println("  public final void clear() {");
+        writer.println("    size = 0;");
+        writer.println("  }");
+        writer.println();
+        writer.println("  /** Replays all recorded commands with a single native call and clears the buffer. */");
+        writer.println("  public final void flush() {");
+        writer.println("    if (0 < size) {");
+        writer.println("      final int length = size;");
+        writer.println("      size = 0;");
+        writer.println("      dispatch0(buffer, length);");
+        writer.println("    }");
+        writer.println("  }");
+        writer.println();
+        writer.println("  private int reserve(int bytes) {");
+        writer.println("    if (size + bytes > buffer.capacity()) {");
+        writer.println("      flush();");
+        writer.println("    }");
+        writer.println("    final int pos = size;");
+        writer.println("    size += bytes;");
+        writer.println("    return pos;");
+        writer.println("  }");
+
+        for (MethodBinding binding : commandBufferBindings) {
+            String name = binding.getName();
+            writer.println();
+            writer.println("  /** Records a call of <code> " + binding.getCSymbol() + " </code> */");
+            writer.print("  public final void " + name + "(");
+            boolean first = true;
+            for (int i = 0; i < binding.getNumArguments(); i++) {
+                JavaType type = binding.getJavaArgumentType(i);
+                if (type.isVoid()) {
+                    continue;
+                }
+                if (!first) {
+                    writer.print(", ");
+                }
+                writer.print(type.getName() + " " + binding.getArgumentName(i));
+                first = false;
+            }
+            writer.println(") {");
+            writer.println("    final long __addr_ = table." + PROCADDRESS_VAR_PREFIX + name + ";");
+            writer.println("    if (__addr_ == 0) {");
+            writer.println("      throw new " + unsupportedExceptionType() + "(\"Method \\\"" + name + "\\\" not available\");");
+            writer.println("    }");
+            writer.println("    final int pos = reserve(" + commandSize(binding) + ");");
+            writer.println("    buffer.putInt(pos, OP_" + name + ");");
+            writer.println("    buffer.putLong(pos + 8, __addr_);");
+            int offset = COMMAND_HEADER_SIZE;
+            for (int i = 0; i < binding.getNumArguments(); i++) {
+                JavaType type = binding.getJavaArgumentType(i);
+                if (type.isVoid()) {
+                    continue;
+                }
+                Class<?> c = type.getJavaClass();
+                String arg = binding.getArgumentName(i);
+                if (c == Boolean.TYPE) {
+                    writer.println("    buffer.put(pos + " + offset + ", (byte) (" + arg + " ? 1 : 0));");
+                } else if (c == Byte.TYPE) {
+                    writer.println("    buffer.put(pos + " + offset + ", " + arg + ");");
+                } else {
+                    writer.println("    buffer.put" + capitalizeString(c.getName()) + "(pos + " + offset + ", " + arg + ");");
+                }
+                offset += COMMAND_ARG_SIZE;
+            }
+            writer.println("  }");
+        }
+        writer.println();
+        writer.println("  private static native void dispatch0(java.nio.ByteBuffer buffer, int length);");
+        writer.println("} // end of class " + className);
+    }
+
+    protected void emitCommandBufferDispatcher(PrintWriter writer, String packageName, String className) {
+        writer.println();
+        writer.println("/*   Java->C glue code:");
+        writer.println(" *   Java package: " + packageName + "." + className);
+        writer.println(" *    Java method: void dispatch0(java.nio.ByteBuffer buffer, int length)");
+        writer.println(" *     Replays the recorded commands through their function pointers");
+        writer.println(" */");
+        writer.println("JNIEXPORT void JNICALL ");
+        writer.println("Java_" + packageName.replaceAll("_", "_1").replace('.', '_') + "_" +
+                       className.replaceAll("_", "_1") + "_dispatch0(JNIEnv *env, jclass _unused, jobject buffer, jint length) {");
+        writer.println("  char * _cmd = (char *) (*env)->GetDirectBufferAddress(env, buffer);");
+        writer.println("  char * _end = _cmd + length;");
+        writer.println("  while ( _cmd < _end ) {");
+        writer.println("    switch ( *((jint *) _cmd) ) {");
+        for (int op = 0; op < commandBufferBindings.size(); op++) {
+            MethodBinding binding = commandBufferBindings.get(op);
+            FunctionSymbol cSym = binding.getCSymbol();
+            String typedefName = "_local_" + getFunctionPointerTypedefName(cSym);
+            PointerType funcPtrType = new PointerType(null, cSym.getType(), 0);
+            String callingConvention = getProcAddressConfig().getLocalProcAddressCallingConvention(cSym.getName());
+
+            writer.println("      case " + op + ": {");
+            writer.println("        typedef " + funcPtrType.toString(typedefName, callingConvention) + ";");
+            writer.print("        (* (" + typedefName + ") (intptr_t) *((jlong *) (_cmd + 8))) (");
+            int offset = COMMAND_HEADER_SIZE;
+            boolean first = true;
+            for (int i = 0; i < binding.getNumArguments(); i++) {
+                JavaType type = binding.getJavaArgumentType(i);
+                if (type.isVoid()) {
+                    continue;
+                }
+                if (!first) {
+                    writer.print(", ");
+                }
+                Type cArgType = cSym.getArgumentType(i);
+                writer.print("(" + cArgType.getName() + ") ");
+                if (cArgType.isPointer()) {
+                    writer.print("(intptr_t) ");
+                }
+                String jniTypeName = (type.getJavaClass() == Boolean.TYPE) ? "jbyte" : type.jniTypeName();
+                writer.print("*((" + jniTypeName + " *) (_cmd + " + offset + "))");
+                offset += COMMAND_ARG_SIZE;
+                first = false;
+            }
+            writer.println(");");
+            writer.println("        _cmd += " + offset + ";");
+            writer.println("        break;");
+            writer.println("      }");
+        }
+        writer.println("      default:");
+        writer.println("        (*env)->ThrowNew(env, (*env)->FindClass(env, \"java/lang/IllegalArgumentException\"),");
+        writer.println("                         \"Unknown opcode in command buffer " + className + "\");");
+        writer.println("        return;");
+        writer.println("    }");
+        writer.println("  }");
+        writer.println("}");
+        writer.println();
+    }
+
     protected ProcAddressConfiguration getProcAddressConfig() {
         return (ProcAddressConfiguration) getConfig();
     }
@@ -0,0 +1,211 @@
+/**
+ * Copyright 2011 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.gluegen.runtime;
+
+import java.io.IOException;
+import java.security.AccessController;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import jogamp.common.Debug;
+
+/**
+ * Per function call counters and cumulative call durations of a generated binding class.
+ * <p>
+ * Bindings generated with <code>EmitCallProfile true</code> own one static instance
+ * named <code>CALL_PROFILE</code>, where each native entry point is identified by a dense
+ * integer id, assigned by GlueGen in order of emission.
+ * Overloaded Java methods mapping to the same C function share one id.
+ * </p>
+ * <p>
+ * Profiling is disabled by default, in which case each call only costs one volatile read.
+ * It may be enabled either at runtime via {@link #setEnabled(boolean)}
+ * or for all generated bindings via the property <code>jogamp.gluegen.CallProfile</code>.
+ * </p>
+ * <p>
+ * The counters are updated without synchronization,
+ * hence concurrent calls of the same function may lose single updates.
+ * This is a deliberate trade off to keep the measurement overhead off the call path.
+ * </p>
+ */
+public class CallProfile {
+    /** Initial enabled state of all profiles, <code>true</code> if property <code>jogamp.gluegen.CallProfile</code> is defined. */
+    public static final boolean ENABLED_DEFAULT;
+
+    static {
+        ENABLED_DEFAULT = Debug.isPropertyDefined("jogamp.gluegen.CallProfile", true, AccessController.getContext());
+    }
+
+    private final String name;
+    private final String[] functionNames;
+    private final long[] calls;
+    private final long[] nanos;
+    private volatile boolean enabled;
+
+    /**
+     * @param name the name of the profiled binding, usually the generated class name
+     * @param functionNames the function names, where the array index is the function id
+     */
+    public CallProfile(String name, String[] functionNames) {
+        this.name = name;
+        this.functionNames = functionNames;
+        this.calls = new long[functionNames.length];
+        this.nanos = new long[functionNames.length];
+        this.enabled = ENABLED_DEFAULT;
+    }
+
+    public final String getName() { return name; }
+
+    public final int getFunctionCount() { return functionNames.length; }
+
+    public final String getFunctionName(int id) { return functionNames[id]; }
+
+    /** @return the function id of the given function name, or -1 if not profiled */
+    public final int getFunctionId(String functionName) {
+        for(int i=0; i<functionNames.length; i++) {
+            if(functionNames[i].equals(functionName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public final boolean isEnabled() { return enabled; }
+
+    public final void setEnabled(boolean v) { enabled = v; }
+
+    /**
+     * Accounts one call of the given function.
+     * Invoked by the generated code only if this profile {@link #isEnabled() is enabled}.
+     */
+    public final void record(int id, long durationNanos) {
+        calls[id]++;
+        nanos[id] += durationNanos;
+    }
+
+    /** Clears all counters. */
+    public final synchronized void reset() {
+        Arrays.fill(calls, 0L);
+        Arrays.fill(nanos, 0L);
+    }
+
+    /** @return a copy of the current counters */
+    public final synchronized Snapshot snapshot() {
+        return new Snapshot(name, functionNames, calls.clone(), nanos.clone());
+    }
+
+    public String toString() {
+        return "CallProfile["+name+", functions "+functionNames.length+", enabled "+enabled+"]";
+    }
+
+    /** Immutable copy of the counters of a {@link CallProfile}. */
+    public static class Snapshot {
+        private final String name;
+        private final String[] functionNames;
+        private final long[] calls;
+        private final long[] nanos;
+
+        Snapshot(String name, String[] functionNames, long[] calls, long[] nanos) {
+            this.name = name;
+            this.functionNames = functionNames;
+            this.calls = calls;
+            this.nanos = nanos;
+        }
+
+        public final String getName() { return name; }
+
+        public final int getFunctionCount() { return functionNames.length; }
+
+        public final String getFunctionName(int id) { return functionNames[id]; }
+
+        public final long getCalls(int id) { return calls[id]; }
+
+        public final long getNanos(int id) { return nanos[id]; }
+
+        public final long getTotalCalls() {
+            long sum = 0;
+            for(int i=0; i<calls.length; i++) {
+                sum += calls[i];
+            }
+            return sum;
+        }
+
+        public final long getTotalNanos() {
+            long sum = 0;
+            for(int i=0; i<nanos.length; i++) {
+                sum += nanos[i];
+            }
+            return sum;
+        }
+
+        /**
+         * Writes all called functions as comma separated values,
+         * starting with the header line <code>function,calls,nanos,avgNanos</code>.
+         * Rows are sorted by cumulative duration, most expensive first.
+         */
+        public void writeCSV(Appendable out) throws IOException {
+            out.append("function,calls,nanos,avgNanos\n");
+            Integer[] ids = new Integer[calls.length];
+            int n = 0;
+            for(int i=0; i<calls.length; i++) {
+                if(calls[i] > 0) {
+                    ids[n++] = Integer.valueOf(i);
+                }
+            }
+            Arrays.sort(ids, 0, n, new Comparator<Integer>() {
+                public int compare(Integer a, Integer b) {
+                    final long na = nanos[a.intValue()];
+                    final long nb = nanos[b.intValue()];
+                    return na > nb ? -1 : ( na < nb ? 1 : a.compareTo(b) );
+                } } );
+            for(int i=0; i<n; i++) {
+                final int id = ids[i].intValue();
+                out.append(functionNames[id]).append(',')
+                   .append(String.valueOf(calls[id])).append(',')
+                   .append(String.valueOf(nanos[id])).append(',')
+                   .append(String.valueOf(nanos[id] / calls[id])).append('\n');
+            }
+        }
+
+        /** @see #writeCSV(Appendable) */
+        public String toCSV() {
+            StringBuilder sb = new StringBuilder();
+            try {
+                writeCSV(sb);
+            } catch (IOException e) {
+                throw new InternalError(e.getMessage()); // StringBuilder does not throw
+            }
+            return sb.toString();
+        }
+
+        public String toString() {
+            return "CallProfile.Snapshot["+name+", calls "+getTotalCalls()+", nanos "+getTotalNanos()+"]";
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright 2011 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+ 
+package jogamp.common.jvm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs independent native library load tasks concurrently, 
+ * used by {@link com.jogamp.common.jvm.JNILibLoaderBase} and {@link com.jogamp.common.os.DynamicLibraryBundle}.
+ */
+public class ParallelLoader {
+    private static final ThreadFactory threadFactory = new ThreadFactory() {
+        private final AtomicInteger threadNum = new AtomicInteger(0);
+        public Thread newThread(Runnable r) {
+            final Thread t = new Thread(r, "ParallelLoader-"+threadNum.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        } };
+    
+    /**
+     * Runs all tasks using up to one thread per available processor
+     * and returns their results in order of the given tasks.
+     * A single task is run on the current thread.
+     * <p>
+     * If a task fails, its {@link RuntimeException} or {@link Error} is rethrown 
+     * after all tasks have completed.
+     * </p>
+     */
+    public static <T> List<T> invokeAll(List<Callable<T>> tasks) {
+        final List<T> results = new ArrayList<T>(tasks.size());
+        if( tasks.size() <= 1 ) {
+            for(int i=0; i<tasks.size(); i++) {
+                try {
+                    results.add(tasks.get(i).call());
+                } catch (RuntimeException re) {
+                    throw re;
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            return results;
+        }
+        final int threads = Math.min(tasks.size(), Runtime.getRuntime().availableProcessors());
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, threadFactory);
+        try {
+            final List<Future<T>> futures;
+            try {
+                futures = executor.invokeAll(tasks);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while loading native libraries", ie);
+            }
+            for(int i=0; i<futures.size(); i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while loading native libraries", ie);
+                } catch (ExecutionException ee) {
+                    final Throwable cause = ee.getCause();
+                    if(cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    } else if(cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw new RuntimeException(cause);
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+        return results;
+    }
+}
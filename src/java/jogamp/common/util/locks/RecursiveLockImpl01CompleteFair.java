@@ -28,19 +28,25 @@
 
 package jogamp.common.util.locks;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.locks.AbstractOwnableSynchronizer;
+import java.util.concurrent.locks.LockSupport;
 
+import com.jogamp.common.util.locks.LockMetrics;
 import com.jogamp.common.util.locks.RecursiveLock;
 
 /**
  * Reentrance locking toolkit, impl a complete fair FIFO scheduler
  * 
  * <p>
+ * Waiting threads are kept in an intrusive doubly linked queue.
+ * {@link #unlock()} hands the lock over to the oldest waiting thread and unparks only this one,
+ * a timed out or interrupted thread removes itself in O(1).</p>
+ * 
+ * <p>
  * Sync object extends {@link AbstractOwnableSynchronizer}, hence monitoring is possible.</p>
  */
-public class RecursiveLockImpl01CompleteFair implements RecursiveLock {
+public class RecursiveLockImpl01CompleteFair implements RecursiveLock, LockMetrics.Metered {
 
     private static class WaitingThread {
         WaitingThread(Thread t) {
@@ -48,7 +54,8 @@ public class RecursiveLockImpl01CompleteFair implements RecursiveLock {
             signaledByUnlock = false;
         }
         final Thread thread;
-        boolean signaledByUnlock; // if true, it's also removed from queue
+        volatile boolean signaledByUnlock; // if true, it's also removed from queue and owns the lock
+        WaitingThread prev, next; // queue links, synced
     }
     
     @SuppressWarnings("serial")
@@ -71,16 +78,60 @@ public class RecursiveLockImpl01CompleteFair implements RecursiveLock {
             }            
             lockedStack = s;
         }
+        /** Appends the waiting thread at the tail of the queue */
+        private final void enqueue(WaitingThread w) {
+            w.prev = tail;
+            w.next = null;
+            if(null != tail) {
+                tail.next = w;
+            } else {
+                head = w;
+            }
+            tail = w;
+            qsz++;
+        }
+        /** Removes the waiting thread from the queue */
+        private final void dequeue(WaitingThread w) {
+            if(null != w.prev) {
+                w.prev.next = w.next;
+            } else {
+                head = w.next;
+            }
+            if(null != w.next) {
+                w.next.prev = w.prev;
+            } else {
+                tail = w.prev;
+            }
+            w.prev = w.next = null;
+            qsz--;
+        }
         // lock count by same thread
         private int holdCount = 0;
         // stack trace of the lock, only used if DEBUG
         private Throwable lockedStack = null;
-        // waiting thread queue
-        final ArrayList<WaitingThread> queue = new ArrayList<WaitingThread>();
+        // time of the outermost acquisition, only used if metered
+        private long lockedAt = 0;
+        // waiting thread queue, oldest at head
+        private WaitingThread head = null, tail = null;
+        private int qsz = 0;
     }
     private Sync sync = new Sync();
+    private final LockMetrics metrics;
     
     public RecursiveLockImpl01CompleteFair() {
+        this(false, null);
+    }
+
+    /**
+     * @param metered if true, the lock is accounted in its {@link LockMetrics}
+     * @param name the name of the lock in the {@link LockMetrics}, may be <code>null</code>
+     */
+    public RecursiveLockImpl01CompleteFair(boolean metered, String name) {
+        metrics = metered ? new LockMetrics(name, this) : null;
+    }
+
+    public final LockMetrics getMetrics() {
+        return metrics;
     }
 
     /**
@@ -145,23 +196,25 @@ public class RecursiveLockImpl01CompleteFair implements RecursiveLock {
     }
 
     public final void lock() {
-        synchronized(sync) {
-            try {
-                if(!tryLock(TIMEOUT)) {
+        try {
+            if(!tryLock(TIMEOUT)) {
+                synchronized(sync) {
                     if(null!=sync.lockedStack) {
                         sync.lockedStack.printStackTrace();
                     }
-                    throw new RuntimeException("Waited "+TIMEOUT+"ms for: "+toString()+" - "+threadName(Thread.currentThread()));
                 }
-            } catch (InterruptedException e) {
-                throw new RuntimeException("Interrupted", e);
+                throw new RuntimeException("Waited "+TIMEOUT+"ms for: "+toString()+" - "+threadName(Thread.currentThread()));
             }
+        } catch (InterruptedException e) {
+            throw new RuntimeException("Interrupted", e);
         }
     }
 
     public final boolean tryLock(long timeout) throws InterruptedException {
+        final Thread cur = Thread.currentThread();
+        final long tStart = null!=metrics ? System.nanoTime() : 0;
+        final WaitingThread wCur;
         synchronized(sync) {
-            final Thread cur = Thread.currentThread();
             if(TRACE_LOCK) {
                 System.err.println("+++ LOCK 0 "+toString()+", cur "+threadName(cur));
             }
@@ -173,69 +226,65 @@ public class RecursiveLockImpl01CompleteFair implements RecursiveLock {
                 return true;
             }
     
-            if ( sync.getOwner() != null || ( 0<timeout && 0<sync.queue.size() ) ) {
-                
-                if ( 0 >= timeout ) {
-                    // locked by other thread and no waiting requested
-                    return false;
-                }
-    
-                // enqueue at the start
-                WaitingThread wCur = new WaitingThread(cur);
-                sync.queue.add(0, wCur);
-                do {
-                    final long t0 = System.currentTimeMillis();
-                    try {
-                        sync.wait(timeout);
-                        timeout -= System.currentTimeMillis() - t0;
-                    } catch (InterruptedException e) {
-                        if( !wCur.signaledByUnlock ) {
-                            sync.queue.remove(wCur); // O(n)
-                            throw e; // propagate interruption not send by unlock
-                        } else if( cur != sync.getOwner() ) {                        
-                            // Issued by unlock, but still locked by other thread
-                            //
-                            timeout -= System.currentTimeMillis() - t0;
-                            
-                            if(TRACE_LOCK) {
-                                System.err.println("+++ LOCK 1 "+toString()+", cur "+threadName(cur)+", left "+timeout+" ms, signaled: "+wCur.signaledByUnlock);
-                            }
-                            
-                            if(0 < timeout) {
-                                // not timed out, re-enque - lock was 'stolen'
-                                wCur.signaledByUnlock = false;
-                                sync.queue.add(sync.queue.size(), wCur);
-                            }
-                        } // else: Issued by unlock, owning lock .. expected! 
-                    }
-                } while ( cur != sync.getOwner() && 0 < timeout ) ;
-    
-                if( 0 >= timeout ) {
-                    // timed out
-                    if(!wCur.signaledByUnlock) {
-                        sync.queue.remove(wCur); // O(n)
-                    }
-                    if(cur == sync.getOwner()) {
-                        sync.setOwner(null);
-                    }
-                    if(TRACE_LOCK || DEBUG) {
-                        System.err.println("+++ LOCK XX "+toString()+", cur "+threadName(cur)+", left "+timeout+" ms");
-                    }
-                    return false;
-                }
-    
-                ++sync.holdCount;
-                if(TRACE_LOCK) {
-                    System.err.println("+++ LOCK X1 "+toString()+", cur "+threadName(cur)+", left "+timeout+" ms");
-                }
-            } else {
+            if ( sync.getOwner() == null && ( 0>=timeout || 0==sync.qsz ) ) {
                 ++sync.holdCount;
                 if(TRACE_LOCK) {
                     System.err.println("+++ LOCK X0 "+toString()+", cur "+threadName(cur));
                 }
+                sync.setOwner(cur);
+                if(null!=metrics) {
+                    sync.lockedAt = metrics.acquired(false, tStart);
+                }
+                if(DEBUG) {
+                    sync.setLockedStack(new Throwable("Previously locked by "+toString()));
+                }
+                return true;
+            }
+                
+            if ( 0 >= timeout ) {
+                // locked by other thread and no waiting requested
+                return false;
             }
     
-            sync.setOwner(cur);
+            // enqueue at the tail
+            wCur = new WaitingThread(cur);
+            sync.enqueue(wCur);
+        }
+        
+        // park outside of the monitor until unlock hands over the lock to us
+        boolean interrupted = false;
+        long left = timeout < Long.MAX_VALUE / 1000000L ? timeout * 1000000L : Long.MAX_VALUE; // ns
+        while( !wCur.signaledByUnlock && 0 < left && !interrupted ) {
+            final long t0 = System.nanoTime();
+            LockSupport.parkNanos(left);
+            interrupted = Thread.interrupted();
+            left -= System.nanoTime() - t0;
+        }
+        
+        synchronized(sync) {
+            if( !wCur.signaledByUnlock ) {
+                // timed out or interrupted while still waiting
+                sync.dequeue(wCur);
+                if( interrupted ) {
+                    throw new InterruptedException(); // propagate interruption
+                }
+                if(TRACE_LOCK || DEBUG) {
+                    System.err.println("+++ LOCK XX "+toString()+", cur "+threadName(cur)+", left "+left/1000000L+" ms");
+                }
+                return false;
+            }
+            if( interrupted ) {
+                // lock has been handed over already, keep it and preserve the interruption
+                cur.interrupt();
+            }
+            // owner has been set by unlock
+            ++sync.holdCount;
+            if(null!=metrics) {
+                sync.lockedAt = metrics.acquired(true, tStart);
+            }
+            if(TRACE_LOCK) {
+                System.err.println("+++ LOCK X1 "+toString()+", cur "+threadName(cur)+", left "+left/1000000L+" ms");
+            }
             if(DEBUG) {
                 sync.setLockedStack(new Throwable("Previously locked by "+toString()));
             }
@@ -245,12 +294,11 @@ public class RecursiveLockImpl01CompleteFair implements RecursiveLock {
     
 
     public final void unlock() {
-        synchronized(sync) {
-            unlock(null);
-        }
+        unlock(null);
     }
 
     public final void unlock(Runnable taskAfterUnlockBeforeNotify) {
+        final Thread next;
         synchronized(sync) {
             validateLocked();
             final Thread cur = Thread.currentThread();
@@ -264,6 +312,9 @@ public class RecursiveLockImpl01CompleteFair implements RecursiveLock {
                 return;
             }
             
+            if(null!=metrics) {
+                metrics.released(sync.lockedAt);
+            }
             if(DEBUG) {
                 sync.setLockedStack(null);
             }
@@ -271,10 +322,10 @@ public class RecursiveLockImpl01CompleteFair implements RecursiveLock {
                 taskAfterUnlockBeforeNotify.run();
             }
     
-            if(sync.queue.size() > 0) {
-                // fair, wakeup the oldest one ..
-                // final WaitingThread oldest = queue.removeLast();
-                final WaitingThread oldest = sync.queue.remove(sync.queue.size()-1);
+            final WaitingThread oldest = sync.head;
+            if(null != oldest) {
+                // fair, hand over to the oldest one ..
+                sync.dequeue(oldest);
                 sync.setOwner(oldest.thread);            
     
                 if(TRACE_LOCK) {
@@ -282,26 +333,29 @@ public class RecursiveLockImpl01CompleteFair implements RecursiveLock {
                 }
                 
                 oldest.signaledByUnlock = true;
-                oldest.thread.interrupt(); // Propagate SecurityException if it happens
+                next = oldest.thread;
             } else {
                 sync.setOwner(null);
                 if(TRACE_LOCK) {
                     System.err.println("--- LOCK X0 "+toString()+", cur "+threadName(cur)+", signal any");
                 }
-                sync.notify();                    
+                next = null;
             }
         }
+        if(null != next) {
+            LockSupport.unpark(next);
+        }
     }
     
     public final int getQueueLength() {
         synchronized(sync) {
-            return sync.queue.size();
+            return sync.qsz;
         }
     }
     
     public String toString() {
         return syncName()+"[count "+sync.holdCount+
-                           ", qsz "+sync.queue.size()+", owner "+threadName(sync.getOwner())+"]";
+                           ", qsz "+sync.qsz+", owner "+threadName(sync.getOwner())+"]";
     }
     
     private final String syncName() {
@@ -31,6 +31,7 @@ package jogamp.common.util.locks;
 import java.util.List;
 import java.util.concurrent.locks.AbstractOwnableSynchronizer;
 
+import com.jogamp.common.util.locks.LockMetrics;
 import com.jogamp.common.util.locks.RecursiveLock;
 
 /**
@@ -43,7 +44,7 @@ import com.jogamp.common.util.locks.RecursiveLock;
  * <p>
  * Sync object extends {@link AbstractOwnableSynchronizer}, hence monitoring is possible.</p>
  */
-public class RecursiveLockImpl01Unfairish implements RecursiveLock {
+public class RecursiveLockImpl01Unfairish implements RecursiveLock, LockMetrics.Metered {
 
     @SuppressWarnings("serial")
     private static class Sync extends AbstractOwnableSynchronizer {
@@ -69,11 +70,27 @@ public class RecursiveLockImpl01Unfairish implements RecursiveLock {
         private int holdCount = 0;
         // stack trace of the lock, only used if DEBUG
         private Throwable lockedStack = null;
+        // time of the outermost acquisition, only used if metered
+        private long lockedAt = 0;
         private int qsz = 0;
     }
     private Sync sync = new Sync();
-        
+    private final LockMetrics metrics;
+    
     public RecursiveLockImpl01Unfairish() {
+        this(false, null);
+    }
+
+    /**
+     * @param metered if true, the lock is accounted in its {@link LockMetrics}
+     * @param name the name of the lock in the {@link LockMetrics}, may be <code>null</code>
+     */
+    public RecursiveLockImpl01Unfairish(boolean metered, String name) {
+        metrics = metered ? new LockMetrics(name, this) : null;
+    }
+
+    public final LockMetrics getMetrics() {
+        return metrics;
     }
 
     /**
@@ -166,7 +183,9 @@ public class RecursiveLockImpl01Unfairish implements RecursiveLock {
                 return true;
             }
     
-            if ( sync.getOwner() != null || ( 0<timeout && 0<sync.qsz ) ) {
+            final long tStart = null!=metrics ? System.nanoTime() : 0;
+            final boolean contended = sync.getOwner() != null || ( 0<timeout && 0<sync.qsz );
+            if ( contended ) {
     
                 if ( 0 >= timeout ) {
                     // locked by other thread and no waiting requested
@@ -201,6 +220,9 @@ public class RecursiveLockImpl01Unfairish implements RecursiveLock {
             }
     
             sync.setOwner(cur);
+            if(null!=metrics) {
+                sync.lockedAt = metrics.acquired(contended, tStart);
+            }
             if(DEBUG) {
                 sync.setLockedStack(new Throwable("Previously locked by "+toString()));
             }
@@ -229,6 +251,9 @@ public class RecursiveLockImpl01Unfairish implements RecursiveLock {
                 return;
             }
             
+            if(null!=metrics) {
+                metrics.released(sync.lockedAt);
+            }
             sync.setOwner(null);
             if(DEBUG) {
                 sync.setLockedStack(null);
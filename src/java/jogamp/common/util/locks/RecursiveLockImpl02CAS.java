@@ -0,0 +1,285 @@
+/**
+ * Copyright 2011 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package jogamp.common.util.locks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.AbstractQueuedSynchronizer;
+
+import com.jogamp.common.util.locks.LockMetrics;
+import com.jogamp.common.util.locks.RecursiveLock;
+
+/**
+ * Reentrance locking toolkit, impl w/ a lock-free fast path.
+ * <p>
+ * The owner is acquired via CAS of the hold count and only the owning thread
+ * modifies the hold count afterwards, hence uncontended {@link #lock()} / {@link #unlock()}
+ * and all queries never block. Only contended applicants are queued and parked.</p>
+ * 
+ * <p>
+ * If <code>fair</code>, new lock-applicants wait if the queue is not empty 
+ * for {@link #lock()} and {@link #tryLock(long) tryLock}(timeout>0),
+ * otherwise they may barge in.</p>
+ * 
+ * <p>
+ * Sync object extends {@link AbstractQueuedSynchronizer}, hence monitoring is possible.</p>
+ */
+public class RecursiveLockImpl02CAS implements RecursiveLock, LockMetrics.Metered {
+
+    @SuppressWarnings("serial")
+    private static class Sync extends AbstractQueuedSynchronizer {
+        private final boolean fair;
+        
+        private Sync(boolean fair) {
+            super();
+            this.fair = fair;
+        }
+        private final Thread getOwner() {
+            // volatile read of the state first, making the owner visible
+            return 0 != getState() ? getExclusiveOwnerThread() : null;
+        }
+        private final int getCount() {
+            return getState();
+        }
+        private final int getHoldCount() {
+            return isHeldExclusively() ? getState() : 0;
+        }
+        private final void setLockedStack(Throwable s) {
+            List<Throwable> ls = LockDebugUtil.getRecursiveLockTrace();
+            if(s==null) {
+                ls.remove(lockedStack);
+            } else {
+                ls.add(s);
+            }            
+            lockedStack = s;
+        }
+        
+        /** Acquires the lock ignoring any scheduling order */
+        private final boolean tryBarge(int acquires) {
+            final int c = getState();
+            if ( 0 == c ) {
+                if ( compareAndSetState(0, acquires) ) {
+                    setExclusiveOwnerThread(Thread.currentThread());
+                    return true;
+                }
+            } else if ( Thread.currentThread() == getExclusiveOwnerThread() ) {
+                setState(c + acquires);
+                return true;
+            }
+            return false;
+        }
+        
+        @Override
+        protected final boolean tryAcquire(int acquires) {
+            if ( fair && 0 == getState() && hasQueuedThreads() && getFirstQueuedThread() != Thread.currentThread() ) {
+                return false;
+            }
+            return tryBarge(acquires);
+        }
+        
+        @Override
+        protected final boolean tryRelease(int releases) {
+            final int c = getState() - releases;
+            if ( 0 == c ) {
+                setExclusiveOwnerThread(null);
+            }
+            setState(c);
+            return 0 == c;
+        }
+        
+        @Override
+        protected final boolean isHeldExclusively() {
+            return Thread.currentThread() == getOwner();
+        }
+        
+        // stack trace of the lock, only used if DEBUG
+        private Throwable lockedStack = null;
+        // time of the outermost acquisition, owner only and only used if metered
+        private long lockedAt = 0;
+    }
+    private final Sync sync;
+    private final LockMetrics metrics;
+
+    public RecursiveLockImpl02CAS(boolean fair) {
+        this(fair, false, null);
+    }
+
+    /**
+     * @param metered if true, the lock is accounted in its {@link LockMetrics}
+     * @param name the name of the lock in the {@link LockMetrics}, may be <code>null</code>
+     */
+    public RecursiveLockImpl02CAS(boolean fair, boolean metered, String name) {
+        sync = new Sync(fair);
+        metrics = metered ? new LockMetrics(name, this) : null;
+    }
+
+    public final LockMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the Throwable instance generated when this lock was taken the 1st time
+     * and if {@link com.jogamp.common.util.locks.Lock#DEBUG} is turned on, otherwise it returns always <code>null</code>.
+     * @see com.jogamp.common.util.locks.Lock#DEBUG
+     */
+    public final Throwable getLockedStack() {
+        return sync.getOwner() != null ? sync.lockedStack : null;
+    }
+
+    public final Thread getOwner() {
+        return sync.getOwner();
+    }
+
+    public final boolean isOwner() {
+        return sync.isHeldExclusively();
+    }
+
+    public final boolean isOwner(Thread thread) {
+        return sync.getOwner() == thread ;
+    }
+
+    public final boolean isLocked() {
+        return 0 != sync.getCount();
+    }
+
+    public final boolean isLockedByOtherThread() {
+        final Thread owner = sync.getOwner();
+        return null != owner && Thread.currentThread() != owner ;
+    }
+
+    public final int getHoldCount() {
+        return sync.getHoldCount();
+    }
+
+    public final void validateLocked() {
+        if ( !sync.isHeldExclusively() ) {
+            if ( null == sync.getOwner() ) {
+                throw new RuntimeException(threadName(Thread.currentThread())+": Not locked: "+toString());
+            }
+            if(null!=sync.lockedStack) {
+                sync.lockedStack.printStackTrace();
+            }
+            throw new RuntimeException(Thread.currentThread()+": Not owner: "+toString());
+        }
+    }
+
+    public final void lock() {
+        // fast path, w/o creating a timeout
+        if ( !TRACE_LOCK && !DEBUG && null == metrics && sync.tryAcquire(1) ) {
+            return;
+        }
+        try {
+            if(!tryLock(TIMEOUT)) {
+                if(null!=sync.lockedStack) {
+                    sync.lockedStack.printStackTrace();
+                }
+                throw new RuntimeException("Waited "+TIMEOUT+"ms for: "+toString()+" - "+threadName(Thread.currentThread()));
+            }
+        } catch (InterruptedException e) {
+            throw new RuntimeException("Interrupted", e);
+        }
+    }
+
+    public final boolean tryLock(long timeout) throws InterruptedException {
+        final Thread cur = Thread.currentThread();
+        if(TRACE_LOCK) {
+            System.err.println("+++ LOCK 0 "+toString()+", cur "+threadName(cur));
+        }
+        final boolean contended;
+        final long t0;
+        if( null != metrics ) {
+            final Thread owner = sync.getOwner();
+            contended = null != owner && cur != owner;
+            t0 = System.nanoTime();
+        } else {
+            contended = false;
+            t0 = 0;
+        }
+        final boolean res;
+        if ( 0 >= timeout ) {
+            res = sync.tryBarge(1);
+        } else {
+            res = sync.tryAcquireNanos(1, TimeUnit.MILLISECONDS.toNanos(timeout));
+        }
+        if( !res ) {
+            if(TRACE_LOCK || ( DEBUG && 0 < timeout ) ) {
+                System.err.println("+++ LOCK XX "+toString()+", cur "+threadName(cur)+", timeout "+timeout+" ms");
+            }
+            return false;
+        }
+        if( 1 == sync.getCount() ) {
+            if(null != metrics) {
+                sync.lockedAt = metrics.acquired(contended, t0);
+            }
+            if(DEBUG) {
+                sync.setLockedStack(new Throwable("Previously locked by "+toString()));
+            }
+            if(TRACE_LOCK) {
+                System.err.println("+++ LOCK X1 "+toString()+", cur "+threadName(cur));
+            }
+        } else if(TRACE_LOCK) {
+            System.err.println("+++ LOCK XR "+toString()+", cur "+threadName(cur));
+        }
+        return true;
+    }
+    
+    public final void unlock() {
+        validateLocked();
+        if( 1 < sync.getCount() ) {
+            if(TRACE_LOCK) {
+                System.err.println("--- LOCK XR "+toString()+", cur "+threadName(Thread.currentThread()));
+            }
+        } else {
+            if(null != metrics) {
+                metrics.released(sync.lockedAt);
+            }
+            if(DEBUG) {
+                sync.setLockedStack(null);
+            }
+            if(TRACE_LOCK) {
+                System.err.println("--- LOCK X0 "+toString()+", cur "+threadName(Thread.currentThread())+", signal any");
+            }
+        }
+        sync.release(1);
+    }
+    
+    public final int getQueueLength() {
+        return sync.getQueueLength();
+    }
+    
+    public String toString() {
+        return syncName()+"[count "+sync.getCount()+
+                           ", qsz "+sync.getQueueLength()+", owner "+threadName(sync.getOwner())+"]";
+    }
+    
+    private final String syncName() {
+        return "<"+Integer.toHexString(this.hashCode())+", "+Integer.toHexString(sync.hashCode())+">";
+    }
+    private final String threadName(Thread t) { return null!=t ? "<"+t.getName()+">" : "<NULL>" ; }
+}
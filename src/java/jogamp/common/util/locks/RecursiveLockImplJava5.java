@@ -3,15 +3,32 @@ package jogamp.common.util.locks;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
 
+import com.jogamp.common.util.locks.LockMetrics;
 import com.jogamp.common.util.locks.RecursiveLock;
 
-public class RecursiveLockImplJava5 implements RecursiveLock {
+public class RecursiveLockImplJava5 implements RecursiveLock, LockMetrics.Metered {
 
     volatile Thread owner = null;
     ReentrantLock lock;
+    private final LockMetrics metrics;
+    // time of the outermost acquisition, owner only and only used if metered
+    private long lockedAt = 0;
     
     public RecursiveLockImplJava5(boolean fair) {
+        this(fair, false, null);
+    }
+    
+    /**
+     * @param metered if true, the lock is accounted in its {@link LockMetrics}
+     * @param name the name of the lock in the {@link LockMetrics}, may be <code>null</code>
+     */
+    public RecursiveLockImplJava5(boolean fair, boolean metered, String name) {
         lock = new ReentrantLock(fair);
+        metrics = metered ? new LockMetrics(name, this) : null;
+    }
+    
+    public final LockMetrics getMetrics() {
+        return metrics;
     }
     
     public void lock() {
@@ -26,6 +43,18 @@ public class RecursiveLockImplJava5 implements RecursiveLock {
     }
 
     public boolean tryLock(long timeout) throws InterruptedException {
+        if( null != metrics ) {
+            final boolean contended = isLockedByOtherThread();
+            final long t0 = System.nanoTime();
+            if(lock.tryLock(timeout, TimeUnit.MILLISECONDS)) {
+                owner = Thread.currentThread();
+                if( 1 == lock.getHoldCount() ) {
+                    lockedAt = metrics.acquired(contended, t0);
+                }
+                return true;
+            }
+            return false;
+        }
         if(lock.tryLock(timeout, TimeUnit.MILLISECONDS)) {
             owner = Thread.currentThread();
             return true;
@@ -35,6 +64,9 @@ public class RecursiveLockImplJava5 implements RecursiveLock {
 
     public void unlock() throws RuntimeException {
         validateLocked();
+        if( null != metrics && 1 == lock.getHoldCount() ) {
+            metrics.released(lockedAt);
+        }
         owner = null;
         lock.unlock();
     }
@@ -0,0 +1,260 @@
+/**
+ * Copyright 2011 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package jogamp.common.util.locks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.jogamp.common.util.locks.LockMetrics;
+import com.jogamp.common.util.locks.RecursiveLock;
+import com.jogamp.common.util.locks.RecursiveReadWriteLock;
+
+/**
+ * {@link RecursiveReadWriteLock} based on {@link ReentrantReadWriteLock}.
+ */
+public class RecursiveReadWriteLockImplJava5 implements RecursiveReadWriteLock {
+
+    private final ReentrantReadWriteLock rwl;
+    private final ReadLockImpl readLock = new ReadLockImpl();
+    private final WriteLockImpl writeLock = new WriteLockImpl();
+    private final LockMetrics readMetrics, writeMetrics;
+    
+    private static class ReadHold {
+        // read hold count, ReentrantReadWriteLock does not expose it in Java 5
+        int count = 0;
+        // time of the outermost acquisition, only used if metered
+        long lockedAt = 0;
+    }
+    private final ThreadLocal<ReadHold> readHolds = new ThreadLocal<ReadHold>() {
+        protected ReadHold initialValue() {
+            return new ReadHold();
+        }
+    };
+    
+    public RecursiveReadWriteLockImplJava5(boolean fair) {
+        this(fair, false, null);
+    }
+    
+    /**
+     * @param metered if true, the read and the write lock are accounted in their {@link LockMetrics}
+     * @param name the name of the lock in the {@link LockMetrics}, suffixed by <code>.read</code> and <code>.write</code>,
+     *             may be <code>null</code>
+     */
+    public RecursiveReadWriteLockImplJava5(boolean fair, boolean metered, String name) {
+        rwl = new ReentrantReadWriteLock(fair);
+        if( metered ) {
+            readMetrics = new LockMetrics(null != name ? name+".read" : null, readLock, true);
+            writeMetrics = new LockMetrics(null != name ? name+".write" : null, writeLock);
+        } else {
+            readMetrics = null;
+            writeMetrics = null;
+        }
+    }
+    
+    public final ReadLock readLock() {
+        return readLock;
+    }
+
+    public final RecursiveLock writeLock() {
+        return writeLock;
+    }
+
+    public final int getQueueLength() {
+        return rwl.getQueueLength();
+    }
+    
+    public String toString() {
+        return "<"+Integer.toHexString(this.hashCode())+">[readers "+rwl.getReadLockCount()+", writer "+
+                threadName(writeLock.owner)+", count "+rwl.getWriteHoldCount()+", qsz "+rwl.getQueueLength()+"]";
+    }
+    
+    private static String threadName(Thread t) { return null!=t ? "<"+t.getName()+">" : "<NULL>" ; }
+    
+    class ReadLockImpl implements ReadLock, LockMetrics.Metered {
+        public final LockMetrics getMetrics() {
+            return readMetrics;
+        }
+
+        public final int getQueueLength() {
+            return rwl.getQueueLength();
+        }
+
+
+        public final void lock() {
+            try {
+                if(!tryLock(TIMEOUT)) {
+                    throw new RuntimeException("Waited "+TIMEOUT+"ms for read lock: "+RecursiveReadWriteLockImplJava5.this+" - "+threadName(Thread.currentThread()));
+                }
+            } catch (InterruptedException e) {
+                throw new RuntimeException("Interrupted", e);
+            }
+        }
+
+        public final boolean tryLock(long timeout) throws InterruptedException {
+            final boolean contended = null != readMetrics && writeLock.isLockedByOtherThread();
+            final long t0 = null != readMetrics ? System.nanoTime() : 0;
+            final boolean res = 0 >= timeout ? rwl.readLock().tryLock() : rwl.readLock().tryLock(timeout, TimeUnit.MILLISECONDS);
+            if(res) {
+                final ReadHold h = readHolds.get();
+                if( 0 == h.count++ && null != readMetrics ) {
+                    h.lockedAt = readMetrics.acquired(contended, t0);
+                }
+            }
+            if(RecursiveLock.TRACE_LOCK) {
+                System.err.println("+++ READ LOCK "+(res?"X":"XX")+" "+RecursiveReadWriteLockImplJava5.this+", cur "+threadName(Thread.currentThread()));
+            }
+            return res;
+        }
+
+        public final void unlock() {
+            validateLocked();
+            final ReadHold h = readHolds.get();
+            if( 0 == --h.count && null != readMetrics ) {
+                readMetrics.released(h.lockedAt);
+            }
+            rwl.readLock().unlock();
+            if(RecursiveLock.TRACE_LOCK) {
+                System.err.println("--- READ LOCK X "+RecursiveReadWriteLockImplJava5.this+", cur "+threadName(Thread.currentThread()));
+            }
+        }
+
+        public final boolean isLocked() {
+            return 0 < rwl.getReadLockCount();
+        }
+
+        public final int getHoldCount() {
+            return readHolds.get().count;
+        }
+
+        public final int getReadLockCount() {
+            return rwl.getReadLockCount();
+        }
+
+        public final boolean isOwner() {
+            return 0 < readHolds.get().count;
+        }
+
+        public final void validateLocked() {
+            if( !isOwner() ) {
+                throw new RuntimeException(threadName(Thread.currentThread())+": Not read locked: "+RecursiveReadWriteLockImplJava5.this);
+            }
+        }
+    }
+    
+    class WriteLockImpl implements RecursiveLock, LockMetrics.Metered {
+        volatile Thread owner = null;
+        // time of the outermost acquisition, owner only and only used if metered
+        private long lockedAt = 0;
+        
+        public final LockMetrics getMetrics() {
+            return writeMetrics;
+        }
+        
+        public final void lock() {
+            try {
+                if(!tryLock(TIMEOUT)) {
+                    throw new RuntimeException("Waited "+TIMEOUT+"ms for write lock: "+RecursiveReadWriteLockImplJava5.this+" - "+threadName(Thread.currentThread()));
+                }
+            } catch (InterruptedException e) {
+                throw new RuntimeException("Interrupted", e);
+            }
+        }
+
+        public final boolean tryLock(long timeout) throws InterruptedException {
+            if( !rwl.isWriteLockedByCurrentThread() && readLock.isOwner() ) {
+                throw new RuntimeException(threadName(Thread.currentThread())+": Read lock held, cannot acquire write lock: "+RecursiveReadWriteLockImplJava5.this);
+            }
+            final boolean contended = null != writeMetrics && ( isLockedByOtherThread() || 0 < rwl.getReadLockCount() );
+            final long t0 = null != writeMetrics ? System.nanoTime() : 0;
+            final boolean res = 0 >= timeout ? rwl.writeLock().tryLock() : rwl.writeLock().tryLock(timeout, TimeUnit.MILLISECONDS);
+            if(res) {
+                owner = Thread.currentThread();
+                if( null != writeMetrics && 1 == rwl.getWriteHoldCount() ) {
+                    lockedAt = writeMetrics.acquired(contended, t0);
+                }
+            }
+            if(TRACE_LOCK) {
+                System.err.println("+++ WRITE LOCK "+(res?"X":"XX")+" "+RecursiveReadWriteLockImplJava5.this+", cur "+threadName(Thread.currentThread()));
+            }
+            return res;
+        }
+
+        public final void unlock() {
+            validateLocked();
+            if( 1 == rwl.getWriteHoldCount() ) {
+                if( null != writeMetrics ) {
+                    writeMetrics.released(lockedAt);
+                }
+                owner = null;
+            }
+            rwl.writeLock().unlock();
+            if(TRACE_LOCK) {
+                System.err.println("--- WRITE LOCK X "+RecursiveReadWriteLockImplJava5.this+", cur "+threadName(Thread.currentThread()));
+            }
+        }
+
+        public final boolean isLocked() {
+            return rwl.isWriteLocked();
+        }
+
+        public final Thread getOwner() {
+            return owner;
+        }
+
+        public final boolean isLockedByOtherThread() {
+            return rwl.isWriteLocked() && !rwl.isWriteLockedByCurrentThread();
+        }
+
+        public final boolean isOwner() {
+            return rwl.isWriteLockedByCurrentThread();
+        }
+
+        public final boolean isOwner(Thread thread) {
+            return rwl.isWriteLocked() && owner == thread;
+        }
+
+        public final void validateLocked() {
+            if ( !rwl.isWriteLockedByCurrentThread() ) {
+                if ( !rwl.isWriteLocked() ) {
+                    throw new RuntimeException(threadName(Thread.currentThread())+": Not write locked: "+RecursiveReadWriteLockImplJava5.this);
+                } else {
+                    throw new RuntimeException(threadName(Thread.currentThread())+": Not owner: "+RecursiveReadWriteLockImplJava5.this);
+                }
+            }
+        }
+
+        public final int getHoldCount() {
+            return rwl.getWriteHoldCount();
+        }
+
+        public final int getQueueLength() {
+            return rwl.getQueueLength();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright 2011 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package jogamp.common.util.locks;
+
+import com.jogamp.common.util.locks.LockMetrics;
+import com.jogamp.common.util.locks.RecursiveLock;
+import com.jogamp.common.util.locks.RecursiveStampedLock;
+
+/**
+ * {@link RecursiveStampedLock} implemented as sequence lock on top of a {@link RecursiveLock}.
+ * <p>
+ * The version is odd while the lock is held and incremented 
+ * by the outermost acquisition and release. A stamp is the version it has been issued at.
+ * </p>
+ */
+public class RecursiveStampedLockImpl01 implements RecursiveStampedLock, LockMetrics.Metered {
+
+    private final RecursiveLock lock;
+    // starts at 2, zero is the invalid stamp
+    private volatile long version = 2;
+    
+    public RecursiveStampedLockImpl01(RecursiveLock lock) {
+        this.lock = lock;
+    }
+    
+    public final long tryOptimisticRead() {
+        final long v = version;
+        if( 0 == ( v & 1 ) ) {
+            return v;
+        }
+        // locked: only the owner may read
+        return lock.isOwner() ? v : 0;
+    }
+
+    public final boolean validate(long stamp) {
+        if( 0 == stamp ) {
+            return false;
+        }
+        // an odd stamp has been issued to the owner while holding the lock
+        return version == stamp && ( 0 == ( stamp & 1 ) || lock.isOwner() );
+    }
+    
+    public final void lock() throws RuntimeException {
+        lock.lock();
+        if( 1 == lock.getHoldCount() ) {
+            version++;
+        }
+    }
+
+    public final boolean tryLock(long timeout) throws InterruptedException {
+        if( lock.tryLock(timeout) ) {
+            if( 1 == lock.getHoldCount() ) {
+                version++;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    public final void unlock() throws RuntimeException {
+        lock.validateLocked();
+        if( 1 == lock.getHoldCount() ) {
+            version++;
+        }
+        lock.unlock();
+    }
+
+    /** Returns the metrics of the underlying lock, or <code>null</code> if it is not metered */
+    public final LockMetrics getMetrics() { return LockMetrics.get(lock); }
+
+    public final boolean isLocked() { return lock.isLocked(); }
+
+    public final Thread getOwner() { return lock.getOwner(); }
+
+    public final boolean isLockedByOtherThread() { return lock.isLockedByOtherThread(); }
+
+    public final boolean isOwner() { return lock.isOwner(); }
+
+    public final boolean isOwner(Thread thread) { return lock.isOwner(thread); }
+
+    public final void validateLocked() { lock.validateLocked(); }
+
+    public final int getHoldCount() { return lock.getHoldCount(); }
+
+    public final int getQueueLength() { return lock.getQueueLength(); }
+
+    public String toString() {
+        return lock.toString()+", version "+version;
+    }
+}
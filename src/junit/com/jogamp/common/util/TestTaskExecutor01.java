@@ -0,0 +1,268 @@
+/**
+ * Copyright 2011 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.common.util;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestTaskExecutor01 {
+
+    @Test
+    public void testProducersOrder() throws InterruptedException {
+        final int producers = 8;
+        final int tasks = 20000;
+        final TaskExecutor executor = new TaskExecutor(64);
+        executor.start("TestTaskExecutor01-Consumer");
+        // written by the consumer only
+        final int[] last = new int[producers];
+        final int[] count = new int[1];
+        final boolean[] ordered = new boolean[] { true };
+        final Thread[] threads = new Thread[producers];
+        for(int i=0; i<producers; i++) {
+            final int p = i;
+            threads[i] = new Thread(new Runnable() {
+                public void run() {
+                    for(int j=1; j<=tasks; j++) {
+                        final int v = j;
+                        executor.execute(new Runnable() {
+                            public void run() {
+                                if( last[p] != v - 1 ) {
+                                    ordered[0] = false;
+                                }
+                                last[p] = v;
+                                count[0]++;
+                            }
+                        });
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for(int i=0; i<producers; i++) {
+            threads[i].join();
+        }
+        executor.stop();
+        Assert.assertEquals(producers * tasks, count[0]);
+        Assert.assertTrue("Tasks of one producer reordered", ordered[0]);
+        Assert.assertEquals(producers * tasks, executor.getQueueLatency().getCount());
+        Assert.assertEquals(producers * tasks, executor.getExecLatency().getCount());
+        Assert.assertTrue(executor.isEmpty());
+        System.err.println(executor);
+    }
+
+    @Test
+    public void testFuture() throws Exception {
+        final TaskExecutor executor = new TaskExecutor(16);
+        executor.start("TestTaskExecutor01-Consumer");
+        try {
+            final TaskExecutor.Task<Thread> t1 = executor.submit(new Callable<Thread>() {
+                public Thread call() {
+                    return Thread.currentThread();
+                }
+            });
+            Assert.assertEquals(executor.getConsumer(), t1.get());
+            Assert.assertTrue(t1.isDone());
+            Assert.assertTrue(t1.getDurationInQueue() >= 0);
+
+            final TaskExecutor.Task<Object> t2 = executor.submit(new Runnable() {
+                public void run() {
+                    throw new IllegalStateException("expected");
+                }
+            });
+            try {
+                t2.get();
+                Assert.fail("Exception not propagated");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+            Assert.assertTrue(t2.getThrowable() instanceof IllegalStateException);
+
+            try {
+                executor.invokeAndWait(new Runnable() {
+                    public void run() {
+                        throw new IllegalStateException("expected");
+                    }
+                });
+                Assert.fail("Exception not propagated");
+            } catch (RuntimeException e) {
+                Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+
+            // invokeAndWait from the consumer itself must not deadlock
+            final boolean[] nested = new boolean[] { false };
+            executor.invokeAndWait(new Runnable() {
+                public void run() {
+                    executor.invokeAndWait(new Runnable() {
+                        public void run() {
+                            nested[0] = true;
+                        }
+                    });
+                }
+            });
+            Assert.assertTrue(nested[0]);
+
+            // a RunnableTask may be submitted as well
+            final RunnableTask rt = new RunnableTask(new Runnable() {
+                public void run() { }
+            }, null, true);
+            executor.submit(rt).get();
+            Assert.assertTrue(rt.isExecuted());
+        } finally {
+            executor.stop();
+        }
+    }
+
+    @Test
+    public void testExternalConsumer() throws Exception {
+        final TaskExecutor executor = new TaskExecutor(2);
+        executor.setConsumer(Thread.currentThread());
+        final int[] count = new int[1];
+        TaskExecutor.Task<Object> last = null;
+        for(int i=0; i<5; i++) {
+            last = executor.submit(new Runnable() {
+                public void run() {
+                    count[0]++;
+                }
+            });
+        }
+        final TaskExecutor.Task<Object> cancelled = executor.submit(new Runnable() {
+            public void run() {
+                count[0] += 100;
+            }
+        });
+        Assert.assertTrue(cancelled.cancel(false));
+        try {
+            last.get(10, TimeUnit.MILLISECONDS);
+            Assert.fail("Not timed out");
+        } catch (TimeoutException e) { }
+
+        // batched
+        Assert.assertEquals(2, executor.runPending());
+        Assert.assertEquals(2, count[0]);
+        Assert.assertEquals(2, executor.runPending());
+        Assert.assertEquals(2, executor.runPending());
+        Assert.assertEquals(0, executor.runPending());
+        Assert.assertEquals(5, count[0]);
+        Assert.assertTrue(last.isDone());
+        Assert.assertTrue(cancelled.isCancelled());
+        try {
+            cancelled.get();
+            Assert.fail("Cancelled task returned");
+        } catch (CancellationException e) { }
+
+        Assert.assertFalse(executor.awaitTasks(1000000L));
+        final Thread producer = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) { }
+                executor.execute(new Runnable() {
+                    public void run() {
+                        count[0]++;
+                    }
+                });
+            }
+        });
+        producer.start();
+        while( !executor.awaitTasks(0) ) { }
+        Assert.assertEquals(1, executor.runPending());
+        Assert.assertEquals(6, count[0]);
+        producer.join();
+
+        // not started by the executor
+        try {
+            executor.stop();
+            Assert.fail("Stopped external consumer");
+        } catch (IllegalStateException e) { }
+        Assert.assertEquals(Thread.currentThread(), executor.getConsumer());
+    }
+
+    @Test
+    public void testRestart() throws Exception {
+        final TaskExecutor executor = new TaskExecutor(4);
+        executor.stop(); // not started
+        for(int i=0; i<3; i++) {
+            executor.start("TestTaskExecutor01-Consumer-"+i);
+            final Thread consumer = executor.getConsumer();
+            final Thread[] executedBy = new Thread[1];
+            executor.invokeAndWait(new Runnable() {
+                public void run() {
+                    executedBy[0] = Thread.currentThread();
+                }
+            });
+            Assert.assertEquals(consumer, executedBy[0]);
+            executor.stop();
+            Assert.assertFalse(consumer.isAlive());
+            Assert.assertNull(executor.getConsumer());
+        }
+
+        // stopped by the consumer itself
+        executor.start("TestTaskExecutor01-Consumer-Self");
+        final Thread consumer = executor.getConsumer();
+        executor.execute(new Runnable() {
+            public void run() {
+                try {
+                    executor.stop();
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+        consumer.join();
+        Assert.assertNull(executor.getConsumer());
+    }
+
+    @Test
+    public void testHistogram() {
+        final LatencyHistogram h = new LatencyHistogram();
+        for(int i=0; i<99; i++) {
+            h.record(1000);
+        }
+        h.record(1000000);
+        Assert.assertEquals(100, h.getCount());
+        Assert.assertEquals(1000000, h.getMax());
+        Assert.assertEquals(1023, h.getPercentile(0.5));
+        Assert.assertEquals(1023, h.getPercentile(0.99));
+        Assert.assertEquals((1<<20)-1, h.getPercentile(1.0));
+        h.reset();
+        Assert.assertEquals(0, h.getCount());
+    }
+
+    public static void main(String args[]) throws IOException {
+        String tstname = TestTaskExecutor01.class.getName();
+        org.junit.runner.JUnitCore.main(tstname);
+    }
+}
@@ -0,0 +1,265 @@
+/**
+ * Copyright 2011 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+ 
+package com.jogamp.common.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileLock;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.jogamp.common.util.cache.PersistentJarCache;
+import com.jogamp.common.util.cache.TempFileCache;
+import com.jogamp.common.util.cache.TempFileCacheReaper;
+
+public class TestTempFileCacheReaper {
+    static final long HOUR = 60L * 60L * 1000L;
+    static TempFileCache fileCache;
+    
+    @BeforeClass
+    public static void init() {
+        Assert.assertTrue(TempFileCache.initSingleton());
+        fileCache = new TempFileCache();
+        Assert.assertTrue(fileCache.isValid());
+    }
+    
+    static File newBaseDir(String name) {
+        final File baseDir = new File(fileCache.getTempDir(), name);
+        Assert.assertTrue(baseDir.mkdir());
+        return baseDir;
+    }
+    
+    static void writeFile(File f, int size) throws IOException {
+        final FileOutputStream out = new FileOutputStream(f);
+        try {
+            out.write(new byte[size]);
+        } finally {
+            out.close();
+        }
+    }
+    
+    /** Creates a stale root jlnNNNN w/ one file of given size, last modified <code>age</code> ago. */
+    static File createRoot(File baseDir, String name, int size, long age) throws IOException {
+        final File dir = new File(baseDir, name);
+        Assert.assertTrue(new File(dir, "sub").mkdirs());
+        writeFile(new File(dir, "sub/data.bin"), size);
+        Assert.assertTrue(new File(baseDir, name+".tmp").createNewFile());
+        Assert.assertTrue(new File(baseDir, name+".lck").createNewFile());
+        Assert.assertTrue(dir.setLastModified(System.currentTimeMillis() - age));
+        return dir;
+    }
+    
+    static TempFileCacheReaper newReaper(File baseDir, String ownLockFileName) {
+        final TempFileCacheReaper reaper = new TempFileCacheReaper(baseDir, ownLockFileName);
+        reaper.setRate(0);
+        reaper.setKeep(0);
+        reaper.setMaxBytes(0);
+        reaper.setMinAge(0);
+        return reaper;
+    }
+    
+    @Test
+    public void test01ReapAll() throws IOException {
+        final File baseDir = newBaseDir("reapAll");
+        final File r1 = createRoot(baseDir, "jln1", 1000, 3*HOUR);
+        final File r2 = createRoot(baseDir, "jln2", 2000, 2*HOUR);
+        final File own = createRoot(baseDir, "jln3", 4000, 1*HOUR);
+        
+        final TempFileCacheReaper reaper = newReaper(baseDir, "jln3.lck");
+        Assert.assertFalse(reaper.isDone());
+        reaper.run();
+        System.err.println(reaper);
+        Assert.assertTrue(reaper.isDone());
+        Assert.assertFalse(r1.exists());
+        Assert.assertFalse(new File(baseDir, "jln1.lck").exists());
+        Assert.assertFalse(new File(baseDir, "jln1.tmp").exists());
+        Assert.assertFalse(r2.exists());
+        Assert.assertTrue(own.exists());
+        Assert.assertEquals(2, reaper.getRootsFound());
+        Assert.assertEquals(2, reaper.getRootsReaped());
+        Assert.assertEquals(0, reaper.getRootsKept());
+        Assert.assertEquals(3000, reaper.getBytesReclaimed());
+        Assert.assertEquals(2*3, reaper.getFilesDeleted()); // data.bin, sub, jlnN
+    }
+    
+    @Test
+    public void test02ActiveRoot() throws IOException {
+        final File baseDir = newBaseDir("active");
+        final File r1 = createRoot(baseDir, "jln1", 1000, 2*HOUR);
+        final File active = createRoot(baseDir, "jln2", 1000, 1*HOUR);
+        
+        final FileOutputStream tmpOut = new FileOutputStream(new File(baseDir, "jln2.tmp"));
+        final FileLock tmpLock = tmpOut.getChannel().lock();
+        try {
+            final TempFileCacheReaper reaper = newReaper(baseDir, null);
+            reaper.run();
+            System.err.println(reaper);
+            Assert.assertFalse(r1.exists());
+            Assert.assertTrue(active.exists());
+            Assert.assertEquals(1, reaper.getRootsFound());
+            Assert.assertEquals(1, reaper.getRootsReaped());
+        } finally {
+            tmpLock.release();
+            tmpOut.close();
+        }
+    }
+    
+    @Test
+    public void test03KeepAndMaxBytes() throws IOException {
+        final File baseDir = newBaseDir("keep");
+        final File r1 = createRoot(baseDir, "jln1", 1000, 4*HOUR);
+        final File r2 = createRoot(baseDir, "jln2", 1000, 3*HOUR);
+        final File r3 = createRoot(baseDir, "jln3", 3000, 2*HOUR);
+        final File r4 = createRoot(baseDir, "jln4", 1000, 1*HOUR);
+        
+        // keep 3 newest within 2500 bytes: r4 kept, r3 exceeds, r2 kept, r1 beyond keep 
+        final TempFileCacheReaper reaper = newReaper(baseDir, null);
+        reaper.setKeep(3);
+        reaper.setMaxBytes(2500);
+        reaper.run();
+        System.err.println(reaper);
+        Assert.assertFalse(r1.exists());
+        Assert.assertTrue(r2.exists());
+        Assert.assertFalse(r3.exists());
+        Assert.assertTrue(r4.exists());
+        Assert.assertEquals(4, reaper.getRootsFound());
+        Assert.assertEquals(2, reaper.getRootsReaped());
+        Assert.assertEquals(2, reaper.getRootsKept());
+        Assert.assertEquals(4000, reaper.getBytesReclaimed());
+        // kept roots remain reapable
+        Assert.assertTrue(new File(baseDir, "jln2.lck").exists());
+        Assert.assertTrue(new File(baseDir, "jln2.tmp").exists());
+    }
+    
+    @Test
+    public void test04MinAge() throws IOException {
+        final File baseDir = newBaseDir("minAge");
+        final File r1 = createRoot(baseDir, "jln1", 1000, 2*HOUR);
+        final File r2 = createRoot(baseDir, "jln2", 1000, 0);
+        
+        final TempFileCacheReaper reaper = newReaper(baseDir, null);
+        reaper.setMinAge(HOUR);
+        reaper.run();
+        Assert.assertFalse(r1.exists());
+        Assert.assertTrue(r2.exists());
+        Assert.assertEquals(1, reaper.getRootsKept());
+    }
+    
+    @Test
+    public void test04bMinAgeAndKeep() throws IOException {
+        final File baseDir = newBaseDir("minAgeKeep");
+        final File r1 = createRoot(baseDir, "jln1", 1000, 3*HOUR);
+        final File r2 = createRoot(baseDir, "jln2", 1000, 2*HOUR);
+        final File r3 = createRoot(baseDir, "jln3", 1000, 0);
+        
+        // r3 is kept by age and doesn't count against keep
+        final TempFileCacheReaper reaper = newReaper(baseDir, null);
+        reaper.setMinAge(HOUR);
+        reaper.setKeep(1);
+        reaper.run();
+        Assert.assertFalse(r1.exists());
+        Assert.assertTrue(r2.exists());
+        Assert.assertTrue(r3.exists());
+        Assert.assertEquals(1, reaper.getRootsReaped());
+        Assert.assertEquals(2, reaper.getRootsKept());
+    }
+    
+    @Test
+    public void test05Persistent() throws IOException {
+        final File baseDir = newBaseDir("persistent");
+        final PersistentJarCache used = new PersistentJarCache(baseDir, "used");
+        final PersistentJarCache unused = new PersistentJarCache(baseDir, "unused");
+        used.lock();
+        used.unlock();
+        unused.lock();
+        unused.unlock();
+        writeFile(new File(used.getDirectory(), "libused.so"), 1000);
+        writeFile(new File(unused.getDirectory(), "libunused.so"), 2000);
+        final File unusedLck = new File(unused.getDirectory().getParentFile(), "unused.lck");
+        Assert.assertTrue(unusedLck.setLastModified(System.currentTimeMillis() - 2*HOUR));
+        
+        final TempFileCacheReaper reaper = newReaper(baseDir, null);
+        reaper.setPersistentMaxAge(HOUR);
+        reaper.run();
+        System.err.println(reaper);
+        Assert.assertTrue(used.getDirectory().exists());
+        Assert.assertFalse(unused.getDirectory().exists());
+        Assert.assertTrue(unusedLck.exists());
+        Assert.assertEquals(1, reaper.getPersistentReaped());
+        Assert.assertEquals(2000, reaper.getBytesReclaimed());
+        
+        // reusable after reaping
+        unused.lock();
+        try {
+            Assert.assertTrue(unused.getDirectory().isDirectory());
+        } finally {
+            unused.unlock();
+        }
+    }
+    
+    @Test
+    public void test06RateLimit() throws IOException {
+        final File baseDir = newBaseDir("rate");
+        for(int i=0; i<4; i++) {
+            final File dir = createRoot(baseDir, "jln"+i, 10, HOUR);
+            for(int j=0; j<10; j++) {
+                writeFile(new File(dir, "f"+j), 10);
+            }
+        }
+        final TempFileCacheReaper reaper = newReaper(baseDir, null);
+        reaper.setRate(200);
+        reaper.run();
+        System.err.println(reaper);
+        Assert.assertEquals(4, reaper.getRootsReaped());
+        // > 4*(1+1+13) operations at 200/s
+        Assert.assertTrue("too fast: "+reaper.getDuration()+"ms", reaper.getDuration() >= 200);
+    }
+    
+    @Test
+    public void test07Startup() throws InterruptedException {
+        // may have been started by another ClassLoader
+        final TempFileCacheReaper reaper = TempFileCache.getReaper();
+        if( null != reaper ) {
+            final long t0 = System.currentTimeMillis();
+            while( !reaper.isDone() && System.currentTimeMillis() - t0 < 10000 ) {
+                Thread.sleep(50);
+            }
+            System.err.println(reaper);
+            Assert.assertTrue(reaper.isDone());
+        }
+    }
+    
+    public static void main(String args[]) throws IOException {
+        String tstname = TestTempFileCacheReaper.class.getName();
+        org.junit.runner.JUnitCore.main(tstname);
+    }
+}
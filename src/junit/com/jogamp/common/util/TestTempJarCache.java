@@ -30,9 +30,13 @@ package com.jogamp.common.util;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.lang.reflect.Method;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
 import junit.framework.Assert;
@@ -44,6 +48,7 @@ import com.jogamp.common.GlueGenVersion;
 import com.jogamp.common.jvm.JNILibLoaderBase;
 import com.jogamp.common.os.NativeLibrary;
 import com.jogamp.common.os.Platform;
+import com.jogamp.common.util.cache.PersistentJarCache;
 import com.jogamp.common.util.cache.TempCacheReg;
 import com.jogamp.common.util.cache.TempFileCache;
 import com.jogamp.common.util.cache.TempJarCache;
@@ -153,6 +158,104 @@ public class TestTempJarCache {
         Assert.assertTrue(f.exists());
     }
     
+    @Test
+    public void testJarUtil01c() throws IOException {
+        JarFile jarFile = JarUtil.getJarFile(GlueGenVersion.class.getName(), this.getClass().getClassLoader());
+        File f = new File(fileCache.getTempDir(), IOUtil.getClassFileName(GlueGenVersion.class.getName()));
+        JarEntry entry = jarFile.getJarEntry(IOUtil.getClassFileName(GlueGenVersion.class.getName()));
+        Assert.assertNotNull(entry);
+        byte[] buf = new byte[1024];
+        Assert.assertTrue(JarUtil.isUpToDate(entry, f, buf));
+        
+        // unchanged files are not rewritten
+        final long lastModified = f.lastModified() - 10000;
+        Assert.assertTrue(f.setLastModified(lastModified));
+        final int num = JarUtil.extract(fileCache.getTempDir(), null, jarFile, false, true, true);
+        Assert.assertTrue(num > 0);
+        Assert.assertEquals(lastModified, f.lastModified());
+        
+        // modified files of same size are rewritten
+        RandomAccessFile raf = new RandomAccessFile(f, "rw");
+        try {
+            raf.seek(0);
+            raf.write(~raf.read());
+        } finally {
+            raf.close();
+        }
+        Assert.assertFalse(JarUtil.isUpToDate(entry, f, buf));
+        Assert.assertEquals(entry.getSize(), JarUtil.extract(jarFile, entry, f, buf));
+        Assert.assertTrue(JarUtil.isUpToDate(entry, f, buf));
+    }
+    
+    @Test
+    public void testPersistentJarCache01() throws IOException {
+        final ClassLoader cl = getClass().getClassLoader();
+        JarFile jarFile = JarUtil.getJarFile(GlueGenVersion.class.getName(), cl);
+        final String key = PersistentJarCache.getKey(null, jarFile);
+        Assert.assertEquals(64, key.length()); // SHA-256
+        Assert.assertEquals(key, PersistentJarCache.getKey(null, JarUtil.getJarFile(GlueGenVersion.class.getName(), cl)));
+        
+        URL jarUrlRoot = JarUtil.getJarURLDirname(JarUtil.getJarURL(TempJarCache.class.getName(), cl));
+        JarFile nativeJar = JarUtil.getJarFile(JarUtil.getJarURL(jarUrlRoot, "gluegen-rt-natives-"+Platform.getOSAndArch()+".jar"), cl);
+        Assert.assertFalse(key.equals(PersistentJarCache.getKey(null, nativeJar)));
+        
+        final File baseDir = new File(fileCache.getTempDir(), "persistent-base");
+        final PersistentJarCache cache1 = new PersistentJarCache(baseDir, null, jarFile);
+        Assert.assertEquals(key, cache1.getKey());
+        final File userDir = PersistentJarCache.getUserDirectory(baseDir);
+        Assert.assertEquals(userDir, cache1.getDirectory().getParentFile());
+        cache1.lock();
+        try {
+            Assert.assertTrue(cache1.getDirectory().isDirectory());
+            PersistentJarCache.validateUserDirectory(userDir);
+            JarUtil.extract(cache1.getDirectory(), null, jarFile, false, true, true);
+        } finally {
+            cache1.unlock();
+        }
+        final File f = new File(cache1.getDirectory(), IOUtil.getClassFileName(GlueGenVersion.class.getName()));
+        Assert.assertTrue(f.exists());
+        
+        // reused by a later instance w/o rewriting
+        final long lastModified = f.lastModified() - 10000;
+        Assert.assertTrue(f.setLastModified(lastModified));
+        final PersistentJarCache cache2 = new PersistentJarCache(baseDir, null, jarFile);
+        Assert.assertEquals(cache1.getDirectory(), cache2.getDirectory());
+        cache2.lock();
+        try {
+            JarUtil.extract(cache2.getDirectory(), null, jarFile, false, true, true);
+        } finally {
+            cache2.unlock();
+        }
+        Assert.assertEquals(lastModified, f.lastModified());
+        
+        // a reused file is validated by its content
+        final byte[] orig = new byte[(int)f.length()];
+        RandomAccessFile raf = new RandomAccessFile(f, "rw");
+        try {
+            raf.readFully(orig);
+            raf.seek(orig.length-1);
+            raf.write(~orig[orig.length-1]);
+        } finally {
+            raf.close();
+        }
+        Assert.assertTrue(f.setLastModified(lastModified));
+        cache2.lock();
+        try {
+            JarUtil.extract(cache2.getDirectory(), null, jarFile, false, true, true);
+        } finally {
+            cache2.unlock();
+        }
+        Assert.assertTrue(lastModified != f.lastModified());
+        final byte[] restored = new byte[(int)f.length()];
+        raf = new RandomAccessFile(f, "r");
+        try {
+            raf.readFully(restored);
+        } finally {
+            raf.close();
+        }
+        Assert.assertTrue(Arrays.equals(orig, restored));
+    }
+    
     @Test
     public void testTempJarCache01LoadAllTestManifestAndClass() throws IOException {
         // may already been initialized by other test
@@ -177,6 +280,13 @@ public class TestTempJarCache {
         f1 = new File(TempJarCache.findResource(IOUtil.getClassFileName(GlueGenVersion.class.getName())));
         Assert.assertTrue(f1.exists());
         Assert.assertEquals(f0, f1);
+        
+        // not extracted, but existing in the temp directory
+        final String otherName = "TestTempJarCache01.txt";
+        Assert.assertNull(TempJarCache.findResource(otherName));
+        f0 = new File(TempJarCache.getTempFileCache().getTempDir(), otherName);
+        Assert.assertTrue(f0.createNewFile());
+        Assert.assertEquals(f0.getAbsolutePath(), TempJarCache.findResource(otherName));
     }
     
     @Test
@@ -197,6 +307,12 @@ public class TestTempJarCache {
         Assert.assertEquals(libBaseName, NativeLibrary.isValidNativeLibraryName(libFullPath, true));
         File f = new File(libFullPath);
         Assert.assertTrue(f.exists());
+        
+        // not extracted, but existing in the temp directory
+        final String otherLibName = f.getName().replace(libBaseName, "TestTempJarCache02");
+        f = new File(TempJarCache.getTempFileCache().getTempDir(), otherLibName);
+        Assert.assertTrue(f.createNewFile());
+        Assert.assertEquals(f.getAbsolutePath(), TempJarCache.findLibrary(otherLibName));
     }
 
     @Test
@@ -213,6 +329,56 @@ public class TestTempJarCache {
         Assert.assertTrue(f.exists());
     }
     
+    @Test
+    public void testTempJarCache03bConcurrentLookup() throws Exception {
+        final String libBaseName = "gluegen-rt";        
+        final String resName = "META-INF/MANIFEST.MF";
+        final String missingLibName = "gluegen-rt-missing";
+        final ClassLoader cl = getClass().getClassLoader();
+        final URL jarUrlRoot = JarUtil.getJarURLDirname(JarUtil.getJarURL(TempJarCache.class.getName(), cl));
+        final URL nativeJarURL = JarUtil.getJarURL(jarUrlRoot, "gluegen-rt-natives-"+Platform.getOSAndArch()+".jar");
+        // fresh instance, not yet added
+        final JarFile jarFile = new JarFile(JarUtil.getJarFile(GlueGenVersion.class.getName(), cl).getName());
+        
+        final int threadNum = 8;
+        final AtomicInteger added = new AtomicInteger(0);
+        final Throwable[] errors = new Throwable[threadNum];
+        final Thread[] threads = new Thread[threadNum];
+        for(int i=0; i<threadNum; i++) {
+            final int idx = i;
+            threads[i] = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        // the same jar file is added only once
+                        if( TempJarCache.addAll(GlueGenVersion.class, jarFile) ) {
+                            added.incrementAndGet();
+                        }
+                        TempJarCache.addNativeLibs(TempJarCache.class, JarUtil.getJarFile(nativeJarURL, cl));
+                        for(int j=0; j<1000; j++) {
+                            Assert.assertNotNull(TempJarCache.findLibrary(libBaseName));
+                            Assert.assertNotNull(TempJarCache.findResource(resName));
+                            Assert.assertNull(TempJarCache.findLibrary(missingLibName));
+                            Assert.assertNull(TempJarCache.findResource(missingLibName));
+                        }
+                    } catch (Throwable t) {
+                        errors[idx] = t;
+                    }
+                } }, "TempJarCache-Lookup-"+i);
+        }
+        for(int i=0; i<threadNum; i++) {
+            threads[i].start();
+        }
+        for(int i=0; i<threadNum; i++) {
+            threads[i].join();
+            if( null != errors[i] ) {
+                throw new RuntimeException("Thread "+i+" failed", errors[i]);
+            }
+        }
+        Assert.assertEquals(1, added.get());
+        Assert.assertTrue(new File(TempJarCache.findResource(resName)).exists());
+        Assert.assertTrue(new File(TempJarCache.findLibrary(libBaseName)).exists());
+    }
+    
     @Test
     public void testTempJarCache04aSameClassLoader() throws IOException {        
         assertTempFileCachesIndividualInstances(true, TempJarCache.getTempFileCache(), TempJarCache.getTempFileCache());
@@ -0,0 +1,181 @@
+/**
+ * Copyright 2011 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.common.util.locks;
+
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestLockMetrics01 {
+
+    void testMetrics(LockFactory.ImplType implType, boolean fair) throws InterruptedException {
+        final String name = "TestLockMetrics01-"+implType+"-"+fair;
+        final RecursiveLock lock = LockFactory.createMeteredRecursiveLock(implType, fair, name);
+        final LockMetrics metrics = LockMetrics.get(lock);
+        Assert.assertNotNull(metrics);
+        Assert.assertEquals(name, metrics.getName());
+        Assert.assertTrue("Not registered", LockMetrics.getAll().contains(metrics));
+
+        // recursion is accounted once
+        lock.lock();
+        lock.lock();
+        Assert.assertEquals(2, lock.getHoldCount());
+        lock.unlock();
+        lock.unlock();
+        Assert.assertEquals(1, metrics.getAcquisitions());
+        Assert.assertEquals(0, metrics.getContendedAcquisitions());
+
+        final Thread holder = new Thread(new Runnable() {
+            public void run() {
+                lock.lock();
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        });
+        holder.start();
+        while( !lock.isLocked() ) {
+            Thread.sleep(1);
+        }
+        final Thread waiter = new Thread(new Runnable() {
+            public void run() {
+                lock.lock();
+                lock.unlock();
+            }
+        });
+        waiter.start();
+        while( holder.isAlive() && 0 == metrics.getQueueLength() ) {
+            Thread.sleep(1);
+        }
+        holder.join();
+        waiter.join();
+
+        System.err.println(metrics);
+        Assert.assertEquals(3, metrics.getAcquisitions());
+        Assert.assertEquals(1, metrics.getContendedAcquisitions());
+        Assert.assertTrue(metrics.getMaxWaitNanos() > 0);
+        Assert.assertTrue(metrics.getTotalWaitNanos() >= metrics.getMaxWaitNanos());
+        Assert.assertTrue("Max hold "+metrics.getMaxHoldNanos(), metrics.getMaxHoldNanos() >= 190000000L);
+        Assert.assertEquals(0, metrics.getQueueLength());
+        Assert.assertFalse(lock.isLocked());
+    }
+
+    @Test
+    public void testMetrics_Int01_Fair() throws InterruptedException {
+        testMetrics(LockFactory.ImplType.Int01, true);
+    }
+
+    @Test
+    public void testMetrics_Int01_Unfair() throws InterruptedException {
+        testMetrics(LockFactory.ImplType.Int01, false);
+    }
+
+    @Test
+    public void testMetrics_Java5_Unfair() throws InterruptedException {
+        testMetrics(LockFactory.ImplType.Java5, false);
+    }
+
+    @Test
+    public void testMetrics_Int02_Unfair() throws InterruptedException {
+        testMetrics(LockFactory.ImplType.Int02, false);
+    }
+
+    @Test
+    public void testMetrics_ReadWrite() throws InterruptedException {
+        final String name = "TestLockMetrics01-RW";
+        final RecursiveReadWriteLock rwl = LockFactory.createMeteredRecursiveReadWriteLock(false, name);
+        final LockMetrics readMetrics = LockMetrics.get(rwl.readLock());
+        final LockMetrics writeMetrics = LockMetrics.get(rwl.writeLock());
+        Assert.assertNotNull(readMetrics);
+        Assert.assertNotNull(writeMetrics);
+        Assert.assertEquals(name+".read", readMetrics.getName());
+        Assert.assertEquals(name+".write", writeMetrics.getName());
+
+        // recursion is accounted once
+        rwl.readLock().lock();
+        rwl.readLock().lock();
+        rwl.readLock().unlock();
+        rwl.readLock().unlock();
+        Assert.assertEquals(1, readMetrics.getAcquisitions());
+
+        final Thread writer = new Thread(new Runnable() {
+            public void run() {
+                rwl.writeLock().lock();
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                } finally {
+                    rwl.writeLock().unlock();
+                }
+            }
+        });
+        writer.start();
+        while( !rwl.writeLock().isLocked() ) {
+            Thread.sleep(1);
+        }
+        rwl.readLock().lock();
+        rwl.readLock().unlock();
+        writer.join();
+
+        System.err.println(readMetrics);
+        System.err.println(writeMetrics);
+        Assert.assertEquals(2, readMetrics.getAcquisitions());
+        Assert.assertEquals(1, readMetrics.getContendedAcquisitions());
+        Assert.assertTrue(readMetrics.getMaxWaitNanos() > 0);
+        Assert.assertEquals(1, writeMetrics.getAcquisitions());
+        Assert.assertEquals(0, writeMetrics.getContendedAcquisitions());
+        Assert.assertTrue("Max hold "+writeMetrics.getMaxHoldNanos(), writeMetrics.getMaxHoldNanos() >= 190000000L);
+    }
+
+    @Test
+    public void testDefaultName() {
+        final RecursiveLock lock = LockFactory.createMeteredRecursiveLock(LockFactory.ImplType.Int02, false, null);
+        final String name = LockMetrics.get(lock).getName();
+        if( Lock.DEBUG ) {
+            Assert.assertTrue(name, name.startsWith(TestLockMetrics01.class.getName()+".testDefaultName:"));
+        } else {
+            Assert.assertTrue(name, name.startsWith("RecursiveLockImpl02CAS@"));
+        }
+        if( !LockMetrics.ENABLED ) {
+            Assert.assertNull(LockMetrics.get(LockFactory.createRecursiveLock()));
+        }
+        LockMetrics.dump(System.err);
+    }
+
+    public static void main(String args[]) throws IOException {
+        String tstname = TestLockMetrics01.class.getName();
+        org.junit.runner.JUnitCore.main(tstname);
+    }
+}
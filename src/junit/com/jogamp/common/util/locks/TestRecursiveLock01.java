@@ -549,6 +549,140 @@ public class TestRecursiveLock01 {
         testLockedObjectImpl(t, fair, threadNum, loops, iloops, yieldMode);
     }
 
+    @Test
+    public void testLockedObjectThreading5x1000x10000N_Int02_Fair() throws InterruptedException {
+        LockFactory.ImplType t = LockFactory.ImplType.Int02;
+        boolean fair=true;
+        int threadNum=5; 
+        int loops=1000; 
+        int iloops=10000; 
+        YieldMode yieldMode=YieldMode.NONE;
+        
+        if( Platform.getCPUFamily() == Platform.CPUFamily.ARM ) {
+            threadNum=5; loops=5; iloops=10;
+        }
+        
+        testLockedObjectImpl(t, fair, threadNum, loops, iloops, yieldMode);
+    }
+
+    @Test
+    public void testLockedObjectThreading5x1000x10000N_Int02_Unfair() throws InterruptedException {
+        LockFactory.ImplType t = LockFactory.ImplType.Int02;
+        boolean fair=false;
+        int threadNum=5; 
+        int loops=1000; 
+        int iloops=10000; 
+        YieldMode yieldMode=YieldMode.NONE;
+        
+        if( Platform.getCPUFamily() == Platform.CPUFamily.ARM ) {
+            threadNum=5; loops=5; iloops=10;
+        }
+        
+        testLockedObjectImpl(t, fair, threadNum, loops, iloops, yieldMode);
+    }
+
+    @Test
+    public void testLockedObjectThreading25x100x100Y_Int02_Fair() throws InterruptedException {
+        LockFactory.ImplType t = LockFactory.ImplType.Int02;
+        boolean fair=true;
+        int threadNum=25; 
+        int loops=100; 
+        int iloops=100; 
+        YieldMode yieldMode=YieldMode.YIELD;
+        
+        if( Platform.getCPUFamily() == Platform.CPUFamily.ARM ) {
+            threadNum=5; loops=5; iloops=10;
+        }
+        
+        testLockedObjectImpl(t, fair, threadNum, loops, iloops, yieldMode);
+    }
+
+    @Test
+    public void testLockedObjectThreading25x100x100Y_Int02_Unfair() throws InterruptedException {
+        LockFactory.ImplType t = LockFactory.ImplType.Int02;
+        boolean fair=false;
+        int threadNum=25; 
+        int loops=100; 
+        int iloops=100; 
+        YieldMode yieldMode=YieldMode.YIELD;
+        
+        if( Platform.getCPUFamily() == Platform.CPUFamily.ARM ) {
+            threadNum=5; loops=5; iloops=10;
+        }
+        
+        testLockedObjectImpl(t, fair, threadNum, loops, iloops, yieldMode);
+    }
+
+    @Test
+    public void testLockedObjectThreading25x100x100N_Int02_Fair() throws InterruptedException {
+        LockFactory.ImplType t = LockFactory.ImplType.Int02;
+        boolean fair=true;
+        int threadNum=25; 
+        int loops=100; 
+        int iloops=100; 
+        YieldMode yieldMode=YieldMode.NONE;
+        
+        if( Platform.getCPUFamily() == Platform.CPUFamily.ARM ) {
+            threadNum=5; loops=5; iloops=10;
+        }
+        
+        testLockedObjectImpl(t, fair, threadNum, loops, iloops, yieldMode);
+    }
+
+    @Test
+    public void testLockedObjectThreading25x100x100N_Int02_Unfair() throws InterruptedException {
+        LockFactory.ImplType t = LockFactory.ImplType.Int02;
+        boolean fair=false;
+        int threadNum=25; 
+        int loops=100; 
+        int iloops=100; 
+        YieldMode yieldMode=YieldMode.NONE;
+        
+        if( Platform.getCPUFamily() == Platform.CPUFamily.ARM ) {
+            threadNum=5; loops=5; iloops=10;
+        }
+        
+        testLockedObjectImpl(t, fair, threadNum, loops, iloops, yieldMode);
+    }
+
+    @Test
+    public void testRecursionAndTimeout_Int02() throws InterruptedException {
+        final RecursiveLock lock = LockFactory.createRecursiveLock(LockFactory.ImplType.Int02, false);
+        lock.lock();
+        lock.lock();
+        Assert.assertEquals(2, lock.getHoldCount());
+        Assert.assertTrue(lock.isOwner());
+        Assert.assertEquals(Thread.currentThread(), lock.getOwner());
+
+        final boolean[] res = new boolean[] { true, true, false };
+        Thread t = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    res[0] = lock.tryLock(0);
+                    res[1] = lock.tryLock(100);
+                    res[2] = lock.isLockedByOtherThread() && 0 == lock.getHoldCount();
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+        t.start();
+        t.join();
+        Assert.assertFalse("tryLock(0) acquired foreign lock", res[0]);
+        Assert.assertFalse("tryLock(100) acquired foreign lock", res[1]);
+        Assert.assertTrue(res[2]);
+
+        lock.unlock();
+        Assert.assertTrue(lock.isLocked());
+        lock.unlock();
+        Assert.assertFalse(lock.isLocked());
+        Assert.assertNull(lock.getOwner());
+        try {
+            lock.unlock();
+            Assert.fail("unlock of unlocked lock");
+        } catch (RuntimeException e) { }
+    }
+
     static int atoi(String a) {
         int i=0;
         try {
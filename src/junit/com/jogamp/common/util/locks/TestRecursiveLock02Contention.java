@@ -0,0 +1,205 @@
+/**
+ * Copyright 2011 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ * 
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.common.util.locks;
+
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.jogamp.common.os.Platform;
+
+/**
+ * Measures the lock throughput of all {@link LockFactory.ImplType}s
+ * with 2 to 64 threads contending for one lock, and validates the
+ * {@link Lock#tryLock(long)} timeout semantics of the fair implementations.
+ */
+public class TestRecursiveLock02Contention {
+
+    static final int[] THREADS = { 2, 4, 8, 16, 32, 64 };
+    static final int TOTAL_LOCKS = Platform.getCPUFamily() == Platform.CPUFamily.ARM ? 6400 : 64000;
+
+    static class Counter {
+        long value; // guarded by lock
+    }
+
+    /** @return locks per ms */
+    static float contend(final RecursiveLock lock, int threadNum) throws InterruptedException {
+        final int loops = TOTAL_LOCKS / threadNum;
+        final Counter counter = new Counter();
+        final Thread[] threads = new Thread[threadNum];
+        for(int i=0; i<threadNum; i++) {
+            threads[i] = new Thread(new Runnable() {
+                public void run() {
+                    for(int j=0; j<loops; j++) {
+                        lock.lock();
+                        try {
+                            lock.lock(); // recursive
+                            counter.value++;
+                            lock.unlock();
+                        } finally {
+                            lock.unlock();
+                        }
+                    }
+                }
+            }, "Contender-"+i+"_of_"+threadNum);
+        }
+        final long t0 = System.nanoTime();
+        for(int i=0; i<threadNum; i++) {
+            threads[i].start();
+        }
+        for(int i=0; i<threadNum; i++) {
+            threads[i].join();
+        }
+        final long dt = System.nanoTime() - t0;
+        lock.lock();
+        try {
+            Assert.assertEquals(loops * threadNum, counter.value);
+        } finally {
+            lock.unlock();
+        }
+        Assert.assertFalse(lock.isLocked());
+        Assert.assertEquals(0, lock.getQueueLength());
+        return ( loops * threadNum * 1000000f ) / dt;
+    }
+
+    void benchmark(LockFactory.ImplType implType, boolean fair) throws InterruptedException {
+        final StringBuilder sb = new StringBuilder();
+        for(int i=0; i<THREADS.length; i++) {
+            final float tp = contend(LockFactory.createRecursiveLock(implType, fair), THREADS[i]);
+            sb.append(String.format(" %2d: %8.1f", THREADS[i], tp));
+        }
+        System.err.println("---- TestRecursiveLock02Contention: i "+implType+", "+(fair ? "fair  " : "unfair")+", locks/ms, threads"+sb);
+    }
+
+    @Test
+    public void testContention_Int01_Fair() throws InterruptedException {
+        benchmark(LockFactory.ImplType.Int01, true);
+    }
+
+    @Test
+    public void testContention_Int01_Unfair() throws InterruptedException {
+        benchmark(LockFactory.ImplType.Int01, false);
+    }
+
+    @Test
+    public void testContention_Java5_Fair() throws InterruptedException {
+        benchmark(LockFactory.ImplType.Java5, true);
+    }
+
+    @Test
+    public void testContention_Java5_Unfair() throws InterruptedException {
+        benchmark(LockFactory.ImplType.Java5, false);
+    }
+
+    @Test
+    public void testContention_Int02_Fair() throws InterruptedException {
+        benchmark(LockFactory.ImplType.Int02, true);
+    }
+
+    @Test
+    public void testContention_Int02_Unfair() throws InterruptedException {
+        benchmark(LockFactory.ImplType.Int02, false);
+    }
+
+    void tryLockTimeout(LockFactory.ImplType implType) throws InterruptedException {
+        final RecursiveLock lock = LockFactory.createRecursiveLock(implType, true);
+        lock.lock();
+        final long[] waited = new long[] { -1 };
+        final boolean[] acquired = new boolean[] { true, false };
+        final Thread waiter = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    final long t0 = System.currentTimeMillis();
+                    acquired[0] = lock.tryLock(200);
+                    waited[0] = System.currentTimeMillis() - t0;
+                    // acquired after the owner released it
+                    acquired[1] = lock.tryLock(Lock.TIMEOUT);
+                    lock.unlock();
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+        waiter.start();
+        while( 0 == lock.getQueueLength() ) {
+            Thread.sleep(1);
+        }
+        Thread.sleep(400);
+        Assert.assertFalse("Acquired owned lock", acquired[0]);
+        Assert.assertTrue("Returned after "+waited[0]+" ms", waited[0] >= 190);
+        lock.unlock();
+        waiter.join();
+        Assert.assertTrue("Not acquired after unlock", acquired[1]);
+        Assert.assertFalse(lock.isLocked());
+        Assert.assertEquals(0, lock.getQueueLength());
+    }
+
+    @Test
+    public void testTryLockTimeout_Int01_Fair() throws InterruptedException {
+        tryLockTimeout(LockFactory.ImplType.Int01);
+    }
+
+    @Test
+    public void testTryLockTimeout_Int02_Fair() throws InterruptedException {
+        tryLockTimeout(LockFactory.ImplType.Int02);
+    }
+
+    @Test
+    public void testInterrupt_Int01_Fair() throws InterruptedException {
+        final RecursiveLock lock = LockFactory.createRecursiveLock(LockFactory.ImplType.Int01, true);
+        lock.lock();
+        final boolean[] interrupted = new boolean[] { false };
+        final Thread waiter = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    lock.tryLock(Lock.TIMEOUT);
+                } catch (InterruptedException e) {
+                    interrupted[0] = true;
+                }
+            }
+        });
+        waiter.start();
+        while( 0 == lock.getQueueLength() ) {
+            Thread.sleep(1);
+        }
+        waiter.interrupt();
+        waiter.join();
+        Assert.assertTrue(interrupted[0]);
+        Assert.assertEquals(0, lock.getQueueLength());
+        Assert.assertEquals(1, lock.getHoldCount());
+        lock.unlock();
+        Assert.assertFalse(lock.isLocked());
+    }
+
+    public static void main(String args[]) throws IOException {
+        String tstname = TestRecursiveLock02Contention.class.getName();
+        org.junit.runner.JUnitCore.main(tstname);
+    }
+}
@@ -0,0 +1,216 @@
+/**
+ * Copyright 2011 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.common.util.locks;
+
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestRecursiveReadWriteLock01 {
+
+    static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Test
+    public void testSharedReaders() throws InterruptedException {
+        final RecursiveReadWriteLock rwl = LockFactory.createRecursiveReadWriteLock(false);
+        final int[] maxConcurrent = new int[] { 0 };
+        final int[] concurrent = new int[] { 0 };
+        final Thread[] readers = new Thread[4];
+        for(int i=0; i<readers.length; i++) {
+            readers[i] = new Thread(new Runnable() {
+                public void run() {
+                    rwl.readLock().lock();
+                    try {
+                        synchronized(concurrent) {
+                            concurrent[0]++;
+                            maxConcurrent[0] = Math.max(maxConcurrent[0], concurrent[0]);
+                        }
+                        sleep(100);
+                        synchronized(concurrent) {
+                            concurrent[0]--;
+                        }
+                    } finally {
+                        rwl.readLock().unlock();
+                    }
+                }
+            });
+            readers[i].start();
+        }
+        for(int i=0; i<readers.length; i++) {
+            readers[i].join();
+        }
+        Assert.assertTrue("Readers serialized, max concurrent "+maxConcurrent[0], maxConcurrent[0] > 1);
+        Assert.assertFalse(rwl.readLock().isLocked());
+    }
+
+    @Test
+    public void testExclusiveWriter() throws InterruptedException {
+        final RecursiveReadWriteLock rwl = LockFactory.createRecursiveReadWriteLock(true);
+        final RecursiveLock wl = rwl.writeLock();
+        wl.lock();
+        wl.lock();
+        Assert.assertEquals(2, wl.getHoldCount());
+        Assert.assertEquals(Thread.currentThread(), wl.getOwner());
+
+        // downgrade
+        rwl.readLock().lock();
+        Assert.assertEquals(1, rwl.readLock().getHoldCount());
+        rwl.readLock().unlock();
+
+        final boolean[] res = new boolean[] { true, true };
+        Thread t = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    res[0] = rwl.readLock().tryLock(100);
+                    res[1] = wl.tryLock(0);
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+        t.start();
+        t.join();
+        Assert.assertFalse("Read lock acquired while write locked", res[0]);
+        Assert.assertFalse("Write lock acquired by 2nd thread", res[1]);
+
+        wl.unlock();
+        Assert.assertTrue(wl.isOwner());
+        wl.unlock();
+        Assert.assertFalse(wl.isLocked());
+        Assert.assertNull(wl.getOwner());
+    }
+
+    @Test
+    public void testNoUpgrade() {
+        final RecursiveReadWriteLock rwl = LockFactory.createRecursiveReadWriteLock(false);
+        rwl.readLock().lock();
+        try {
+            rwl.writeLock().lock();
+            Assert.fail("Upgrade of read lock");
+        } catch (RuntimeException e) {
+        } finally {
+            rwl.readLock().unlock();
+        }
+        try {
+            rwl.readLock().unlock();
+            Assert.fail("Unlock of not held read lock");
+        } catch (RuntimeException e) { }
+        rwl.writeLock().lock();
+        rwl.writeLock().unlock();
+    }
+
+    static class Point {
+        volatile int x, y;
+    }
+
+    void testStamped(LockFactory.ImplType implType) throws InterruptedException {
+        final RecursiveStampedLock lock = LockFactory.createRecursiveStampedLock(implType, false);
+        final Point p = new Point();
+
+        long stamp = lock.tryOptimisticRead();
+        Assert.assertTrue(0 != stamp);
+        Assert.assertTrue(lock.validate(stamp));
+        Assert.assertFalse(lock.validate(0));
+
+        lock.lock();
+        final long ownerStamp = lock.tryOptimisticRead();
+        Assert.assertTrue(lock.validate(ownerStamp));
+        Assert.assertFalse("Stamp valid after lock", lock.validate(stamp));
+        lock.lock();
+        lock.unlock();
+        Assert.assertTrue("Owner stamp invalid while still locked", lock.validate(ownerStamp));
+
+        final long[] foreign = new long[] { -1 };
+        final boolean[] foreignValid = new boolean[] { true };
+        Thread t = new Thread(new Runnable() {
+            public void run() {
+                foreign[0] = lock.tryOptimisticRead();
+                foreignValid[0] = lock.validate(ownerStamp);
+            }
+        });
+        t.start();
+        t.join();
+        Assert.assertEquals("Stamp issued while locked by other thread", 0, foreign[0]);
+        Assert.assertFalse("Owner stamp valid for other thread", foreignValid[0]);
+        lock.unlock();
+        Assert.assertFalse(lock.validate(ownerStamp));
+
+        // consistency of optimistic reads, the writer keeps x == y
+        final int loops = 20000;
+        final Thread writer = new Thread(new Runnable() {
+            public void run() {
+                for(int i=1; i<=loops; i++) {
+                    lock.lock();
+                    try {
+                        p.x = i;
+                        p.y = i;
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            }
+        });
+        writer.start();
+        int validated = 0;
+        while(writer.isAlive()) {
+            final long s = lock.tryOptimisticRead();
+            final int x = p.x, y = p.y;
+            if(lock.validate(s)) {
+                Assert.assertEquals(x, y);
+                validated++;
+            }
+        }
+        writer.join();
+        Assert.assertEquals(loops, p.x);
+        Assert.assertEquals(loops, p.y);
+        System.err.println("TestRecursiveReadWriteLock01.testStamped "+implType+": validated "+validated+" optimistic reads");
+    }
+
+    @Test
+    public void testStamped_Int01() throws InterruptedException {
+        testStamped(LockFactory.ImplType.Int01);
+    }
+
+    @Test
+    public void testStamped_Int02() throws InterruptedException {
+        testStamped(LockFactory.ImplType.Int02);
+    }
+
+    public static void main(String args[]) throws IOException {
+        String tstname = TestRecursiveReadWriteLock01.class.getName();
+        org.junit.runner.JUnitCore.main(tstname);
+    }
+}
@@ -0,0 +1,109 @@
+/**
+ * Copyright 2011 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ * 
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.gluegen;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Compares the decisions of {@link SymbolPatternMatcher}
+ * with testing each pattern one by one.
+ */
+public class TestSymbolPatternMatcher {
+
+    static final String[] regexes = {
+        "glBegin", "glEnd",                                    // literals
+        "glVertex.*", "glVertexAttrib.*", "wgl.*", ".*",      // prefixes, '.*' matches all
+        "gl.*ARB", "glColor[34][fd]v?", "(CL|cl)_.*_(KHR|EXT)", // regular expressions
+        "(gl)Foo\\1", "\\QglQuoted.*\\E",                      // back reference and quotation
+        "MyStruct field", "Other.*"                            // IgnoreField style
+    };
+
+    static final String[] symbols = {
+        "glBegin", "glBeginX", "glEnd", "glVertex3f", "glVertex", "glVertexAttrib1f",
+        "wglGetProcAddress", "glTexImageARB", "glColor3f", "glColor4dv", "glColor2f",
+        "CL_DEVICE_KHR", "cl_platform_EXT", "glFoogl", "glFoogx", "glQuoted.*", "glQuotedX",
+        "MyStruct field", "MyStruct other", "OtherStruct x", "", "glVertex\nx"
+    };
+
+    static boolean naiveMatches(List<Pattern> patterns, String symbol) {
+        for (Pattern p : patterns) {
+            if (p.matcher(symbol).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void testSameDecisions() {
+        // growing leading windows of the patterns, leaving out the catch-all '.*'
+        for (int n = 0; n <= regexes.length; n++) {
+            List<Pattern> patterns = new ArrayList<Pattern>();
+            for (int i = 0; i < n; i++) {
+                if (!".*".equals(regexes[i])) {
+                    patterns.add(Pattern.compile(regexes[i]));
+                }
+            }
+            SymbolPatternMatcher matcher = new SymbolPatternMatcher(patterns);
+            Assert.assertEquals(patterns.isEmpty(), matcher.isEmpty());
+            for (String s : symbols) {
+                Assert.assertEquals(patterns + " vs '" + s + "'", naiveMatches(patterns, s), matcher.matches(s));
+            }
+        }
+        List<Pattern> all = new ArrayList<Pattern>();
+        for (String r : regexes) {
+            all.add(Pattern.compile(r));
+        }
+        all.add(Pattern.compile("gLvErTeX.*", Pattern.CASE_INSENSITIVE));
+        SymbolPatternMatcher matcher = new SymbolPatternMatcher(all);
+        for (String s : symbols) {
+            Assert.assertEquals(s, naiveMatches(all, s), matcher.matches(s));
+        }
+    }
+
+    @Test
+    public void testPrefixLineTerminator() {
+        List<Pattern> patterns = new ArrayList<Pattern>();
+        patterns.add(Pattern.compile("gl.*"));
+        SymbolPatternMatcher matcher = new SymbolPatternMatcher(patterns);
+        Assert.assertTrue(matcher.matches("glFoo"));
+        Assert.assertFalse(matcher.matches("gl\nFoo"));
+        Assert.assertFalse(matcher.matches("g"));
+    }
+
+    public static void main(String args[]) throws IOException {
+        org.junit.runner.JUnitCore.main(TestSymbolPatternMatcher.class.getName());
+    }
+}
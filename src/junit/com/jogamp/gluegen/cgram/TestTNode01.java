@@ -0,0 +1,163 @@
+/**
+ * Copyright 2011 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ * 
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.gluegen.cgram;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+import antlr.RecognitionException;
+import antlr.TokenStreamException;
+import antlr.collections.AST;
+
+import com.jogamp.gluegen.pcpp.PCPP;
+import com.jogamp.gluegen.test.junit.generation.BuildEnvironment;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static java.lang.System.*;
+
+/**
+ * Parses the preprocessed make/stub_includes headers and test1.h repeatedly,
+ * reporting the parse time and the heap held by the resulting {@link TNode} tree.
+ */
+public class TestTNode01 {
+
+    static final int COPIES = 200;
+
+    static byte[] source;
+
+    @BeforeClass
+    public static void init() throws IOException {
+        final String root = BuildEnvironment.gluegenRoot;
+        final List<String> includePaths = new ArrayList<String>();
+        includePaths.add(root + "/src/junit/com/jogamp/gluegen/test/junit/generation");
+        includePaths.add(root + "/make/stub_includes/gluegen");
+        includePaths.add(root + "/make/stub_includes/unix");
+
+        final PCPP pp = new PCPP(includePaths, false, false);
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        pp.setOut(bytes);
+        pp.addDefine("__GLUEGEN__", "2");
+        final Reader reader = new FileReader(includePaths.get(0) + "/test1.h");
+        try {
+            pp.run(reader, "test1.h");
+        } finally {
+            reader.close();
+        }
+        final String text = bytes.toString();
+
+        final StringBuilder sb = new StringBuilder(text.length() * COPIES);
+        for (int i = 0; i < COPIES; i++) {
+            sb.append(text);
+        }
+        source = sb.toString().getBytes();
+    }
+
+    static TNode parse() throws RecognitionException, TokenStreamException {
+        final GnuCLexer lexer = new GnuCLexer(new ByteArrayInputStream(source));
+        lexer.setTokenObjectClass(CToken.class.getName());
+        lexer.initialize();
+        final GnuCParser parser = new GnuCParser(lexer);
+        parser.setASTNodeClass(TNode.class.getName());
+        TNode.setTokenVocabulary(GNUCTokenTypes.class.getName());
+        parser.translationUnit();
+        return (TNode) parser.getAST();
+    }
+
+    static long usedMemory() {
+        final Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            rt.gc();
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    static int countNodes(AST t) {
+        int n = 0;
+        for (; t != null; t = t.getNextSibling()) {
+            n += 1 + countNodes(t.getFirstChild());
+        }
+        return n;
+    }
+
+    static int countAttributeTables(AST t) {
+        int n = 0;
+        for (; t != null; t = t.getNextSibling()) {
+            n += (null != ((TNode) t).attributes ? 1 : 0) + countAttributeTables(t.getFirstChild());
+        }
+        return n;
+    }
+
+    @Test
+    public void testTokenAttributes() throws Exception {
+        final TNode tree = parse();
+        Assert.assertEquals("nodes with attribute table", 0, countAttributeTables(tree));
+
+        final TNode first = (TNode) tree.getFirstChild();
+        Assert.assertNotNull(first.getAttribute("source"));
+        Assert.assertTrue(first.getAttribute("tokenNumber") instanceof Integer);
+        Assert.assertNull(first.getAttribute("scopeName"));
+
+        first.setAttribute("tokenNumber", new Integer(-1));
+        Assert.assertEquals(new Integer(-1), first.getAttribute("tokenNumber"));
+        Assert.assertEquals(first.getAttribute("source"), first.getAttributesTable().get("source"));
+
+        final TNode copy = first.deepCopy();
+        Assert.assertEquals(new Integer(-1), copy.getAttribute("tokenNumber"));
+        Assert.assertEquals(first.getAttribute("source"), copy.getAttribute("source"));
+    }
+
+    @Test
+    public void testParseFootprint() throws Exception {
+        parse(); // warm up
+
+        final long t0 = System.nanoTime();
+        final long m0 = usedMemory();
+        TNode tree = parse();
+        final long t1 = System.nanoTime();
+        final long m1 = usedMemory();
+        final int nodes = countNodes(tree);
+        Assert.assertTrue(nodes > 0);
+
+        out.println("TNode01: " + source.length + " bytes, " + nodes + " nodes, parsed in " + (t1 - t0) / 1000000 + " ms, heap held " +
+                    (m1 - m0) / 1024 + " kB, " + (m1 - m0) / nodes + " bytes/node");
+        tree = null;
+    }
+
+    public static void main(String args[]) throws IOException {
+        org.junit.runner.JUnitCore.main(TestTNode01.class.getName());
+    }
+}
@@ -0,0 +1,158 @@
+/**
+ * Copyright 2011 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ * 
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.gluegen.cgram.types;
+
+import java.io.IOException;
+
+import com.jogamp.common.os.MachineDescription;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import static java.lang.System.*;
+
+/**
+ * Lays out a large nested struct and queries all field offsets and sizes
+ * for every {@link MachineDescription.StaticConfig}, like the struct emission does.
+ */
+public class TestSizeThunk01 {
+
+    static final int FIELDS = 4000;
+
+    static CompoundType createStruct() {
+        // struct { char c; <FIELDS-1 times> int32_t i; double d; struct { int32_t i; void* p; } s; ... }
+        IntType int8 = new IntType("char", SizeThunk.INT8, false, 0);
+        IntType int32 = new IntType("int32_t", SizeThunk.INT32, false, 0);
+        DoubleType dbl = new DoubleType("double", SizeThunk.DOUBLE, 0);
+        PointerType ptr = new PointerType(SizeThunk.POINTER, new VoidType(0), 0);
+
+        CompoundType inner = CompoundType.create("Inner", null, CompoundTypeKind.STRUCT, 0);
+        inner.addField(new Field("i", int32, null));
+        inner.addField(new Field("p", ptr, null));
+
+        CompoundType outer = CompoundType.create("Outer", null, CompoundTypeKind.STRUCT, 0);
+        for (int i = 0; i < FIELDS; i++) {
+            switch (i % 4) {
+                case 0:  outer.addField(new Field("c" + i, int8, null)); break;
+                case 1:  outer.addField(new Field("i" + i, int32, null)); break;
+                case 2:  outer.addField(new Field("d" + i, dbl, null)); break;
+                default: outer.addField(new Field("s" + i, inner, null)); break;
+            }
+        }
+        StructLayout.layout(0, outer);
+        return outer;
+    }
+
+    /** Straightforward layout of {@link #createStruct()} */
+    static long[] expectedOffsets(MachineDescription md, long[] size) {
+        long ptrSize = md.pointerSizeInBytes();
+        long innerAlign = Math.max(md.int32AlignmentInBytes(), md.pointerAlignmentInBytes());
+        long innerSize = align(align(md.int32SizeInBytes(), md.pointerAlignmentInBytes()) + ptrSize, innerAlign);
+        long[] res = new long[FIELDS];
+        long off = 0;
+        long maxAlign = 1;
+        for (int i = 0; i < FIELDS; i++) {
+            long sz, al;
+            switch (i % 4) {
+                case 0:  sz = md.int8SizeInBytes();   al = md.int8AlignmentInBytes(); break;
+                case 1:  sz = md.int32SizeInBytes();  al = md.int32AlignmentInBytes(); break;
+                case 2:  sz = md.doubleSizeInBytes(); al = md.doubleAlignmentInBytes(); break;
+                default: sz = innerSize;              al = innerAlign; break;
+            }
+            off = align(off, al);
+            res[i] = off;
+            off += sz;
+            maxAlign = Math.max(maxAlign, al);
+        }
+        size[0] = align(off, maxAlign);
+        return res;
+    }
+
+    static long align(long off, long alignment) {
+        long rem = off & (alignment - 1);
+        return rem > 0 ? off + alignment - rem : off;
+    }
+
+    @Test
+    public void testLayoutAllTargets() {
+        long t0 = System.nanoTime();
+        CompoundType outer = createStruct();
+        MachineDescription.StaticConfig[] configs = MachineDescription.StaticConfig.values();
+        long[][] offsets = new long[configs.length][FIELDS];
+        long[] sizes = new long[configs.length];
+        // field by field for all targets, as JavaEmitter.generateOffsetAndSizeArrays() does
+        for (int f = 0; f < FIELDS; f++) {
+            Field field = outer.getField(f);
+            for (int i = 0; i < configs.length; i++) {
+                offsets[i][f] = field.getOffset(configs[i].md);
+            }
+        }
+        for (int i = 0; i < configs.length; i++) {
+            sizes[i] = outer.getSize(configs[i].md);
+        }
+        long t1 = System.nanoTime();
+        out.println("Layout of " + FIELDS + " fields for " + configs.length + " targets: " + (t1 - t0) / 1000000 + " ms");
+
+        for (int i = 0; i < configs.length; i++) {
+            long[] size = new long[1];
+            long[] expected = expectedOffsets(configs[i].md, size);
+            Assert.assertArrayEquals(configs[i].name(), expected, offsets[i]);
+            Assert.assertEquals(configs[i].name(), size[0], sizes[i]);
+        }
+    }
+
+    @Test
+    public void testConcurrentQueries() throws InterruptedException {
+        final CompoundType outer = createStruct();
+        final MachineDescription.StaticConfig[] configs = MachineDescription.StaticConfig.values();
+        final long[][] offsets = new long[configs.length][FIELDS];
+        Thread[] threads = new Thread[configs.length];
+        for (int i = 0; i < configs.length; i++) {
+            final int idx = i;
+            threads[i] = new Thread() {
+                public void run() {
+                    for (int f = 0; f < FIELDS; f++) {
+                        offsets[idx][f] = outer.getField(f).getOffset(configs[idx].md);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+        }
+        for (int i = 0; i < configs.length; i++) {
+            Assert.assertArrayEquals(configs[i].name(), expectedOffsets(configs[i].md, new long[1]), offsets[i]);
+        }
+    }
+
+    public static void main(String args[]) throws IOException {
+        org.junit.runner.JUnitCore.main(TestSizeThunk01.class.getName());
+    }
+}
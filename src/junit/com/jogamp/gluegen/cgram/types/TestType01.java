@@ -0,0 +1,62 @@
+/**
+ * Copyright 2011 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ * 
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.gluegen.cgram.types;
+
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Verifies the cached {@link Type#hashCode()} follows renames by typedefs.
+ */
+public class TestType01 {
+
+    @Test
+    public void testHashCodeAfterSetName() {
+        IntType t = new IntType("int", SizeThunk.INT32, false, 0);
+        Assert.assertEquals("int".hashCode(), t.hashCode());
+
+        IntType c = new IntType("int", SizeThunk.INT32, false, CVAttributes.CONST);
+        Assert.assertEquals(("int" + CVAttributes.CONST).hashCode(), c.hashCode());
+
+        PointerType p = new PointerType(SizeThunk.POINTER, t, 0);
+        Assert.assertEquals(t.hashCode(), p.hashCode());
+
+        IntType td = (IntType) t.clone();
+        td.setName("GLint");
+        Assert.assertEquals("GLint".hashCode(), td.hashCode());
+        Assert.assertEquals("int".hashCode(), t.hashCode());
+        Assert.assertEquals(td.hashCode(), new PointerType(SizeThunk.POINTER, td, 0).hashCode());
+    }
+
+    public static void main(String args[]) throws IOException {
+        org.junit.runner.JUnitCore.main(TestType01.class.getName());
+    }
+}
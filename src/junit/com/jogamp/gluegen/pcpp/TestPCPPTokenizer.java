@@ -0,0 +1,188 @@
+/**
+ * Copyright 2011 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ * 
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.gluegen.pcpp;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StreamTokenizer;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.jogamp.gluegen.test.junit.generation.BuildEnvironment;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Verifies {@link PCPPTokenizer} produces the same tokens as the
+ * formerly used {@link StreamTokenizer} on top of a {@link ConcatenatingReader}.
+ */
+public class TestPCPPTokenizer {
+
+    static final String tricky =
+        "#define FOO(a,b) ((a)+(b))\n" +
+        "#define BAR (1 << 3) /* multi\n line\r\n comment **/ x\n" +
+        "int a-b.c = 'x' + \"str\\n\\t\\101\\7777\\q\" + \"unterminated\n" +
+        "// line comment\r" +
+        "a / b //\n" +
+        "cont\\\n" +
+        "inued \\\r\n" +
+        "\u00e4\u00f6\u20ac_word\t\u0001\u007f ~ @ #\r\n" +
+        "/ last /";
+
+    static List<String> streamTokens(Reader reader, boolean parenIsWordChar) throws IOException {
+        StreamTokenizer tok = new StreamTokenizer(new ConcatenatingReader(new BufferedReader(reader)));
+        tok.resetSyntax();
+        tok.wordChars('a', 'z');
+        tok.wordChars('A', 'Z');
+        tok.wordChars('0', '9');
+        tok.wordChars('_', '_');
+        tok.wordChars('-', '.');
+        tok.wordChars(128, 255);
+        tok.whitespaceChars(0, ' ');
+        tok.quoteChar('"');
+        tok.quoteChar('\'');
+        tok.eolIsSignificant(true);
+        tok.slashSlashComments(true);
+        tok.slashStarComments(true);
+        if (parenIsWordChar) {
+            tok.wordChars('(', '(');
+        }
+        List<String> res = new ArrayList<String>();
+        int t;
+        int i = 0;
+        do {
+            t = tok.nextToken();
+            res.add(t + " " + tok.sval + " " + tok.lineno());
+            if (++i % 7 == 0) {
+                tok.pushBack();
+                t = tok.nextToken();
+                res.add(t + " " + tok.sval + " " + tok.lineno());
+            }
+        } while (t != StreamTokenizer.TT_EOF);
+        return res;
+    }
+
+    static List<String> pcppTokens(Reader reader, boolean parenIsWordChar) throws IOException {
+        PCPPTokenizer tok = new PCPPTokenizer(reader, new PCPPTokenizer.WordTable());
+        tok.setParenIsWordChar(parenIsWordChar);
+        List<String> res = new ArrayList<String>();
+        int t;
+        int i = 0;
+        do {
+            t = tok.nextToken();
+            res.add(t + " " + tok.sval + " " + tok.lineno());
+            if (++i % 7 == 0) {
+                tok.pushBack();
+                t = tok.nextToken();
+                res.add(t + " " + tok.sval + " " + tok.lineno());
+            }
+        } while (t != PCPPTokenizer.TT_EOF);
+        return res;
+    }
+
+    static void assertSameTokens(String name, String text) throws IOException {
+        for (int p = 0; p < 2; p++) {
+            List<String> expected = streamTokens(new StringReader(text), p == 1);
+            List<String> actual = pcppTokens(new StringReader(text), p == 1);
+            Assert.assertEquals(name, expected, actual);
+        }
+    }
+
+    static String readFile(File f) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        Reader r = new FileReader(f);
+        try {
+            char[] buf = new char[4096];
+            int n;
+            while ((n = r.read(buf)) >= 0) {
+                sb.append(buf, 0, n);
+            }
+        } finally {
+            r.close();
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void testTrickyInput() throws IOException {
+        assertSameTokens("tricky", tricky);
+        assertSameTokens("empty", "");
+        assertSameTokens("backslash at EOF", "abc \\");
+        assertSameTokens("slash at EOF", "abc /");
+        assertSameTokens("quote at EOF", "\"abc\\");
+        assertSameTokens("comment at EOF", "abc /* def");
+        // every prefix, cutting tokens at all positions
+        for (int i = 0; i < tricky.length(); i++) {
+            assertSameTokens("prefix " + i, tricky.substring(0, i));
+        }
+    }
+
+    @Test
+    public void testHeaders() throws IOException {
+        String root = BuildEnvironment.gluegenRoot;
+        List<File> files = new ArrayList<File>();
+        files.add(new File(root, "src/junit/com/jogamp/gluegen/test/junit/generation/test1.h"));
+        files.add(new File(root, "src/junit/com/jogamp/gluegen/test/junit/generation/pcpptest.h"));
+        File[] stubs = new File(root, "make/stub_includes/gluegen").listFiles();
+        for (int i = 0; i < stubs.length; i++) {
+            files.add(stubs[i]);
+        }
+        for (File f : files) {
+            assertSameTokens(f.getPath(), readFile(f));
+        }
+    }
+
+    @Test
+    public void testWordTable() {
+        PCPPTokenizer.WordTable words = new PCPPTokenizer.WordTable();
+        char[] chars = "glBegin glEnd glBegin".toCharArray();
+        String a = words.intern(chars, 0, 7);
+        String b = words.intern(chars, 8, 5);
+        String c = words.intern(chars, 14, 7);
+        Assert.assertEquals("glBegin", a);
+        Assert.assertEquals("glEnd", b);
+        Assert.assertSame(a, c);
+        Assert.assertEquals(2, words.size());
+        for (int i = 0; i < 5000; i++) {
+            char[] w = ("w" + i).toCharArray();
+            Assert.assertEquals("w" + i, words.intern(w, 0, w.length));
+        }
+        Assert.assertEquals(5002, words.size());
+        Assert.assertSame(a, words.intern(chars, 14, 7));
+    }
+
+    public static void main(String args[]) throws IOException {
+        org.junit.runner.JUnitCore.main(TestPCPPTokenizer.class.getName());
+    }
+}
@@ -534,8 +534,52 @@ public class BaseClass {
 
           i = binding.intArrayRead(iarray, 0, 3);
           Assert.assertTrue("Wrong result: "+i, 6==i);
+
+          // int intArrayCopy(int[], int, int[], int, int), copied back into dest
+          {
+              int[] src = new int[Bindingtest1.ARRAY_SIZE];
+              int[] dest = new int[Bindingtest1.ARRAY_SIZE+4];
+              int s = 0;
+              for(int j=0; j<Bindingtest1.ARRAY_SIZE; j++) {
+                  src[j] = j+1;
+                  s += j+1;
+              }
+              dest[Bindingtest1.ARRAY_SIZE+2] = -1;
+              dest[Bindingtest1.ARRAY_SIZE+3] = -2;
+              i = binding.intArrayCopy(dest, 2, src, 0, Bindingtest1.ARRAY_SIZE);
+              Assert.assertTrue("Wrong result: "+i, s==i);
+              Assert.assertTrue("Wrong result: "+dest[0]+", "+dest[1], 0==dest[0] && 0==dest[1]);
+              for(int j=0; j<Bindingtest1.ARRAY_SIZE; j++) {
+                  Assert.assertTrue("Wrong result: s:"+src[j]+" d: "+dest[j+2], src[j]==dest[j+2]);
+              }
+              Assert.assertTrue("Wrong result: "+dest[Bindingtest1.ARRAY_SIZE+2]+", "+dest[Bindingtest1.ARRAY_SIZE+3],
+                                -1==dest[Bindingtest1.ARRAY_SIZE+2] && -2==dest[Bindingtest1.ARRAY_SIZE+3]);
+
+              // invalid array regions throw instead of calling into C
+              try {
+                  binding.intArrayCopy(dest, -1, src, 0, Bindingtest1.ARRAY_SIZE);
+                  Assert.fail("Negative offset not rejected");
+              } catch (ArrayIndexOutOfBoundsException e) { }
+              try {
+                  binding.intArrayCopy(dest, 2, src, 0, -1);
+                  Assert.fail("Negative length not rejected");
+              } catch (ArrayIndexOutOfBoundsException e) { }
+          }
+
+          // int intArrayCopy(IntBuffer, IntBuffer, int)
+          {
+              IntBuffer src = IntBuffer.wrap(new int[] { 4, 5, 6 });
+              IntBuffer dest = IntBuffer.allocate(4);
+              dest.position(1);
+              i = binding.intArrayCopy(dest, src, 3);
+              Assert.assertTrue("Wrong result: "+i, 15==i);
+              Assert.assertTrue("Wrong result: "+dest.get(0), 0==dest.get(0));
+              for(int j=0; j<3; j++) {
+                  Assert.assertTrue("Wrong result: s:"+src.get(j)+" d: "+dest.get(j+1), src.get(j)==dest.get(j+1));
+              }
+          }
     }
-    
+
     void assertAPTR(final long expected, final long actual) {
         System.err.println("0x"+Long.toHexString(expected)+" == 0x"+Long.toHexString(actual));
         if (Platform.is32Bit()) {
@@ -31,9 +31,13 @@ package com.jogamp.gluegen.test.junit.generation;
 import com.jogamp.gluegen.pcpp.PCPP;
 import java.io.BufferedReader;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
+import java.io.FileWriter;
 import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
 import java.util.Collections;
 import org.junit.Test;
 import static org.junit.Assert.*;
@@ -101,6 +105,82 @@ public class PCPPTest {
 
     }
 
+    @Test
+    public void pcppMultipleIncludeTest() throws IOException {
+        File dir = new File(BuildEnvironment.testOutput, "pcpp");
+        dir.mkdirs();
+        writeFile(dir, "guarded.h",   "/* comment */\n#ifndef GUARDED_H\n#define GUARDED_H\n#ifdef X\n#endif\nint guarded;\n#endif /* GUARDED_H */\n\n");
+        writeFile(dir, "once.h",      "#pragma once\nint once;\n");
+        writeFile(dir, "trailing.h",  "#ifndef TRAILING_H\n#define TRAILING_H\n#endif\nint trailing;\n");
+        writeFile(dir, "else.h",      "#ifndef ELSE_H\n#define ELSE_H\n#else\nint twice;\n#endif\n");
+        writeFile(dir, "undef.h",     "#ifndef UNDEF_H\n#define UNDEF_H\nint undef;\n#endif\n");
+
+        PCPP pp = new PCPP(Collections.singletonList(dir.getPath()), false, false);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        pp.setOut(output);
+        pp.run(new StringReader("#include \"guarded.h\"\n#include \"guarded.h\"\n" +
+                                "#include \"once.h\"\n#include \"once.h\"\n" +
+                                "#include \"trailing.h\"\n#include \"trailing.h\"\n" +
+                                "#include \"else.h\"\n#include \"else.h\"\n" +
+                                "#include \"undef.h\"\n#undef UNDEF_H\n#include \"undef.h\"\n#include \"undef.h\"\n"), "main.h");
+        output.flush();
+        String result = output.toString();
+        output.close();
+        System.err.println(result);
+
+        // skipped includes are not opened at all, hence show no line directive
+        assertEquals(1, count(result, "# 1 \"" + new File(dir, "guarded.h").getPath()));
+        assertEquals(1, count(result, "int guarded;"));
+        assertEquals(1, count(result, "# 1 \"" + new File(dir, "once.h").getPath()));
+        assertEquals(1, count(result, "int once;"));
+        assertEquals(2, count(result, "int trailing;"));
+        assertEquals(1, count(result, "int twice;"));
+        assertEquals(2, count(result, "int undef;"));
+    }
+
+    @Test
+    public void pcppFindFileTest() throws IOException {
+        File dir1 = new File(BuildEnvironment.testOutput, "pcpp/find1");
+        File dir2 = new File(BuildEnvironment.testOutput, "pcpp/find2");
+        dir1.mkdirs();
+        dir2.mkdirs();
+        writeFile(dir2, "a.h", "int a;\n");
+        File late = new File(dir1, "a.h");
+        late.delete();
+
+        PCPP pp = new PCPP(Arrays.asList(new String[] { dir1.getPath(), dir2.getPath() }), false, false);
+        String expected = dir2.getPath() + File.separator + "a.h";
+        assertEquals(expected, pp.findFile("a.h"));
+        assertNull(pp.findFile("missing.h"));
+
+        // results are resolved once per instance, negative ones included
+        writeFile(dir1, "a.h", "int a;\n");
+        writeFile(dir1, "missing.h", "int missing;\n");
+        assertEquals(expected, pp.findFile("a.h"));
+        assertNull(pp.findFile("missing.h"));
+
+        PCPP pp2 = new PCPP(Arrays.asList(new String[] { dir1.getPath(), dir2.getPath() }), false, false);
+        assertEquals(late.getPath(), pp2.findFile("a.h"));
+        assertNotNull(pp2.findFile("missing.h"));
+    }
+
+    private static void writeFile(File dir, String name, String content) throws IOException {
+        FileWriter w = new FileWriter(new File(dir, name));
+        try {
+            w.write(content);
+        } finally {
+            w.close();
+        }
+    }
+
+    private static int count(String s, String sub) {
+        int n = 0;
+        for (int i = s.indexOf(sub); i >= 0; i = s.indexOf(sub, i + 1)) {
+            n++;
+        }
+        return n;
+    }
+
     private String killWhitespace(String a) {
         return a.replaceAll("\\p{javaWhitespace}+", "");
     }
@@ -32,6 +32,9 @@ import java.io.IOException;
 
 import com.jogamp.gluegen.test.junit.generation.impl.Bindingtest1p1Impl;
 import com.jogamp.gluegen.test.junit.generation.impl.Bindingtest1p2Impl;
+import com.jogamp.gluegen.runtime.CallProfile;
+
+import org.junit.Assert;
 
 
 import org.junit.Test;
@@ -113,6 +116,55 @@ public class Test1p1JavaEmitter extends BaseClass {
         chapter09TestCompoundAndAlignment(new Bindingtest1p1Impl());
     }
 
+    /**
+     * This covers the generated call profile
+     */
+    @Test
+    public void chapter10TestCallProfile() throws Exception {
+        Bindingtest1p1Impl binding = new Bindingtest1p1Impl();
+        CallProfile profile = Bindingtest1p1Impl.CALL_PROFILE;
+        Assert.assertFalse("Profiling enabled by default", profile.isEnabled());
+
+        int nopId = profile.getFunctionId("nopTest");
+        int readId = profile.getFunctionId("intArrayRead");
+        Assert.assertTrue(nopId >= 0);
+        Assert.assertTrue(readId >= 0);
+        Assert.assertEquals(-1, profile.getFunctionId("notExisting"));
+
+        profile.reset();
+        binding.nopTest();
+        Assert.assertEquals("Disabled profile recorded a call", 0L, profile.snapshot().getTotalCalls());
+
+        profile.setEnabled(true);
+        try {
+            int[] ints = new int[] { 1, 2, 3 };
+            for(int i=0; i<5; i++) {
+                binding.nopTest();
+            }
+            // array and NIO variants share the function id
+            Assert.assertEquals(6, binding.intArrayRead(ints, 0, 3));
+            Assert.assertEquals(5, binding.intArrayRead(ints, 1, 2));
+        } finally {
+            profile.setEnabled(false);
+        }
+
+        CallProfile.Snapshot snapshot = profile.snapshot();
+        Assert.assertEquals(5L, snapshot.getCalls(nopId));
+        Assert.assertEquals(2L, snapshot.getCalls(readId));
+        Assert.assertEquals(7L, snapshot.getTotalCalls());
+        Assert.assertTrue(snapshot.getNanos(nopId) >= 0L);
+
+        String csv = snapshot.toCSV();
+        Assert.assertTrue(csv, csv.startsWith("function,calls,nanos,avgNanos\n"));
+        Assert.assertEquals(csv, 3, csv.split("\n").length);
+        Assert.assertTrue(csv, csv.contains("\nnopTest,5,"));
+        Assert.assertTrue(csv, csv.contains("\nintArrayRead,2,"));
+
+        profile.reset();
+        Assert.assertEquals(0L, profile.snapshot().getTotalCalls());
+        Assert.assertEquals(5L, snapshot.getCalls(nopId)); // snapshot is a copy
+    }
+
     public static void main(String args[]) throws IOException {
         String tstname = Test1p1JavaEmitter.class.getName();
         org.junit.runner.JUnitCore.main(tstname);
@@ -31,6 +31,7 @@ package com.jogamp.gluegen.test.junit.generation;
 import java.io.IOException;
 
 import com.jogamp.gluegen.test.junit.generation.impl.Bindingtest1p1Impl;
+import com.jogamp.gluegen.test.junit.generation.impl.Bindingtest1p2CommandBuffer;
 import com.jogamp.gluegen.test.junit.generation.impl.Bindingtest1p2Impl;
 
 import com.jogamp.common.os.NativeLibrary;
@@ -122,7 +123,42 @@ public class Test1p2ProcAddressEmitter extends BaseClass {
     public void chapter09TestCompoundAndAlignment() throws Exception {
         chapter09TestCompoundAndAlignment(new Bindingtest1p2Impl());
     }
-    
+
+    /**
+     * This covers recording calls in the command buffer and replaying them.
+     */
+    @Test
+    public void chapter10TestCommandBuffer() throws Exception {
+        Bindingtest1p2Impl binding = new Bindingtest1p2Impl();
+        Bindingtest1p2CommandBuffer cmds = new Bindingtest1p2CommandBuffer(Bindingtest1p2Impl.getProcAddressTable(), 1024);
+
+        binding.accumulatorReset();
+        cmds.accumulatorAdd(3);
+        cmds.accumulatorAdd(4);
+        cmds.accumulatorMulAdd(2.5f, 100L);
+        Assert.assertEquals(2*24+32, cmds.size());
+        Assert.assertEquals("Commands replayed before flush", 0L, binding.accumulatorGet());
+
+        cmds.flush();
+        Assert.assertEquals(0, cmds.size());
+        Assert.assertEquals((long)(7*2.5f) + 100L, binding.accumulatorGet());
+
+        cmds.accumulatorReset();
+        cmds.accumulatorAdd(1);
+        cmds.clear();
+        cmds.flush();
+        Assert.assertEquals("Cleared commands replayed", (long)(7*2.5f) + 100L, binding.accumulatorGet());
+
+        // implicit flush if the buffer has no room left
+        cmds = new Bindingtest1p2CommandBuffer(Bindingtest1p2Impl.getProcAddressTable(), Bindingtest1p2CommandBuffer.MAX_COMMAND_SIZE);
+        cmds.accumulatorReset();
+        for(int i=1; i<=100; i++) {
+            cmds.accumulatorAdd(i);
+        }
+        cmds.flush();
+        Assert.assertEquals(5050L, binding.accumulatorGet());
+    }
+
     public static void main(String args[]) throws IOException {
         String tstname = Test1p2ProcAddressEmitter.class.getName();
         org.junit.runner.JUnitCore.main(tstname);
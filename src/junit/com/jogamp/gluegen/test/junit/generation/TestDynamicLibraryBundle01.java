@@ -0,0 +1,113 @@
+/**
+ * Copyright 2011 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+ 
+package com.jogamp.gluegen.test.junit.generation;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.jogamp.common.jvm.JNILibLoaderBase;
+import com.jogamp.common.os.DynamicLibraryBundle;
+import com.jogamp.common.os.DynamicLibraryBundleInfo;
+
+public class TestDynamicLibraryBundle01 {
+    
+    static class TestBundleInfo implements DynamicLibraryBundleInfo {
+        public List<List<String>> getToolLibNames() {
+            final List<List<String>> libNames = new ArrayList<List<String>>();
+            final List<String> test1 = new ArrayList<String>();
+            test1.add("test1");
+            libNames.add(test1);
+            final List<String> missing = new ArrayList<String>();
+            missing.add("libtest1missing.so");
+            missing.add("test1missing");
+            libNames.add(missing);
+            // preferred name missing, loaded via its alternative
+            final List<String> alternative = new ArrayList<String>();
+            alternative.add("test1missing");
+            alternative.add("test1");
+            libNames.add(alternative);
+            return libNames;
+        }
+        public List<String> getGlueLibNames() {
+            final List<String> libNames = new ArrayList<String>();
+            libNames.add("Bindingtest1p1");
+            libNames.add("Bindingtest1missing");
+            libNames.add("Bindingtest1p2");
+            return libNames;
+        }
+        public List<String> getToolGetProcAddressFuncNameList() { return null; }
+        public long toolGetProcAddress(long toolGetProcAddressHandle, String funcName) { return 0; }
+        public boolean useToolGetProcAdressFirst(String funcName) { return false; }
+        public boolean shallLinkGlobal() { return false; }
+        public boolean shallLookupGlobal() { return false; }
+    }
+    
+    void testBundle(boolean parallel) {
+        final boolean parallel0 = JNILibLoaderBase.isParallelLoading();
+        JNILibLoaderBase.setParallelLoading(parallel);
+        try {
+            final long t0 = System.nanoTime();
+            final DynamicLibraryBundle bundle = new DynamicLibraryBundle(new TestBundleInfo());
+            final long t1 = System.nanoTime();
+            System.err.println("DynamicLibraryBundle parallel "+parallel+": "+(t1-t0)/1000+"us");
+            Assert.assertTrue(bundle.isToolLibLoaded());
+            Assert.assertTrue(bundle.isToolLibLoaded(0));
+            Assert.assertFalse(bundle.isToolLibLoaded(1));
+            Assert.assertTrue(bundle.isToolLibLoaded(2));
+            Assert.assertFalse(bundle.isToolLibComplete());
+            Assert.assertTrue(bundle.isGlueLibLoaded(0));
+            Assert.assertFalse(bundle.isGlueLibLoaded(1));
+            Assert.assertTrue(bundle.isGlueLibComplete());
+            Assert.assertEquals(2, bundle.getGlueLibLoadedNumber());
+            Assert.assertTrue(JNILibLoaderBase.isLoaded("Bindingtest1p1"));
+            Assert.assertTrue(JNILibLoaderBase.isLoaded("Bindingtest1p2"));
+            Assert.assertTrue(0 != bundle.dynamicLookupFunction("nopTest"));
+        } finally {
+            JNILibLoaderBase.setParallelLoading(parallel0);
+        }
+    }
+    
+    /** 
+     * Libraries are loaded once per JVM, hence the sequential case is tested
+     * in its own class {@link TestDynamicLibraryBundle02}. 
+     */
+    @Test
+    public void test01Parallel() {
+        testBundle(true);
+    }
+    
+    public static void main(String args[]) throws IOException {
+        String tstname = TestDynamicLibraryBundle01.class.getName();
+        org.junit.runner.JUnitCore.main(tstname);
+    }
+}
@@ -0,0 +1,189 @@
+/**
+ * Copyright 2011 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ * 
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.gluegen.test.junit.generation;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.jogamp.gluegen.GlueGen;
+import com.jogamp.gluegen.GlueGenProfile;
+import com.jogamp.gluegen.JavaEmitter;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static java.lang.System.*;
+
+/**
+ * Measures the glue code generation throughput for a synthetic header
+ * with a large number of functions, using the make/stub_includes headers.
+ */
+public class TestGlueGenPerf01 {
+
+    static final int FUNCTIONS = 3000;
+    static final int DEFINES = 500;
+    static final int ROUNDS = 3;
+
+    static File perfDir;
+    static File header;
+    static File config;
+    static List<String> includePaths;
+
+    @BeforeClass
+    public static void init() throws IOException {
+        perfDir = new File(BuildEnvironment.testOutput, "perf01");
+        perfDir.mkdirs();
+
+        header = new File(perfDir, "perf01.h");
+        PrintWriter h = new PrintWriter(new FileWriter(header));
+        h.println("#include <gluegen_stdint.h>");
+        h.println("#include <gluegen_stddef.h>");
+        h.println();
+        for (int i = 0; i < DEFINES; i++) {
+            h.println("#define PERF_CONST_" + i + " 0x" + Integer.toHexString(i));
+        }
+        h.println();
+        // a named struct and a pointer typedef of an anonymous struct
+        h.println("typedef struct { int32_t x, y; } PerfItem;");
+        h.println("typedef struct { int32_t count; } * PerfHandle;");
+        h.println("void perfStructs(PerfItem * item, PerfHandle handle);");
+        h.println();
+        for (int i = 0; i < FUNCTIONS; i++) {
+            switch (i % 4) {
+                case 0:  h.println("int32_t perfScalar" + i + "(int32_t a, float b, double c);"); break;
+                case 1:  h.println("void perfArray" + i + "(const float * values, int32_t count);"); break;
+                case 2:  h.println("int64_t perfBuffer" + i + "(void * data, size_t size);"); break;
+                default: h.println("void perfOut" + i + "(int32_t * result, const int64_t * src, int32_t n);"); break;
+            }
+        }
+        h.close();
+
+        config = new File(perfDir, "perf01.cfg");
+        PrintWriter c = new PrintWriter(new FileWriter(config));
+        c.println("Package com.jogamp.gluegen.test.junit.generation.perf");
+        c.println("JavaClass Perf01");
+        c.println("Style AllStatic");
+        c.println("JavaOutputDir classes");
+        c.println("NativeOutputDir native");
+        c.close();
+
+        includePaths = new ArrayList<String>();
+        includePaths.add(BuildEnvironment.gluegenRoot + "/make/stub_includes/gluegen");
+    }
+
+    long generate() throws IOException {
+        return generate(new GlueGen());
+    }
+
+    long generate(GlueGen glueGen) throws IOException {
+        List<String> cfgFiles = new ArrayList<String>();
+        cfgFiles.add(config.getPath());
+        BufferedReader reader = new BufferedReader(new FileReader(header));
+        try {
+            long t0 = nanoTime();
+            glueGen.run(reader, header.getPath(), JavaEmitter.class, includePaths, cfgFiles,
+                              perfDir.getPath(), false, false);
+            return nanoTime() - t0;
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void benchmark() throws IOException {
+        out.println("warmup: " + generate()/1000000.0f + "ms");
+
+        long total = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            long t = generate();
+            out.println("round " + i + ": " + t/1000000.0f + "ms");
+            total += t;
+        }
+        double avgMS = total / (ROUNDS * 1000000.0);
+        out.println(FUNCTIONS + " functions, " + DEFINES + " defines: avg " + (float)avgMS + "ms, " +
+                    (int)(FUNCTIONS * 1000.0 / avgMS) + " functions/s");
+
+        File javaFile = new File(perfDir, "classes/com/jogamp/gluegen/test/junit/generation/perf/Perf01.java");
+        Assert.assertTrue(javaFile.getPath(), javaFile.exists());
+        File cFile = new File(perfDir, "native/Perf01_JNI.c");
+        Assert.assertTrue(cFile.getPath(), cFile.exists());
+    }
+
+    @Test
+    public void profile() throws IOException {
+        GlueGen glueGen = new GlueGen();
+        GlueGenProfile profile = new GlueGenProfile(true);
+        glueGen.setProfile(profile);
+        generate(glueGen);
+        profile.print(out);
+
+        long sum = 0;
+        for (GlueGenProfile.Phase phase : GlueGenProfile.Phase.values()) {
+            sum += profile.getNanos(phase);
+        }
+        Assert.assertEquals(profile.getTotalNanos(), sum);
+        Assert.assertTrue(profile.getNanos(GlueGenProfile.Phase.PREPROCESS) > 0);
+        Assert.assertTrue(profile.getNanos(GlueGenProfile.Phase.HEADER_PARSER) > 0);
+        Assert.assertTrue(profile.getNanos(GlueGenProfile.Phase.FUNCTION_EMISSION) > 0);
+
+        int bindings = 0;
+        for (GlueGenProfile.Item item : profile.getItems()) {
+            if ("binding".equals(item.kind)) {
+                bindings++;
+            }
+        }
+        Assert.assertEquals(FUNCTIONS + 1, bindings);
+
+        StringWriter json = new StringWriter();
+        profile.writeJSON(json);
+        Assert.assertTrue(json.toString().contains("\"name\": \"function_emission\""));
+        Assert.assertTrue(json.toString().contains("\"kind\": \"binding\", \"name\": \"perfScalar0\""));
+        Assert.assertTrue(json.toString().contains("\"kind\": \"struct\", \"name\": \"PerfItem\""));
+        Assert.assertTrue(json.toString().contains("\"kind\": \"struct\", \"name\": \"PerfHandle\""));
+
+        // an item w/o name
+        profile.beginItem();
+        profile.endItem("struct", null);
+        json = new StringWriter();
+        profile.writeJSON(json);
+        Assert.assertTrue(json.toString().contains("\"kind\": \"struct\", \"name\": \"\""));
+    }
+
+    public static void main(String args[]) throws IOException {
+        org.junit.runner.JUnitCore.main(TestGlueGenPerf01.class.getName());
+    }
+}
@@ -174,6 +174,35 @@ MYAPI int MYAPIENTRY intArrayRead(const int *  ints, int num) {
     return s;
 }
 
+MYAPI int MYAPIENTRY intArrayCopy(int *  dest, const int *  src, int num) {
+    int i=0, s=0;
+    if(NULL!=dest && NULL!=src) {
+        for(i=0; i<num; i++) {
+            dest[i]=src[i];
+            s+=src[i];
+        }
+    }
+    return s;
+}
+
+static int64_t accumulator = 0;
+
+MYAPI void MYAPIENTRY accumulatorAdd(int value) {
+    accumulator += value;
+}
+
+MYAPI void MYAPIENTRY accumulatorMulAdd(float factor, int64_t addend) {
+    accumulator = (int64_t) ( accumulator * factor ) + addend;
+}
+
+MYAPI void MYAPIENTRY accumulatorReset(void) {
+    accumulator = 0;
+}
+
+MYAPI int64_t MYAPIENTRY accumulatorGet(void) {
+    return accumulator;
+}
+
 /**
 MYAPI int intArrayWrite(int * *  ints, int num) {
     int i=0, s=0;
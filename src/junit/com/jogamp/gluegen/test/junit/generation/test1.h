@@ -89,6 +89,21 @@ MYAPI int MYAPIENTRY stringArrayRead(const char *  *  strings, int num);
 /** Returns the sum of all integers */
 MYAPI int MYAPIENTRY intArrayRead(const int *  ints, int num);
 
+/** Copies num elements from src to dest, and returns the sum */
+MYAPI int MYAPIENTRY intArrayCopy(int *  dest, const int *  src, int num);
+
+/** Adds value to the accumulator */
+MYAPI void MYAPIENTRY accumulatorAdd(int value);
+
+/** Multiplies the accumulator by factor, then adds addend */
+MYAPI void MYAPIENTRY accumulatorMulAdd(float factor, int64_t addend);
+
+/** Sets the accumulator to 0 */
+MYAPI void MYAPIENTRY accumulatorReset(void);
+
+/** Returns the accumulator */
+MYAPI int64_t MYAPIENTRY accumulatorGet(void);
+
 /** Increases the elements by 1, and returns the sum 
 MYAPI int MYAPIENTRY intArrayWrite(int *  *  ints, int num); */
 